@@ -0,0 +1,132 @@
+package com.alphawallet.app.service;
+
+import android.content.Context;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.alphawallet.app.entity.Wallet;
+import com.alphawallet.app.entity.WalletType;
+import com.alphawallet.app.entity.cryptokeys.SignatureFromKey;
+import com.alphawallet.app.entity.cryptokeys.SignatureReturnType;
+import com.alphawallet.token.entity.Signable;
+import com.alphawallet.token.entity.SignableBytes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import wallet.core.jni.CoinType;
+import wallet.core.jni.HDWallet;
+
+import static com.alphawallet.app.service.KeystoreAccountService.KEYSTORE_FOLDER;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Signing session signatures must be byte-identical to signData's, which unlocks the key for every payload
+ */
+@RunWith(AndroidJUnit4.class)
+public class SigningSessionTest
+{
+    private static final String SEED_PHRASE = "abandon abandon abandon abandon abandon abandon abandon abandon abandon abandon abandon about";
+    private static final String PRIVATE_KEY = "68adf89afe85baa046919f904f7c1e3a9cb28ca8b3039c2bcb3fa5a980d3a165";
+    private static final String PASSWORD = "signing session test";
+
+    private final Random random = new Random(2424); //fixed seed, so a failure can be reproduced
+    private final List<String> storedKeys = new ArrayList<>();
+    private KeyService keyService;
+    private KeystoreAccountService accountService;
+
+    @Before
+    public void setUp()
+    {
+        Context context = InstrumentationRegistry.getTargetContext();
+        keyService = new KeyService(context);
+        accountService = new KeystoreAccountService(new File(context.getFilesDir(), KEYSTORE_FOLDER),
+                context.getFilesDir(), keyService);
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (String address : storedKeys)
+        {
+            keyService.deleteKey(address);
+        }
+    }
+
+    @Test
+    public void hdSessionMatchesSignData() throws Exception
+    {
+        HDWallet hdWallet = new HDWallet(SEED_PHRASE, "");
+        Wallet wallet = new Wallet(CoinType.ETHEREUM.deriveAddress(hdWallet.getKeyForCoin(CoinType.ETHEREUM)));
+        wallet.setWalletType(WalletType.HDKEY);
+        storeKey("storeHDKey", new Class<?>[] { HDWallet.class, boolean.class }, hdWallet, false);
+        storedKeys.add(wallet.address);
+
+        checkSignatures(wallet);
+    }
+
+    @Test
+    public void keystoreSessionMatchesSignData() throws Exception
+    {
+        Wallet wallet = accountService.importPrivateKey(PRIVATE_KEY, PASSWORD).blockingGet();
+        storeKey("storeEncryptedBytes", new Class<?>[] { byte[].class, boolean.class, String.class },
+                PASSWORD.getBytes(), false, wallet.address);
+        storedKeys.add(wallet.address);
+
+        checkSignatures(wallet);
+    }
+
+    private void checkSignatures(Wallet wallet) throws Exception
+    {
+        List<Signable> messages = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+        {
+            byte[] payload = new byte[random.nextInt(200)];
+            random.nextBytes(payload);
+            messages.add(new SignableBytes(payload));
+        }
+
+        //raw signatures, straight from the key service
+        try (SigningSession session = keyService.openSigningSession(wallet, SigningSession.DEFAULT_DURATION))
+        {
+            for (Signable message : messages)
+            {
+                SignatureFromKey expected = keyService.signData(wallet, message.getPrehash());
+                SignatureFromKey actual = session.sign(message.getPrehash());
+                assertEquals(SignatureReturnType.SIGNATURE_GENERATED, expected.sigType);
+                assertEquals(SignatureReturnType.SIGNATURE_GENERATED, actual.sigType);
+                assertArrayEquals(expected.signature, actual.signature);
+            }
+        }
+
+        //and as callers see them: signMessages against one signMessage per payload
+        List<SignatureFromKey> batch = accountService.signMessages(wallet, messages).blockingGet();
+        assertEquals(messages.size(), batch.size());
+        for (int i = 0; i < messages.size(); i++)
+        {
+            SignatureFromKey single = accountService.signMessage(wallet, messages.get(i), 1).blockingGet();
+            assertEquals(SignatureReturnType.SIGNATURE_GENERATED, batch.get(i).sigType);
+            assertArrayEquals(single.signature, batch.get(i).signature);
+        }
+    }
+
+    /**
+     * Store a key without an authentication lock, as KeyService does on import before it asks for authentication
+     */
+    private void storeKey(String method, Class<?>[] types, Object... args) throws Exception
+    {
+        Method store = KeyService.class.getDeclaredMethod(method, types);
+        store.setAccessible(true);
+        store.invoke(keyService, args);
+    }
+}
@@ -32,11 +32,10 @@ public class TransactionDecoder
     public static final int FUNCTION_LENGTH = 10;
     private final static List<String> endContractSignatures = new ArrayList<>();
 
-    private int parseIndex;
-    private Map<String, FunctionData> functionList;
+    private static final int WORD_LENGTH = 64; //hex digits in a 256 bit word
+    private static final int MAX_STRING_BYTES = 32; //strings are read from a single word
 
-    private ReadState state = ARGS;
-    private int sigCount = 0;
+    private Map<String, FunctionData> functionList;
 
     private FunctionData getUnknownFunction()
     {
@@ -48,36 +47,26 @@ public class TransactionDecoder
         setupKnownFunctions();
     }
 
+    /**
+     * Decode transaction input. All parse state is held in an InputReader local to the call, so one decoder
+     * can be shared between threads.
+     */
     public TransactionInput decodeInput(String input)
     {
-        ParseStage parseState = ParseStage.PARSE_FUNCTION;
-        parseIndex = 0;
         //1. check function
         TransactionInput thisData = new TransactionInput();
-        if (input == null || input.length() < 10)
+        if (input == null || input.length() < FUNCTION_LENGTH)
         {
             thisData.functionData = getUnknownFunction();
             return thisData;
         }
 
-        try {
-            while (parseIndex < input.length() && !(parseState == ParseStage.FINISH)) {
-                switch (parseState) {
-                    case PARSE_FUNCTION: //get function
-                        parseState = setFunction(thisData, readBytes(input, FUNCTION_LENGTH), input.length());
-                        break;
-                    case PARSE_ARGS: //now get params
-                        parseState = getParams(thisData, input);
-                        break;
-                    case FINISH:
-                        break;
-                    case ERROR:
-                        //Perform any future error handling here
-                        parseState = ParseStage.FINISH;
-                        break;
-                }
-
-                if (parseIndex < 0) break; //error
+        try
+        {
+            //2. now get params
+            if (setFunction(thisData, input.substring(0, FUNCTION_LENGTH)))
+            {
+                getParams(thisData, new InputReader(input));
             }
         }
         catch (Exception e)
@@ -104,27 +93,44 @@ public class TransactionDecoder
         return thisData;
     }
 
-    private ParseStage setFunction(TransactionInput thisData, String input, int length) {
+    /**
+     * Decode a page of transactions, eg a transaction history fetch. Each decoded input is also stored in its
+     * transaction so it isn't decoded again when the transaction is displayed or filtered.
+     * @return decoded inputs, in the same order as the transactions; null where a transaction has no input
+     */
+    public TransactionInput[] decodeAll(Transaction[] transactions, String walletAddress)
+    {
+        TransactionInput[] inputs = new TransactionInput[transactions.length];
+        for (int i = 0; i < transactions.length; i++)
+        {
+            Transaction tx = transactions[i];
+            if (tx == null || !tx.hasInput()) continue;
+            if (tx.transactionInput == null)
+            {
+                tx.transactionInput = decodeInput(tx, walletAddress);
+            }
+            inputs[i] = tx.transactionInput;
+        }
+
+        return inputs;
+    }
+
+    private boolean setFunction(TransactionInput thisData, String input) {
         //first get expected arg list:
         FunctionData data = functionList.get(input);
 
         if (data != null)
         {
             thisData.functionData = data;
-            thisData.arrayValues.clear();
-            thisData.addresses.clear();
-            thisData.sigData.clear();
-            thisData.miscData.clear();
             thisData.functionData.functionRawHex = input;
+            return true;
         }
         else
         {
             thisData.functionData = getUnknownFunction();
             thisData.functionData.functionRawHex = input;
-            return ParseStage.ERROR;
+            return false;
         }
-
-        return ParseStage.PARSE_ARGS;
     }
 
     enum ReadState
@@ -133,115 +139,148 @@ public class TransactionDecoder
         SIGNATURE
     }
 
-    private ParseStage getParams(TransactionInput thisData, String input) {
-        state = ARGS;
-        BigInteger count;
-        StringBuilder sb = new StringBuilder();
-        if (thisData.functionData != null && thisData.functionData.args != null)
+    private void getParams(TransactionInput thisData, InputReader reader) {
+        if (thisData.functionData.args == null) return; //no args in the spec
+
+        for (String type : thisData.functionData.args)
         {
-            for (String type : thisData.functionData.args)
+            int word = reader.nextWord();
+            if (word < 0) break; //end of input
+            int count;
+            switch (type)
             {
-                String argData = read256bits(input);
-                if (argData.equals("0")) break;
-                switch (type)
-                {
-                    case "string":
-                        count = new BigInteger(argData, 16);
-                        sb.setLength(0);
-                        argData = read256bits(input);
-                        if (count.intValue() > argData.length()) count = BigInteger.valueOf(argData.length());
-                        for (int index = 0; index < (count.intValue()*2); index += 2)
-                        {
-                            int v = Integer.parseInt(argData.substring(index, index+2), 16);
-                            char c = (char)v;
-                            sb.append(c);
-                        }
-                        thisData.miscData.add(Numeric.cleanHexPrefix(sb.toString()));
-                        break;
-                    case "address":
-                        if (argData.length() >= 64 - ADDRESS_LENGTH_IN_HEX)
-                        {
-                            thisData.addresses.add("0x" + argData.substring(64 - ADDRESS_LENGTH_IN_HEX));
-                        }
-                        break;
-                    case "bytes32":
-                        addArg(thisData, argData);
-                        break;
-                    case "bytes32[]":
-                    case "uint16[]":
-                    case "uint256[]":
-                        count = new BigInteger(argData, 16);
-                        for (int i = 0; i < count.intValue(); i++) {
-                            String inputData = read256bits(input);
-                            thisData.arrayValues.add(new BigInteger(inputData, 16));
-                            if (inputData.equals("0")) break;
-                        }
-                        break;
-                    case "uint256":
-                        addArg(thisData, argData);
-                        break;
-                    case "uint8": //In our standards, we will put uint8 as the signature marker
-                        if (thisData.functionData.hasSig) {
-                            state = ReadState.SIGNATURE;
-                            sigCount = 0;
-                        }
-                        addArg(thisData, argData);
-                        break;
-                    case "nodata":
-                        //no need to store this data - eg placeholder to indicate presence of a vararg
-                        break;
-                    default:
-                        break;
-                }
+                case "string":
+                    count = reader.readInt(word);
+                    int stringData = reader.nextWord();
+                    if (stringData < 0 || count > MAX_STRING_BYTES) return; //truncated or malformed input
+                    thisData.miscData.add(Numeric.cleanHexPrefix(reader.readString(stringData, Math.max(count, 0))));
+                    break;
+                case "address":
+                    thisData.addresses.add("0x" + reader.readAddress(word));
+                    break;
+                case "bytes32":
+                    addArg(thisData, reader, word);
+                    break;
+                case "bytes32[]":
+                case "uint16[]":
+                case "uint256[]":
+                    count = reader.readInt(word);
+                    for (int i = 0; i < count; i++)
+                    {
+                        int element = reader.nextWord();
+                        if (element < 0) break;
+                        thisData.arrayValues.add(reader.readBigInteger(element));
+                    }
+                    break;
+                case "uint256":
+                    addArg(thisData, reader, word);
+                    break;
+                case "uint8": //In our standards, we will put uint8 as the signature marker
+                    if (thisData.functionData.hasSig) {
+                        reader.state = ReadState.SIGNATURE;
+                        reader.sigCount = 0;
+                    }
+                    addArg(thisData, reader, word);
+                    break;
+                case "nodata":
+                    //no need to store this data - eg placeholder to indicate presence of a vararg
+                    break;
+                default:
+                    break;
             }
         }
-        else
-        {
-            return ParseStage.FINISH; //skip to end of read if there are no args in the spec
-        }
-
-        return ParseStage.FINISH;
     }
 
-    private void addArg(TransactionInput thisData, String input)
+    private void addArg(TransactionInput thisData, InputReader reader, int word)
     {
-        switch (state)
+        switch (reader.state)
         {
             case ARGS:
-                thisData.miscData.add(Numeric.cleanHexPrefix(input));
+                thisData.miscData.add(reader.readWord(word));
                 break;
             case SIGNATURE:
-                thisData.sigData.add(input);
-                if (++sigCount == 3) state = ARGS;
+                thisData.sigData.add(reader.readWord(word));
+                if (++reader.sigCount == 3) reader.state = ARGS;
                 break;
         }
     }
 
-    private String readBytes(String input, int bytes)
+    /**
+     * Cursor over the hex digits of one transaction input. Words are located without copying; a word is only
+     * converted into a String or number when the field it holds is stored.
+     */
+    private static class InputReader
     {
-        if ((parseIndex + bytes) <= input.length())
+        private final String input;
+        private int index = FUNCTION_LENGTH;
+        private ReadState state = ARGS;
+        private int sigCount = 0;
+
+        InputReader(String input)
         {
-            String value = input.substring(parseIndex, parseIndex+bytes);
-            parseIndex += bytes;
-            return value;
+            this.input = input;
         }
-        else
+
+        /**
+         * @return index of the next 256 bit word, or -1 if the input is exhausted
+         */
+        int nextWord()
         {
-            return "0";
+            if (index + WORD_LENGTH > input.length()) return -1;
+            int word = index;
+            index += WORD_LENGTH;
+            return word;
         }
-    }
 
-    private String read256bits(String input)
-    {
-        if ((parseIndex + 64) <= input.length())
+        String readWord(int word)
         {
-            String value = input.substring(parseIndex, parseIndex+64);
-            parseIndex += 64;
-            return value;
+            return input.substring(word, word + WORD_LENGTH);
         }
-        else
+
+        String readAddress(int word)
+        {
+            return input.substring(word + WORD_LENGTH - ADDRESS_LENGTH_IN_HEX, word + WORD_LENGTH);
+        }
+
+        /**
+         * @return low 32 bits of the word, as BigInteger.intValue() would give
+         */
+        int readInt(int word)
+        {
+            return (int) readLong(word + WORD_LENGTH - 8, 8);
+        }
+
+        BigInteger readBigInteger(int word)
+        {
+            //array elements are usually small indices; avoid the hex substring unless the value needs more than 63 bits
+            for (int i = word; i < word + WORD_LENGTH - 16; i++)
+            {
+                if (input.charAt(i) != '0') return new BigInteger(readWord(word), 16);
+            }
+            long value = readLong(word + WORD_LENGTH - 16, 16);
+            return value >= 0 ? BigInteger.valueOf(value) : new BigInteger(readWord(word), 16);
+        }
+
+        String readString(int word, int length)
+        {
+            StringBuilder sb = new StringBuilder(length);
+            for (int i = 0; i < length; i++)
+            {
+                sb.append((char) readLong(word + i * 2, 2));
+            }
+            return sb.toString();
+        }
+
+        private long readLong(int start, int digits)
         {
-            return "0";
+            long value = 0;
+            for (int i = start; i < start + digits; i++)
+            {
+                int digit = Character.digit(input.charAt(i), 16);
+                if (digit < 0) throw new NumberFormatException("Invalid hex in transaction input: " + input.charAt(i));
+                value = (value << 4) | digit;
+            }
+            return value;
         }
     }
 
@@ -391,11 +430,6 @@ public class TransactionDecoder
         return highestType;
     }
 
-    enum ParseStage
-    {
-        PARSE_FUNCTION, PARSE_ARGS, FINISH, ERROR
-    }
-
     public Sign.SignatureData getSignatureData(TransactionInput data)
     {
         Sign.SignatureData sigData = null;
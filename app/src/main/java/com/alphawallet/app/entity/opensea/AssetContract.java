@@ -26,6 +26,10 @@ public class AssetContract implements Parcelable {
     @Expose
     private String schemaName;
 
+    @SerializedName("image_url")
+    @Expose
+    private String imageUrl; //only used when reading from Opensea; not parcelled
+
     protected AssetContract(Parcel in) {
         address = in.readString();
         name = in.readString();
@@ -105,6 +109,10 @@ public class AssetContract implements Parcelable {
         return this;
     }
 
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
     @Override
     public int describeContents() {
         return 0;
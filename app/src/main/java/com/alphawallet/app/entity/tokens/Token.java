@@ -39,6 +39,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class Token implements Parcelable, Comparable<Token>
 {
@@ -62,7 +63,7 @@ public class Token implements Parcelable, Comparable<Token>
     private int nameWeight;
     public int itemViewHeight;
 
-    private final Map<BigInteger, Map<String, TokenScriptResult.Attribute>> resultMap = new ConcurrentHashMap<>(); //Build result map for function parse, per tokenId
+    private final ConcurrentMap<BigInteger, Map<String, TokenScriptResult.Attribute>> resultMap = new ConcurrentHashMap<>(); //Build result map for function parse, per tokenId
     private Map<BigInteger, List<String>> functionAvailabilityMap = null;
 
     public String getNetworkName() { return shortNetworkName; }
@@ -886,8 +887,8 @@ public class Token implements Parcelable, Comparable<Token>
         Map<String, TokenScriptResult.Attribute> resultSet = resultMap.get(tokenId);
         if (resultSet == null)
         {
-            resultSet = new ConcurrentHashMap<>();
-            resultMap.put(tokenId, resultSet);
+            resultMap.putIfAbsent(tokenId, new ConcurrentHashMap<>()); //attributes for one tokenId may resolve concurrently
+            resultSet = resultMap.get(tokenId);
         }
 
         resultSet.put(attrResult.id, attrResult);
@@ -0,0 +1,242 @@
+package com.alphawallet.app.entity.tokenscript;
+
+import android.text.TextUtils;
+
+import com.alphawallet.app.entity.tokens.Token;
+import com.alphawallet.token.entity.Attribute;
+import com.alphawallet.token.entity.AttributeInterface;
+import com.alphawallet.token.entity.MethodArg;
+import com.alphawallet.token.entity.TokenScriptResult;
+import com.alphawallet.token.entity.TokenscriptElement;
+import com.alphawallet.token.tools.TokenDefinition;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Resolves a set of TokenScript attributes for one or more token ids.
+ *
+ * Attributes are put in dependency order: an attribute whose function or event filter takes another attribute's
+ * value comes after it. Attributes at the same level don't depend on each other and are fetched concurrently, so
+ * the eth_calls for a level (across every token id being resolved) go out together and are batched by the node
+ * service. Each resolve works on its own attribute map, token id list and results; nothing is written to the
+ * shared TokenDefinition.
+ */
+public class AttributeResolver
+{
+    private static final int MAX_CONCURRENT_FETCHES = 16;
+
+    //attribute name -> names of the attributes it references, built once per parsed definition
+    private static final Map<TokenDefinition, Map<String, Set<String>>> dependencyCache = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final TokenDefinition definition;
+    private final AttributeInterface attrIf;
+    private final List<List<Attribute>> levels;
+    private final ResolvePass pass;
+
+    /**
+     * @param definition script the attributes belong to
+     * @param attrs attributes to resolve; the definition's attributes plus any action or view local attributes
+     * @param tokenIds token ids referenced as tokenId[n] by attribute functions, or null
+     * @param refSource function holding the user-entered reference values for this action, if any
+     */
+    public AttributeResolver(TokenDefinition definition, List<Attribute> attrs, List<BigInteger> tokenIds,
+                             AttributeInterface attrIf, TokenscriptFunction refSource)
+    {
+        this.definition = definition;
+        this.attrIf = attrIf;
+        this.levels = buildLevels(definition, attrs);
+        this.pass = new ResolvePass(tokenIds);
+        pass.buildAttrMap(attrs);
+        if (refSource != null) pass.addLocalRefs(refSource.getLocalRefs());
+    }
+
+    /**
+     * Resolve every attribute for one token id, in dependency order
+     */
+    public Observable<TokenScriptResult.Attribute> resolve(Token token, BigInteger tokenId, boolean itemView)
+    {
+        return Observable.fromIterable(levels)
+                .concatMap(level -> Observable.fromIterable(level)
+                        .flatMap(attr -> fetch(token, attr, tokenId, itemView), MAX_CONCURRENT_FETCHES));
+    }
+
+    /**
+     * Resolve every attribute for each of the token ids. Each level is fetched for all token ids at once.
+     * @return attribute results by token id, then attribute name
+     */
+    public Map<BigInteger, Map<String, TokenScriptResult.Attribute>> resolveAll(Token token, List<BigInteger> tokenIds, boolean itemView)
+    {
+        Map<BigInteger, Map<String, TokenScriptResult.Attribute>> resultSet = new HashMap<>();
+        for (BigInteger tokenId : tokenIds)
+        {
+            resultSet.put(tokenId, new ConcurrentHashMap<>());
+        }
+
+        for (List<Attribute> level : levels)
+        {
+            Observable.fromIterable(tokenIds)
+                    .flatMap(tokenId -> Observable.fromIterable(level)
+                            .flatMap(attr -> fetch(token, attr, tokenId, itemView)
+                                    .doOnNext(result -> resultSet.get(tokenId).put(attr.name, result))
+                                    .onErrorResumeNext(Observable.empty())), MAX_CONCURRENT_FETCHES) //a failed attribute is left out of the results
+                    .blockingSubscribe();
+        }
+
+        return resultSet;
+    }
+
+    private Observable<TokenScriptResult.Attribute> fetch(Token token, Attribute attr, BigInteger tokenId, boolean itemView)
+    {
+        return pass.fetchAttrResult(token, attr, tokenId, definition, attrIf, itemView)
+                .doOnNext(result -> pass.addResult(tokenId, attr.name, result))
+                .subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * Order attributes so each comes after the attributes it references. Attributes in a reference cycle
+     * go in a final level and resolve each other on demand, as they did before ordering.
+     */
+    private static List<List<Attribute>> buildLevels(TokenDefinition definition, List<Attribute> attrs)
+    {
+        Map<String, Set<String>> definitionDeps = getDependencies(definition);
+        Map<String, Attribute> remaining = new HashMap<>();
+        for (Attribute attr : attrs)
+        {
+            remaining.put(attr.name, attr);
+        }
+
+        List<List<Attribute>> levels = new ArrayList<>();
+        while (!remaining.isEmpty())
+        {
+            List<Attribute> level = new ArrayList<>();
+            for (Attribute attr : remaining.values())
+            {
+                Set<String> deps = definition.attributes.get(attr.name) == attr ? definitionDeps.get(attr.name) : findReferences(attr);
+                if (deps == null || !dependsOnRemaining(deps, attr.name, remaining.keySet()))
+                {
+                    level.add(attr);
+                }
+            }
+
+            if (level.isEmpty())
+            {
+                //cycle
+                levels.add(new ArrayList<>(remaining.values()));
+                break;
+            }
+
+            for (Attribute attr : level)
+            {
+                remaining.remove(attr.name);
+            }
+            levels.add(level);
+        }
+
+        return levels;
+    }
+
+    private static boolean dependsOnRemaining(Set<String> deps, String name, Set<String> remaining)
+    {
+        for (String dep : deps)
+        {
+            if (!dep.equals(name) && remaining.contains(dep)) return true;
+        }
+        return false;
+    }
+
+    private static Map<String, Set<String>> getDependencies(TokenDefinition definition)
+    {
+        Map<String, Set<String>> deps = dependencyCache.get(definition);
+        if (deps == null)
+        {
+            deps = new HashMap<>();
+            for (Attribute attr : definition.attributes.values())
+            {
+                deps.put(attr.name, findReferences(attr));
+            }
+            dependencyCache.put(definition, deps);
+        }
+
+        return deps;
+    }
+
+    private static Set<String> findReferences(Attribute attr)
+    {
+        Set<String> refs = new HashSet<>();
+        if (attr.function != null)
+        {
+            for (MethodArg arg : attr.function.parameters)
+            {
+                if (arg.element == null || !TextUtils.isEmpty(arg.element.value)) continue;
+                if (!TextUtils.isEmpty(arg.element.ref)) refs.add(arg.element.ref);
+                if (!TextUtils.isEmpty(arg.element.localRef)) refs.add(arg.element.localRef);
+            }
+        }
+        if (attr.event != null && attr.event.filter != null)
+        {
+            String filterValue = attr.event.getFilterTopicValue();
+            if (filterValue != null) refs.add(filterValue);
+        }
+
+        return refs;
+    }
+
+    /**
+     * Function state for one resolve: its own attribute map, the token ids for this call and the values
+     * already resolved in earlier levels
+     */
+    private static class ResolvePass extends TokenscriptFunction
+    {
+        private final List<BigInteger> tokenIds;
+        private final ConcurrentMap<BigInteger, Map<String, TokenScriptResult.Attribute>> results = new ConcurrentHashMap<>();
+
+        ResolvePass(List<BigInteger> tokenIds)
+        {
+            this.tokenIds = tokenIds;
+        }
+
+        void addResult(BigInteger tokenId, String name, TokenScriptResult.Attribute result)
+        {
+            if (TextUtils.isEmpty(result.text)) return;
+            Map<String, TokenScriptResult.Attribute> tokenResults = results.get(tokenId);
+            if (tokenResults == null)
+            {
+                results.putIfAbsent(tokenId, new ConcurrentHashMap<>());
+                tokenResults = results.get(tokenId);
+            }
+            tokenResults.put(name, result);
+        }
+
+        @Override
+        public String resolveReference(Token token, TokenscriptElement element, BigInteger tokenId, TokenDefinition definition, AttributeInterface attrIf)
+        {
+            if (TextUtils.isEmpty(element.value))
+            {
+                int index = element.getTokenIndex();
+                if (tokenIds != null && index >= 0 && index < tokenIds.size())
+                {
+                    return tokenIds.get(index).toString();
+                }
+
+                Map<String, TokenScriptResult.Attribute> tokenResults = results.get(tokenId);
+                TokenScriptResult.Attribute resolved = tokenResults != null && element.ref != null ? tokenResults.get(element.ref) : null;
+                if (resolved != null) return resolved.text;
+            }
+
+            return super.resolveReference(token, element, tokenId, definition, attrIf);
+        }
+    }
+}
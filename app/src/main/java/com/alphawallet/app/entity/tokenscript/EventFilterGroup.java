@@ -0,0 +1,120 @@
+package com.alphawallet.app.entity.tokenscript;
+
+import com.alphawallet.token.entity.EventDefinition;
+
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.request.Filter;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Event definitions that can be read with one eth_getLogs call: same chain, same contract and the same
+ * indexed topic filters. The event signatures (topic 0) are combined into one OR filter, and each returned
+ * log is handed back to the events whose signature it carries.
+ */
+public class EventFilterGroup
+{
+    public final String key;
+    public final int chainId;
+    public final String address;
+    public final List<EventDefinition> events = new ArrayList<>();
+    private final List<Filter.FilterTopic> indexedTopics;
+    private final Map<String, List<EventDefinition>> eventsBySignature = new HashMap<>();
+
+    public EventFilterGroup(String key, int chainId, String address, EthFilter template)
+    {
+        this.key = key;
+        this.chainId = chainId;
+        this.address = address;
+        List<Filter.FilterTopic> topics = template.getTopics();
+        this.indexedTopics = new ArrayList<>(topics.subList(1, topics.size()));
+    }
+
+    public static String groupKey(EventDefinition ev, EthFilter filter)
+    {
+        List<Filter.FilterTopic> topics = filter.getTopics();
+        StringBuilder sb = new StringBuilder();
+        sb.append(ev.getEventChainId()).append("-").append(filter.getAddress().get(0).toLowerCase());
+        for (int i = 1; i < topics.size(); i++)
+        {
+            sb.append("-").append(topicKey(topics.get(i)));
+        }
+        return sb.toString();
+    }
+
+    public void add(EventDefinition ev, EthFilter filter)
+    {
+        events.add(ev);
+        String signature = ((String) filter.getTopics().get(0).getValue()).toLowerCase();
+        List<EventDefinition> sigEvents = eventsBySignature.get(signature);
+        if (sigEvents == null)
+        {
+            sigEvents = new ArrayList<>();
+            eventsBySignature.put(signature, sigEvents);
+        }
+        sigEvents.add(ev);
+    }
+
+    /**
+     * @return the earliest block any event in the group still needs to read
+     */
+    public BigInteger getStartBlock()
+    {
+        BigInteger startBlock = null;
+        for (EventDefinition ev : events)
+        {
+            if (startBlock == null || ev.readBlock.compareTo(startBlock) < 0) startBlock = ev.readBlock;
+        }
+        return startBlock != null ? startBlock : BigInteger.ZERO;
+    }
+
+    public EthFilter buildFilter(BigInteger fromBlock, BigInteger toBlock)
+    {
+        EthFilter filter = new EthFilter(DefaultBlockParameter.valueOf(fromBlock), DefaultBlockParameter.valueOf(toBlock), address);
+        String[] signatures = eventsBySignature.keySet().toArray(new String[0]);
+        if (signatures.length == 1) filter.addSingleTopic(signatures[0]);
+        else filter.addOptionalTopics(signatures);
+        filter.getTopics().addAll(indexedTopics);
+        return filter;
+    }
+
+    /**
+     * @return events this log belongs to which haven't already read its block
+     */
+    public List<EventDefinition> getEvents(Log log)
+    {
+        List<EventDefinition> matching = new ArrayList<>();
+        if (log.getTopics() == null || log.getTopics().isEmpty()) return matching;
+        List<EventDefinition> sigEvents = eventsBySignature.get(log.getTopics().get(0).toLowerCase());
+        if (sigEvents == null) return matching;
+        for (EventDefinition ev : sigEvents)
+        {
+            if (log.getBlockNumber().compareTo(ev.readBlock) >= 0) matching.add(ev);
+        }
+        return matching;
+    }
+
+    private static String topicKey(Filter.FilterTopic topic)
+    {
+        Object value = topic.getValue();
+        if (value instanceof List)
+        {
+            StringBuilder sb = new StringBuilder("[");
+            for (Object item : (List<?>) value)
+            {
+                sb.append(topicKey((Filter.FilterTopic) item)).append(",");
+            }
+            return sb.append("]").toString();
+        }
+        else
+        {
+            return String.valueOf(value);
+        }
+    }
+}
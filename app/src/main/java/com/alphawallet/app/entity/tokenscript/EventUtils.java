@@ -128,7 +128,9 @@ import org.web3j.utils.Numeric;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import io.reactivex.Single;
 
@@ -152,6 +154,19 @@ import static org.web3j.tx.Contract.staticExtractEventParameters;
  */
 public abstract class EventUtils
 {
+    private static final int BLOCK_CACHE_SIZE = 256;
+
+    //A mined block never changes, so blocks fetched by hash can be shared by every caller. Events and transactions
+    //from the same block then cost one eth_getBlockByHash
+    private static final Map<String, EthBlock> blockCache = new LinkedHashMap<String, EthBlock>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, EthBlock> eldest)
+        {
+            return size() > BLOCK_CACHE_SIZE;
+        }
+    };
+
     public static EthFilter generateLogFilter(EventDefinition ev, List<BigInteger> tokenIds, AttributeInterface attrIf) throws Exception
     {
         return generateLogFilter(ev, null, tokenIds, attrIf);
@@ -251,8 +266,24 @@ public abstract class EventUtils
             EthBlock txResult;
             try
             {
-                txResult = web3j.ethGetBlockByHash(blockHash.trim(), false).send();
-                System.out.println(txResult.getResult());
+                String hash = blockHash.trim().toLowerCase();
+                synchronized (blockCache)
+                {
+                    txResult = blockCache.get(hash);
+                }
+
+                if (txResult == null)
+                {
+                    txResult = web3j.ethGetBlockByHash(hash, false).send();
+                    System.out.println(txResult.getResult());
+                    if (txResult.getBlock() != null)
+                    {
+                        synchronized (blockCache)
+                        {
+                            blockCache.put(hash, txResult);
+                        }
+                    }
+                }
             }
             catch (IOException | NullPointerException e)
             {
@@ -1018,6 +1018,11 @@ public abstract class TokenscriptFunction
         refTags.putAll(refs);
     }
 
+    public Map<String, String> getLocalRefs()
+    {
+        return refTags;
+    }
+
     public void clearParseMaps()
     {
         localAttrs.clear();
@@ -12,6 +12,7 @@ import com.alphawallet.token.entity.Signable;
 import com.alphawallet.token.tools.Numeric;
 
 import java.math.BigInteger;
+import java.util.List;
 
 import io.reactivex.Single;
 import io.reactivex.android.schedulers.AndroidSchedulers;
@@ -37,6 +38,14 @@ public class CreateTransactionInteract
         return transactionRepository.getSignature(wallet, message, chainId);
     }
 
+    /**
+     * Sign a burst of messages with the key unlocked once; authentication must already have been given
+     */
+    public Single<List<SignatureFromKey>> sign(Wallet wallet, List<Signable> messages)
+    {
+        return transactionRepository.getSignatures(wallet, messages);
+    }
+
     public Single<String> create(Wallet from, String to, BigInteger subunitAmount, BigInteger gasPrice, BigInteger gasLimit, byte[] data, int chainId)
     {
         return transactionRepository.createTransaction(from, to, subunitAmount, gasPrice, gasLimit, data, chainId)
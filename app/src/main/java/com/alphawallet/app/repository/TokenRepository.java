@@ -28,6 +28,8 @@ import com.alphawallet.app.service.TokensService;
 import com.alphawallet.app.util.AWEnsResolver;
 import com.alphawallet.app.util.Utils;
 import com.alphawallet.token.entity.MagicLinkData;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.web3j.abi.FunctionEncoder;
 import org.web3j.abi.FunctionReturnDecoder;
@@ -43,13 +45,16 @@ import org.web3j.abi.datatypes.generated.Bytes4;
 import org.web3j.abi.datatypes.generated.Int256;
 import org.web3j.abi.datatypes.generated.Uint256;
 import org.web3j.abi.datatypes.generated.Uint8;
+import org.web3j.protocol.ObjectMapperFactory;
 import org.web3j.protocol.Web3j;
 import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Request;
 import org.web3j.protocol.core.methods.response.EthBlockNumber;
 import org.web3j.protocol.core.methods.response.EthCall;
 import org.web3j.utils.Numeric;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
@@ -57,9 +62,12 @@ import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Completable;
@@ -95,8 +103,17 @@ public class TokenRepository implements TokenRepositoryType {
 
     private static final int NODE_COMMS_ERROR = -1;
     private static final int CONTRACT_BALANCE_NULL = -2;
+    private static final int BALANCE_BATCH_SIZE = 100; //eth_calls per JSON-RPC batch; public nodes reject very large batches
 
     private final Map<Integer, Web3j> web3jNodeServers;
+    private static final ConcurrentMap<Integer, NodeConnection> sharedNodes = new ConcurrentHashMap<>();
+    private static final OkHttpClient sharedOkClient = new OkHttpClient.Builder()
+            .connectTimeout(10, TimeUnit.SECONDS)
+            .readTimeout(10, TimeUnit.SECONDS)
+            .writeTimeout(10, TimeUnit.SECONDS)
+            .retryOnConnectionFailure(false)
+            .build();
+    private final Map<Integer, AWHttpService> nodeServices;
     private AWEnsResolver ensResolver;
 
     public TokenRepository(
@@ -113,12 +130,15 @@ public class TokenRepository implements TokenRepositoryType {
         this.tickerService = tickerService;
 
         web3jNodeServers = new ConcurrentHashMap<>();
+        nodeServices = new ConcurrentHashMap<>();
     }
 
     private void buildWeb3jClient(NetworkInfo networkInfo)
     {
-        AWHttpService publicNodeService = new AWHttpService(networkInfo.rpcServerUrl, networkInfo.backupNodeUrl, okClient, false);
+        AWHttpService publicNodeService = new AWHttpService(networkInfo.rpcServerUrl, networkInfo.backupNodeUrl, okClient, false, true);
+        publicNodeService.setHedgeReads(true);
         EthereumNetworkRepository.addRequiredCredentials(networkInfo.chainId, publicNodeService);
+        nodeServices.put(networkInfo.chainId, publicNodeService);
         web3jNodeServers.put(networkInfo.chainId, Web3j.build(publicNodeService));
     }
 
@@ -299,6 +319,25 @@ public class TokenRepository implements TokenRepositoryType {
                 .observeOn(Schedulers.io());
     }
 
+    @Override
+    public Single<String[]> updateERC20Balances(String walletAddress, int chainId, List<String> tokenAddresses)
+    {
+        Wallet wallet = new Wallet(walletAddress);
+        return Single.fromCallable(() -> {
+                Map<String, BigDecimal> balances = checkUint256Balances(wallet, chainId, tokenAddresses);
+                String[] changed = localSource.updateTokenBalance(wallet, chainId, balances, ContractType.ERC20);
+
+                if (balances.containsKey(wallet.address.toLowerCase()))
+                {
+                    updateNativeToken(wallet, chainId);
+                }
+
+                return changed;
+            })
+                .subscribeOn(Schedulers.io())
+                .observeOn(Schedulers.io());
+    }
+
     @Override
     public Single<Token> addToken(Wallet wallet, Token token)
     {
@@ -641,6 +680,88 @@ public class TokenRepository implements TokenRepositoryType {
         return balance;
     }
 
+    /**
+     * Checks the Uint256 balance of many tokens on one chain, sending the balanceOf calls as JSON-RPC batches
+     * If a node doesn't accept the batch, each token in it is checked individually
+     * @param wallet
+     * @param chainId
+     * @param tokenAddresses
+     * @return balance of each token, keyed by lowercase address; -1 if the balance couldn't be read
+     */
+    private Map<String, BigDecimal> checkUint256Balances(@NonNull Wallet wallet, int chainId, List<String> tokenAddresses)
+    {
+        Map<String, BigDecimal> balances = new HashMap<>();
+        Function function = balanceOf(wallet.address);
+        String encodedFunction = FunctionEncoder.encode(function);
+
+        for (int start = 0; start < tokenAddresses.size(); start += BALANCE_BATCH_SIZE)
+        {
+            List<String> batch = tokenAddresses.subList(start, Math.min(start + BALANCE_BATCH_SIZE, tokenAddresses.size()));
+            String[] responses = batchEthCall(wallet, chainId, batch, encodedFunction);
+
+            for (int i = 0; i < batch.size(); i++)
+            {
+                String tokenAddress = batch.get(i);
+                BigDecimal balance = BigDecimal.valueOf(-1);
+                if (responses == null)
+                {
+                    balance = checkUint256Balance(wallet, chainId, tokenAddress);
+                }
+                else if (!TextUtils.isEmpty(responses[i]))
+                {
+                    List<Type> response = FunctionReturnDecoder.decode(responses[i], function.getOutputParameters());
+                    if (response.size() > 0) balance = new BigDecimal(((Uint256) response.get(0)).getValue());
+                }
+
+                balances.put(tokenAddress.toLowerCase(), balance);
+            }
+        }
+
+        return balances;
+    }
+
+    /**
+     * Send the same eth_call to several contracts as one JSON-RPC batch
+     * @return call results in contract order (null where a call failed), or null if the batch itself failed
+     */
+    private String[] batchEthCall(Wallet wallet, int chainId, List<String> contracts, String encodedFunction)
+    {
+        Web3j web3j = getService(chainId);
+        AWHttpService service = nodeServices.get(chainId);
+        if (service == null) return null;
+
+        ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+        List<Request<?, EthCall>> requests = new ArrayList<>();
+        Map<Long, Integer> requestIndex = new HashMap<>();
+        for (String contract : contracts)
+        {
+            Request<?, EthCall> request = web3j.ethCall(createEthCallTransaction(wallet.address, contract, encodedFunction),
+                    DefaultBlockParameterName.LATEST);
+            requestIndex.put(request.getId(), requests.size());
+            requests.add(request);
+        }
+
+        try (InputStream result = service.sendBatch(objectMapper.writeValueAsString(requests)))
+        {
+            JsonNode responses = objectMapper.readTree(result);
+            if (responses == null || !responses.isArray()) return null; //node doesn't support batches
+
+            String[] values = new String[contracts.size()];
+            for (JsonNode node : responses)
+            {
+                EthCall response = objectMapper.treeToValue(node, EthCall.class);
+                Integer index = requestIndex.get(response.getId());
+                if (index != null && !response.hasError()) values[index] = response.getValue();
+            }
+            return values;
+        }
+        catch (Exception e)
+        {
+            if (LOG_CONTRACT_EXCEPTION_EVENTS) e.printStackTrace();
+            return null;
+        }
+    }
+
     /**
      * Checks the balance of a token returning Uint256 value, eg ERC20
      * If there was a network error the balance is taken from the previously recorded value
@@ -1499,17 +1620,65 @@ public class TokenRepository implements TokenRepositoryType {
         localSource.storeTokenUrl(networkId, address, imageUrl);
     }
 
+    /**
+     * Shared Web3j per chain, so concurrent identical calls from different parts of the app are coalesced
+     * and calls made together are batched
+     * @param chainId
+     * @return
+     */
     public static Web3j getWeb3jService(int chainId)
     {
-        OkHttpClient okClient = new OkHttpClient.Builder()
-                .connectTimeout(10, TimeUnit.SECONDS)
-                .readTimeout(10, TimeUnit.SECONDS)
-                .writeTimeout(10, TimeUnit.SECONDS)
-                .retryOnConnectionFailure(false)
-                .build();
-        AWHttpService publicNodeService = new AWHttpService(EthereumNetworkRepository.getNodeURLByNetworkId (chainId), EthereumNetworkRepository.getSecondaryNodeURL(chainId), okClient, false);
-        EthereumNetworkRepository.addRequiredCredentials(chainId, publicNodeService);
-        return Web3j.build(publicNodeService);
+        return getSharedNode(chainId).web3j;
+    }
+
+    /**
+     * @return the node service behind getWeb3jService, for callers sending their own JSON-RPC batches
+     */
+    public static AWHttpService getNodeService(int chainId)
+    {
+        return getSharedNode(chainId).nodeService;
+    }
+
+    /**
+     * Shared connection for the chain; replaced if the network's node URLs have changed since it was built,
+     * so an edited RPC URL is used from the next call on
+     */
+    private static NodeConnection getSharedNode(int chainId)
+    {
+        String nodeUrl = EthereumNetworkRepository.getNodeURLByNetworkId(chainId);
+        String secondaryUrl = EthereumNetworkRepository.getSecondaryNodeURL(chainId);
+        NodeConnection node = sharedNodes.get(chainId);
+        while (node == null || !node.isFor(nodeUrl, secondaryUrl))
+        {
+            NodeConnection replacement = new NodeConnection(chainId, nodeUrl, secondaryUrl);
+            boolean stored = node == null ? sharedNodes.putIfAbsent(chainId, replacement) == null
+                    : sharedNodes.replace(chainId, node, replacement);
+            node = stored ? replacement : sharedNodes.get(chainId); //another thread got there first
+        }
+        return node;
+    }
+
+    private static class NodeConnection
+    {
+        final String nodeUrl;
+        final String secondaryUrl;
+        final AWHttpService nodeService;
+        final Web3j web3j;
+
+        NodeConnection(int chainId, String nodeUrl, String secondaryUrl)
+        {
+            this.nodeUrl = nodeUrl;
+            this.secondaryUrl = secondaryUrl;
+            nodeService = new AWHttpService(nodeUrl, secondaryUrl, sharedOkClient, false, true);
+            nodeService.setHedgeReads(true);
+            EthereumNetworkRepository.addRequiredCredentials(chainId, nodeService);
+            web3j = Web3j.build(nodeService);
+        }
+
+        boolean isFor(String nodeUrl, String secondaryUrl)
+        {
+            return Objects.equals(this.nodeUrl, nodeUrl) && Objects.equals(this.secondaryUrl, secondaryUrl);
+        }
     }
 
     private boolean ignoreToken(Token t)
@@ -9,7 +9,6 @@ import com.alphawallet.app.entity.NetworkInfo;
 import com.alphawallet.app.entity.Wallet;
 import com.alphawallet.app.entity.opensea.Asset;
 import com.alphawallet.app.entity.opensea.AssetContract;
-import com.alphawallet.app.entity.opensea.Trait;
 import com.alphawallet.app.entity.tokens.ERC721Token;
 import com.alphawallet.app.entity.tokens.Token;
 import com.alphawallet.app.entity.tokens.TokenCardMeta;
@@ -28,6 +27,7 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -393,32 +393,7 @@ public class TokensRealmSource implements TokenLocalSource {
 
             if (realmToken != null)
             {
-                String currentBalance = realmToken.getBalance();
-                String newBalance = balance.toString();
-                if (balanceArray != null) newBalance = Utils.bigIntListToString(balanceArray, true);
-
-                if (type == ContractType.ERC721 || type == ContractType.ERC721_LEGACY)
-                {
-                    //only used for determining if balance is now zero
-                    if (balance.equals(BigDecimal.ZERO) && !realmToken.getBalance().equals("0"))
-                    {
-                        realm.beginTransaction();
-                        realmToken.setBalance("0");
-                        realmToken.setUpdateTime(System.currentTimeMillis());
-                        deleteAssets(realm, key);
-                        Log.d(TAG, "Zero out ERC721 balance: " + realmToken.getName() + " :" + tokenAddress);
-                        balanceChanged = true;
-                    }
-                }
-                else if (!newBalance.equals(currentBalance))
-                {
-                    realm.beginTransaction();
-                    //updating balance
-                    realmToken.setBalance(newBalance);
-                    realmToken.setUpdateTime(System.currentTimeMillis());
-                    Log.d(TAG, "Update Token Balance: " + realmToken.getName() + " :" + tokenAddress);
-                    balanceChanged = true;
-                }
+                balanceChanged = writeTokenBalance(realm, realmToken, key, balance, balanceArray, type);
 
                 if (realm.isInTransaction())
                 {
@@ -435,6 +410,80 @@ public class TokensRealmSource implements TokenLocalSource {
         return balanceChanged;
     }
 
+    /**
+     * Store balances for several tokens on one chain in a single transaction, and mark them all as checked
+     * @param wallet
+     * @param chainId
+     * @param balances balance for each token address; -1 if the balance couldn't be read
+     * @param type
+     * @return addresses of the tokens whose balance changed
+     */
+    @Override
+    public String[] updateTokenBalance(Wallet wallet, int chainId, Map<String, BigDecimal> balances, ContractType type)
+    {
+        List<String> changed = new ArrayList<>();
+        try (Realm realm = realmManager.getRealmInstance(wallet))
+        {
+            realm.executeTransaction(r -> {
+                for (Map.Entry<String, BigDecimal> entry : balances.entrySet())
+                {
+                    String key = databaseKey(chainId, entry.getKey());
+                    RealmToken realmToken = r.where(RealmToken.class)
+                            .equalTo("address", key)
+                            .equalTo("chainId", chainId)
+                            .findFirst();
+
+                    if (realmToken == null) continue;
+                    realmToken.setUpdateTime(System.currentTimeMillis());
+                    if (!entry.getValue().equals(BigDecimal.valueOf(-1))
+                            && writeTokenBalance(r, realmToken, key, entry.getValue(), null, type))
+                    {
+                        changed.add(entry.getKey());
+                    }
+                }
+            });
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+        }
+
+        return changed.toArray(new String[0]);
+    }
+
+    // Write balance if it changed, opening a transaction if one isn't already open
+    private boolean writeTokenBalance(Realm realm, RealmToken realmToken, String key, BigDecimal balance, List<BigInteger> balanceArray, ContractType type)
+    {
+        String currentBalance = realmToken.getBalance();
+        String newBalance = balance.toString();
+        if (balanceArray != null) newBalance = Utils.bigIntListToString(balanceArray, true);
+
+        if (type == ContractType.ERC721 || type == ContractType.ERC721_LEGACY)
+        {
+            //only used for determining if balance is now zero
+            if (balance.equals(BigDecimal.ZERO) && !realmToken.getBalance().equals("0"))
+            {
+                if (!realm.isInTransaction()) realm.beginTransaction();
+                realmToken.setBalance("0");
+                realmToken.setUpdateTime(System.currentTimeMillis());
+                deleteAssets(realm, key);
+                Log.d(TAG, "Zero out ERC721 balance: " + realmToken.getName() + " :" + realmToken.getTokenAddress());
+                return true;
+            }
+        }
+        else if (!newBalance.equals(currentBalance))
+        {
+            if (!realm.isInTransaction()) realm.beginTransaction();
+            //updating balance
+            realmToken.setBalance(newBalance);
+            realmToken.setUpdateTime(System.currentTimeMillis());
+            Log.d(TAG, "Update Token Balance: " + realmToken.getName() + " :" + realmToken.getTokenAddress());
+            return true;
+        }
+
+        return false;
+    }
+
     @Override
     public void updateTokenBalance(NetworkInfo network, Wallet wallet, Token token)
     {
@@ -555,6 +604,14 @@ public class TokensRealmSource implements TokenLocalSource {
         }
     }
 
+    /**
+     * Stores the token's assets, writing only what changed: new token ids are inserted, stored assets whose
+     * fields differ are updated in place and token ids no longer held are deleted. Called inside the
+     * caller's transaction
+     * @param realm
+     * @param token
+     * @throws RealmException
+     */
     private void saveERC721Assets(Realm realm, Token token) throws RealmException
     {
         ERC721Token e;
@@ -568,39 +625,52 @@ public class TokensRealmSource implements TokenLocalSource {
         }
 
         String dbKey = databaseKey(token);
-
-        deleteAssets(realm, dbKey);
-
-        //now create the assets inside this
+        Map<String, Asset> incoming = new HashMap<>();
         for (Asset asset : e.getTokenAssets().values())
         {
-            RealmERC721Asset realmAsset = realm.where(RealmERC721Asset.class)
-                    .equalTo("tokenIdAddr", RealmERC721Asset.tokenIdAddrName(asset.getTokenId(), dbKey))
-                    .findFirst();
+            incoming.put(RealmERC721Asset.tokenIdAddrName(asset.getTokenId(), dbKey), asset);
+        }
 
-            if (realmAsset == null)
+        RealmResults<RealmERC721Asset> storedAssets = realm.where(RealmERC721Asset.class)
+                .beginsWith("tokenIdAddr", dbKey + "-")
+                .findAll();
+
+        List<RealmERC721Asset> removed = new ArrayList<>();
+        for (RealmERC721Asset realmAsset : storedAssets)
+        {
+            Asset asset = incoming.remove(realmAsset.getTokenIdAddr());
+            if (asset == null)
             {
-                realmAsset = realm.createObject(RealmERC721Asset.class,
-                                                RealmERC721Asset.tokenIdAddrName(asset.getTokenId(), dbKey));
-
-                realmAsset.setName(asset.getName());
-                realmAsset.setDescription(asset.getDescription());
-                realmAsset.setExternalLink(asset.getExternalLink());
-                realmAsset.setImagePreviewUrl(asset.getImagePreviewUrl());
-                realmAsset.setBackgroundColor(asset.getBackgroundColor());
-                realmAsset.setTraits(asset.getTraits());
+                removed.add(realmAsset);
             }
             else
             {
-                //see if traits have changed
-                List<Trait> traits = realmAsset.getTraits();
-                if (traits.size() != asset.getTraits().size() || traitsDifferent(traits, asset.getTraits()))
-                {
-                    realmAsset.setImagePreviewUrl(asset.getImagePreviewUrl());
-                    realmAsset.setTraits(asset.getTraits());
-                }
+                updateERC721Asset(realmAsset, asset);
             }
         }
+
+        for (RealmERC721Asset realmAsset : removed)
+        {
+            realmAsset.deleteFromRealm();
+        }
+
+        //remaining assets are new
+        for (Map.Entry<String, Asset> entry : incoming.entrySet())
+        {
+            RealmERC721Asset realmAsset = realm.createObject(RealmERC721Asset.class, entry.getKey());
+            updateERC721Asset(realmAsset, entry.getValue());
+        }
+    }
+
+    // Only write fields that differ, so unchanged assets don't generate any writes
+    private void updateERC721Asset(RealmERC721Asset realmAsset, Asset asset)
+    {
+        if (!TextUtils.equals(realmAsset.getName(), asset.getName())) realmAsset.setName(asset.getName());
+        if (!TextUtils.equals(realmAsset.getDescription(), asset.getDescription())) realmAsset.setDescription(asset.getDescription());
+        if (!TextUtils.equals(realmAsset.getExternalLink(), asset.getExternalLink())) realmAsset.setExternalLink(asset.getExternalLink());
+        if (!TextUtils.equals(realmAsset.getImagePreviewUrl(), asset.getImagePreviewUrl())) realmAsset.setImagePreviewUrl(asset.getImagePreviewUrl());
+        if (!TextUtils.equals(realmAsset.getBackgroundColor(), asset.getBackgroundColor())) realmAsset.setBackgroundColor(asset.getBackgroundColor());
+        if (!realmAsset.hasTraits(asset.getTraits())) realmAsset.setTraits(asset.getTraits());
     }
 
     private void deleteAssets(Realm realm, String dbKey) throws RealmException
@@ -617,20 +687,6 @@ public class TokensRealmSource implements TokenLocalSource {
         }
     }
 
-    private boolean traitsDifferent(List<Trait> traits, List<Trait> traits1)
-    {
-        for (int i = 0; i < traits.size(); i++)
-        {
-            if (!traits.get(i).getTraitType().equals(traits1.get(i).getTraitType())
-                || !traits.get(i).getValue().equals(traits1.get(i).getValue()))
-            {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
     private List<Asset> getERC721Assets(List<String> keys, Realm realm, Token token)
     {
         List<Asset> assets = new ArrayList<>();
@@ -972,7 +1028,8 @@ public class TokensRealmSource implements TokenLocalSource {
             if (realmItem.getCurrencySymbol().equals(ticker.priceSymbol) && realmItem.getPrice().equals(ticker.price)
                 && realmItem.getPercentChange24h().equals(ticker.percentChange24h))
             {
-                //no update
+                //no update, other than keeping a long unchanged ticker from being removed as outdated
+                if (realmItem.getUpdatedTime() < ticker.updateTime - TICKER_TIMEOUT / 2) realmItem.setUpdatedTime(ticker.updateTime);
                 return;
             }
         }
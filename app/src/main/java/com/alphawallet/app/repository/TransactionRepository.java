@@ -281,6 +281,11 @@ public class TransactionRepository implements TransactionRepositoryType {
 		return accountKeystoreService.signMessage(wallet, message, chainId);
 	}
 
+	@Override
+	public Single<List<SignatureFromKey>> getSignatures(Wallet wallet, List<Signable> messages) {
+		return accountKeystoreService.signMessages(wallet, messages);
+	}
+
 	@Override
 	public Single<byte[]> getSignatureFast(Wallet wallet, String password, byte[] message, int chainId) {
 		return accountKeystoreService.signTransactionFast(wallet, password, message, chainId);
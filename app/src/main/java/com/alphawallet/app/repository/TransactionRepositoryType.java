@@ -23,6 +23,7 @@ public interface TransactionRepositoryType {
 	Single<TransactionData> createTransactionWithSig(Wallet from, BigInteger gasPrice, BigInteger gasLimit, String data, int chainId);
 	Single<TransactionData> getSignatureForTransaction(Wallet wallet, Web3Transaction w3tx, int chainId);
 	Single<SignatureFromKey> getSignature(Wallet wallet, Signable message, int chainId);
+	Single<List<SignatureFromKey>> getSignatures(Wallet wallet, List<Signable> messages);
 	Single<byte[]> getSignatureFast(Wallet wallet, String password, byte[] message, int chainId);
 
     Transaction fetchCachedTransaction(String walletAddr, String hash);
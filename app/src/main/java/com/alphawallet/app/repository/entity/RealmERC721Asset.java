@@ -35,6 +35,11 @@ public class RealmERC721Asset extends RealmObject
         }
     }
 
+    public String getTokenIdAddr()
+    {
+        return tokenIdAddr;
+    }
+
     public String getImagePreviewUrl()
     {
         return imagePreviewUrl;
@@ -101,14 +106,20 @@ public class RealmERC721Asset extends RealmObject
 
     public void setTraits(List<Trait> traits)
     {
+        this.traits = traitsString(traits);
+    }
+
+    public boolean hasTraits(List<Trait> traits)
+    {
+        return traitsString(traits).equals(this.traits);
+    }
+
+    private static String traitsString(List<Trait> traits)
+    {
+        if (traits == null) return "";
+
         StringBuilder sb = new StringBuilder();
         boolean first = true;
-        if (traits == null)
-        {
-            this.traits = "";
-            return;
-        }
-
         for (Trait t : traits)
         {
             if (!first) sb.append(",");
@@ -118,7 +129,7 @@ public class RealmERC721Asset extends RealmObject
             first = false;
         }
 
-        this.traits = sb.toString();
+        return sb.toString();
     }
 
     public static String tokenIdAddrName(String tokenId, String addr)
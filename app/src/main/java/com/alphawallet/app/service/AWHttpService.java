@@ -9,23 +9,38 @@ package com.alphawallet.app.service;
  *
  */
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.gson.JsonParseException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.web3j.protocol.core.Request;
 import org.web3j.protocol.exceptions.ClientConnectionException;
 import org.web3j.protocol.http.HttpService;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.net.SocketTimeoutException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.CipherSuite;
 import okhttp3.ConnectionSpec;
 import okhttp3.Headers;
@@ -94,6 +109,24 @@ public class AWHttpService extends HttpService
 
     private static final Logger log = LoggerFactory.getLogger(org.web3j.protocol.http.HttpService.class);
 
+    private static final long BATCH_WINDOW_MS = 10; //read calls arriving within this window of each other go out as one batch
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final long BATCH_RESPONSE_TIMEOUT = 60; //seconds; upper bound, the http client timeouts normally fire first
+
+    // Read-only calls that are safe to batch, and to share one response between identical concurrent callers
+    private static final Set<String> BATCHABLE_METHODS = new HashSet<>(Arrays.asList(
+            "eth_call", "eth_getBalance", "eth_blockNumber", "eth_getCode", "eth_gasPrice", "eth_getTransactionCount",
+            "eth_getTransactionReceipt", "eth_getTransactionByHash", "eth_getBlockByNumber", "eth_getBlockByHash",
+            "eth_getLogs", "eth_chainId", "net_version"));
+
+    private static final long DEFAULT_HEDGE_DELAY = 1000; //ms, until the node has enough latency samples
+    private static final long MIN_HEDGE_DELAY = 200;
+    private static final long MAX_HEDGE_DELAY = 5000;
+
+    // Idempotent reads that may be sent to a second node while the first is still outstanding
+    private static final Set<String> HEDGEABLE_METHODS = new HashSet<>(Arrays.asList(
+            "eth_call", "eth_getBalance", "eth_getLogs"));
+
     private OkHttpClient httpClient;
 
     private final String url;
@@ -102,17 +135,126 @@ public class AWHttpService extends HttpService
     private final boolean includeRawResponse;
 
     private HashMap<String, String> headers = new HashMap<>();
+    private Headers builtHeaders;
+
+    private final boolean batchRequests;
+    private volatile boolean hedgeReads;
+    private final Object batchLock = new Object();
+    private final Map<String, PendingCall> inFlight = new HashMap<>(); //queued or sent calls, keyed on method + params
+    private List<PendingCall> queued = new ArrayList<>();
 
     public AWHttpService(String url, String secondaryUrl, OkHttpClient httpClient, boolean includeRawResponses) {
+        this(url, secondaryUrl, httpClient, includeRawResponses, false);
+    }
+
+    /**
+     * @param batchRequests combine read-only calls made close together into JSON-RPC batches, and serve identical
+     *                      concurrent calls from a single request. Use for services shared across the app
+     */
+    public AWHttpService(String url, String secondaryUrl, OkHttpClient httpClient, boolean includeRawResponses, boolean batchRequests) {
         super(includeRawResponses);
         this.url = url;
         this.httpClient = httpClient;
         this.includeRawResponse = includeRawResponses;
         this.secondaryUrl = secondaryUrl;
+        this.batchRequests = batchRequests;
+    }
+
+    /**
+     * Hedge idempotent reads (eth_call, eth_getBalance, eth_getLogs) against the secondary node
+     * @param hedge
+     */
+    public void setHedgeReads(boolean hedge)
+    {
+        hedgeReads = hedge;
     }
 
+    /**
+     * Keeps the original contract for web3j callers: timeouts and error responses from every node throw
+     * SocketTimeoutException; any other IO failure, eg no connection or the call being interrupted, gives an
+     * empty response rather than an exception
+     */
     @Override
     protected InputStream performIO(String request) throws IOException
+    {
+        try
+        {
+            JsonNode call = batchRequests || hedgeReads ? parseCall(request) : null;
+            if (batchRequests && isBatchable(call))
+            {
+                return performBatchedIO(call);
+            }
+
+            return sendRequest(request, isHedgeable(call));
+        }
+        catch (SocketTimeoutException e)
+        {
+            throw e;
+        }
+        catch (IOException e)
+        {
+            return buildNullInputStream();
+        }
+    }
+
+    /**
+     * Send to the fastest healthy node, falling back to the others in order of preference.
+     * Idempotent reads are hedged: if the first node hasn't answered within its recent p95 latency, the same
+     * request goes to the next node and whichever answers first is used
+     */
+    private InputStream sendRequest(String request, boolean hedge) throws IOException
+    {
+        List<String> nodes = nodesByPreference();
+        if (hedge && nodes.size() > 1)
+        {
+            return sendHedged(request, nodes.get(0), nodes.get(1));
+        }
+
+        IOException lastError = null;
+        for (String node : nodes)
+        {
+            try
+            {
+                return readResponse(callNode(node, request));
+            }
+            catch (SocketTimeoutException e) //seamlessly attempt a call to next node if this one timed out
+            {
+                lastError = e;
+            }
+            catch (InterruptedIOException e)
+            {
+                //expected when user switches wallet or network
+                return buildNullInputStream();
+            }
+            catch (IOException e)
+            {
+                lastError = e;
+            }
+        }
+
+        throw lastError != null ? lastError : new SocketTimeoutException("No node available");
+    }
+
+    private List<String> nodesByPreference()
+    {
+        List<String> available = new ArrayList<>();
+        List<String> unavailable = new ArrayList<>();
+        for (String node : secondaryUrl != null ? Arrays.asList(url, secondaryUrl) : Collections.singletonList(url))
+        {
+            if (NodeStats.forNode(node).isAvailable()) available.add(node);
+            else unavailable.add(node);
+        }
+
+        if (available.size() > 1 && NodeStats.forNode(available.get(1)).score() < NodeStats.forNode(available.get(0)).score())
+        {
+            Collections.reverse(available);
+        }
+
+        available.addAll(unavailable); //circuit open on every node: still try them rather than fail outright
+        return available;
+    }
+
+    private okhttp3.Request buildRequest(String node, String request)
     {
         RequestBody requestBody;
         try
@@ -124,88 +266,326 @@ public class AWHttpService extends HttpService
             requestBody = RequestBody.create("", MEDIA_TYPE_TEXT);
         }
 
-        Headers headers = buildHeaders();
-        okhttp3.Request httpRequest =
-                new okhttp3.Request.Builder().url(url).headers(headers).post(requestBody).build();
-
-        okhttp3.Response response;
+        return new okhttp3.Request.Builder().url(node).headers(buildHeaders()).post(requestBody).build();
+    }
 
+    /**
+     * Blocking call to one node, recording its latency and outcome
+     * @return successful response
+     * @throws IOException on network error or an unsuccessful (eg rate limited) response
+     */
+    private Response callNode(String node, String request) throws IOException
+    {
+        NodeStats stats = NodeStats.forNode(node);
+        long startTime = System.currentTimeMillis();
+        Response response;
         try
         {
-            //try primary node
-            response = httpClient.newCall(httpRequest).execute();
+            response = httpClient.newCall(buildRequest(node, request)).execute();
+        }
+        catch (InterruptedIOException e)
+        {
+            if (e instanceof SocketTimeoutException) stats.recordFailure(System.currentTimeMillis() - startTime);
+            throw e;
+        }
+        catch (IOException e)
+        {
+            stats.recordFailure(System.currentTimeMillis() - startTime);
+            throw e;
+        }
+
+        return checkResponse(response, stats, System.currentTimeMillis() - startTime);
+    }
+
+    private Response checkResponse(Response response, NodeStats stats, long elapsed) throws IOException
+    {
+        if (response.isSuccessful())
+        {
+            stats.recordSuccess(elapsed);
+            return response;
+        }
+
+        stats.recordFailure(elapsed);
+        int code = response.code();
+        ResponseBody responseBody = response.body();
+        String text = responseBody == null ? "N/A" : responseBody.string();
+        response.close();
+        throw new SocketTimeoutException("Invalid response received: " + code + "; " + text);
+    }
+
+    private InputStream readResponse(Response response) throws IOException
+    {
+        processHeaders(response.headers());
+        ResponseBody responseBody = response.body();
+        if (responseBody != null)
+        {
+            return buildInputStream(responseBody);
+        }
+        else
+        {
+            return buildNullInputStream();
         }
-        catch (SocketTimeoutException e) //seamlessly attempt a call to secondary node if primary timed out
+    }
+
+    private InputStream sendHedged(String request, String firstNode, String secondNode) throws IOException
+    {
+        HedgedCall hedged = new HedgedCall();
+        hedged.start(firstNode, request);
+
+        try
         {
-            if (secondaryUrl != null) //only if we have a secondary node
+            NodeResult result = hedged.results.poll(hedgeDelay(firstNode), TimeUnit.MILLISECONDS);
+            if (result == null || result.response == null)
             {
-                return trySecondaryNode(request);
+                hedged.start(secondNode, request); //first node slow or failed
             }
-            else
+            if (result != null) hedged.outstanding--;
+
+            while ((result == null || result.response == null) && hedged.outstanding > 0)
+            {
+                NodeResult next = hedged.results.take();
+                hedged.outstanding--;
+                if (next.response != null || result == null) result = next;
+            }
+
+            hedged.settle(result);
+            if (result == null || result.response == null)
             {
-                throw new SocketTimeoutException();
+                throw result != null && result.error != null ? result.error : new SocketTimeoutException("No response from nodes");
             }
+            return readResponse(result.response);
         }
-        catch (Exception e)
+        catch (InterruptedException e)
         {
+            hedged.settle(null);
+            Thread.currentThread().interrupt();
             return buildNullInputStream();
         }
+    }
+
+    private static long hedgeDelay(String node)
+    {
+        long p95 = NodeStats.forNode(node).p95Latency();
+        if (p95 < 0) return DEFAULT_HEDGE_DELAY;
+        return Math.max(MIN_HEDGE_DELAY, Math.min(MAX_HEDGE_DELAY, p95));
+    }
+
+    private boolean isHedgeable(JsonNode call)
+    {
+        if (!hedgeReads || call == null) return false;
+        if (call.isArray())
+        {
+            if (call.size() == 0) return false;
+            for (JsonNode item : call)
+            {
+                if (!HEDGEABLE_METHODS.contains(item.path("method").asText())) return false;
+            }
+            return true;
+        }
+        return HEDGEABLE_METHODS.contains(call.path("method").asText());
+    }
+
+    private JsonNode parseCall(String request)
+    {
+        try
+        {
+            return objectMapper.readTree(request);
+        }
+        catch (IOException e)
+        {
+            return null; //not JSON we understand; send as is
+        }
+    }
+
+    /**
+     * Send a JSON-RPC batch (an array of requests) with the same failover as single calls
+     * @param batchRequest serialised request array
+     * @return response body; an array of responses if the node supports batching
+     * @throws IOException
+     */
+    public InputStream sendBatch(String batchRequest) throws IOException
+    {
+        return sendRequest(batchRequest, isHedgeable(parseCall(batchRequest)));
+    }
 
-        if (response.code()/100 == 4) //rate limited
+    /**
+     * Send web3j requests as one JSON-RPC batch
+     * @param requests requests built from a Web3j using this service
+     * @param responseType response class of the requests
+     * @return responses keyed by request id, or null if the node didn't return a batch response
+     * @throws IOException
+     */
+    public <T extends org.web3j.protocol.core.Response<?>> Map<Long, T> sendBatch(List<? extends Request<?, T>> requests, Class<T> responseType) throws IOException
+    {
+        try (InputStream result = sendBatch(objectMapper.writeValueAsString(requests)))
         {
-            return trySecondaryNode(request);
+            JsonNode responses = objectMapper.readTree(result);
+            if (responses == null || !responses.isArray()) return null; //node doesn't support batches
+
+            Map<Long, T> results = new HashMap<>();
+            for (JsonNode node : responses)
+            {
+                T response = objectMapper.treeToValue(node, responseType);
+                results.put(response.getId(), response);
+            }
+            return results;
         }
+    }
 
-        return processNodeResponse(response, request, false);
+    /**
+     * @return true if the call is a single read-only request that can be batched
+     */
+    private static boolean isBatchable(JsonNode call)
+    {
+        return call != null && call.isObject() && call.has("id") && BATCHABLE_METHODS.contains(call.path("method").asText());
     }
 
-    private InputStream trySecondaryNode(String request) throws IOException
+    /**
+     * Queue a call for the next batch, or join an identical call already queued or in flight.
+     * The first caller into an empty queue waits out the batch window then sends everything queued so far,
+     * so no extra threads are needed
+     */
+    private InputStream performBatchedIO(JsonNode call) throws IOException
     {
-        RequestBody requestBody = RequestBody.create(request, JSON_MEDIA_TYPE);
-        Headers headers = buildHeaders();
+        String key = callKey(call);
+        PendingCall pending;
+        boolean sendsBatch = false;
 
-        okhttp3.Request httpRequest =
-                new okhttp3.Request.Builder().url(secondaryUrl).headers(headers).post(requestBody).build();
+        synchronized (batchLock)
+        {
+            pending = inFlight.get(key);
+            if (pending == null)
+            {
+                pending = new PendingCall(call);
+                inFlight.put(key, pending);
+                sendsBatch = queued.isEmpty();
+                queued.add(pending);
+            }
+        }
 
-        okhttp3.Response response;
+        if (sendsBatch) sendQueuedCalls();
 
         try
         {
-            response = httpClient.newCall(httpRequest).execute();
+            if (!pending.done.await(BATCH_RESPONSE_TIMEOUT, TimeUnit.SECONDS))
+            {
+                throw new SocketTimeoutException("No response for batched call");
+            }
         }
-        catch (InterruptedIOException e)
+        catch (InterruptedException e)
         {
-            return buildNullInputStream();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
         }
 
-        return processNodeResponse(response, request, true);
+        if (pending.error != null) throw pending.error;
+
+        //each caller gets the response with its own request id
+        ObjectNode response = pending.response.deepCopy();
+        response.set("id", call.get("id"));
+        return new ByteArrayInputStream(objectMapper.writeValueAsBytes(response));
     }
 
-    private InputStream processNodeResponse(Response response, String request, boolean useSecondaryNode) throws IOException
+    private static String callKey(JsonNode call)
     {
-        processHeaders(response.headers());
-        ResponseBody responseBody = response.body();
-        if (response.isSuccessful())
+        return call.path("method").asText() + call.path("params").toString();
+    }
+
+    private void sendQueuedCalls()
+    {
+        try
+        {
+            Thread.sleep(BATCH_WINDOW_MS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt(); //still need to send the calls other threads are waiting on
+        }
+
+        List<PendingCall> calls;
+        synchronized (batchLock)
+        {
+            calls = queued;
+            queued = new ArrayList<>();
+        }
+
+        for (int start = 0; start < calls.size(); start += MAX_BATCH_SIZE)
+        {
+            sendBatchedCalls(calls.subList(start, Math.min(start + MAX_BATCH_SIZE, calls.size())));
+        }
+    }
+
+    private void sendBatchedCalls(List<PendingCall> calls)
+    {
+        try
         {
-            if (responseBody != null)
+            if (calls.size() == 1)
             {
-                return buildInputStream(responseBody);
+                sendSingleCall(calls.get(0));
+                return;
             }
-            else
+
+            ArrayNode batch = objectMapper.createArrayNode();
+            for (PendingCall call : calls) batch.add(call.request);
+
+            JsonNode responses;
+            try (InputStream in = sendRequest(batch.toString(), isHedgeable(batch)))
             {
-                return buildNullInputStream();
+                responses = objectMapper.readTree(in);
+            }
+
+            if (responses == null || !responses.isArray()) //node doesn't support batches
+            {
+                for (PendingCall call : calls) sendSingleCall(call);
+                return;
+            }
+
+            Map<String, JsonNode> responseById = new HashMap<>();
+            for (JsonNode response : responses)
+            {
+                responseById.put(response.path("id").asText(), response);
+            }
+
+            for (PendingCall call : calls)
+            {
+                JsonNode response = responseById.get(call.request.path("id").asText());
+                if (response != null && response.isObject()) call.response = (ObjectNode) response;
+                else sendSingleCall(call);
             }
         }
-        else if (!useSecondaryNode && secondaryUrl != null)
+        catch (IOException e)
         {
-            return trySecondaryNode(request);
+            for (PendingCall call : calls)
+            {
+                if (call.response == null && call.error == null) call.error = e;
+            }
         }
-        else
+        finally
         {
-            int code = response.code();
-            String text = responseBody == null ? "N/A" : responseBody.string();
+            synchronized (batchLock)
+            {
+                for (PendingCall call : calls) inFlight.remove(call.key);
+            }
+
+            for (PendingCall call : calls)
+            {
+                if (call.response == null && call.error == null) call.error = new IOException("No response for batched call");
+                call.done.countDown();
+            }
+        }
+    }
 
-            throw new SocketTimeoutException("Invalid response received: " + code + "; " + text);
+    private void sendSingleCall(PendingCall call)
+    {
+        try (InputStream in = sendRequest(call.request.toString(), isHedgeable(call.request)))
+        {
+            JsonNode response = objectMapper.readTree(in);
+            if (response != null && response.isObject()) call.response = (ObjectNode) response;
+            else call.error = new IOException("Invalid response from node");
+        }
+        catch (IOException e)
+        {
+            call.error = e;
         }
     }
 
@@ -254,22 +634,125 @@ public class AWHttpService extends HttpService
         }
     }
 
-    private Headers buildHeaders() {
-        return Headers.of(headers);
+    private synchronized Headers buildHeaders() {
+        if (builtHeaders == null) builtHeaders = Headers.of(headers);
+        return builtHeaders;
     }
 
-    public void addHeader(String key, String value) {
+    public synchronized void addHeader(String key, String value) {
         headers.put(key, value);
+        builtHeaders = null;
     }
 
-    public void addHeaders(Map<String, String> headersToAdd) {
+    public synchronized void addHeaders(Map<String, String> headersToAdd) {
         headers.putAll(headersToAdd);
+        builtHeaders = null;
     }
 
-    public HashMap<String, String> getHeaders() {
+    public synchronized HashMap<String, String> getHeaders() {
+        builtHeaders = null; //caller may modify the map
         return headers;
     }
 
     @Override
     public void close() throws IOException {}
+
+    /**
+     * The same request sent to one or more nodes asynchronously; the first successful response wins and
+     * the rest are cancelled or closed
+     */
+    private class HedgedCall
+    {
+        final BlockingQueue<NodeResult> results = new LinkedBlockingQueue<>();
+        final List<Call> calls = new ArrayList<>();
+        int outstanding;
+        private boolean settled;
+
+        void start(String node, String request)
+        {
+            NodeStats stats = NodeStats.forNode(node);
+            long startTime = System.currentTimeMillis();
+            Call call = httpClient.newCall(buildRequest(node, request));
+            calls.add(call);
+            outstanding++;
+
+            call.enqueue(new Callback()
+            {
+                @Override
+                public void onFailure(Call call, IOException e)
+                {
+                    if (!call.isCanceled()) stats.recordFailure(System.currentTimeMillis() - startTime);
+                    deliver(new NodeResult(call, null, e));
+                }
+
+                @Override
+                public void onResponse(Call call, Response response)
+                {
+                    try
+                    {
+                        deliver(new NodeResult(call, checkResponse(response, stats, System.currentTimeMillis() - startTime), null));
+                    }
+                    catch (IOException e)
+                    {
+                        deliver(new NodeResult(call, null, e));
+                    }
+                }
+            });
+        }
+
+        private synchronized void deliver(NodeResult result)
+        {
+            if (settled)
+            {
+                if (result.response != null) result.response.close(); //lost the race
+            }
+            else
+            {
+                results.add(result);
+            }
+        }
+
+        synchronized void settle(NodeResult winner)
+        {
+            settled = true;
+            for (Call call : calls)
+            {
+                if (winner == null || winner.response == null || call != winner.call) call.cancel();
+            }
+            for (NodeResult result : results)
+            {
+                if (result != winner && result.response != null) result.response.close();
+            }
+            results.clear();
+        }
+    }
+
+    private static class NodeResult
+    {
+        final Call call;
+        final Response response;
+        final IOException error;
+
+        NodeResult(Call call, Response response, IOException error)
+        {
+            this.call = call;
+            this.response = response;
+            this.error = error;
+        }
+    }
+
+    private static class PendingCall
+    {
+        final String key;
+        final JsonNode request;
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile ObjectNode response;
+        volatile IOException error;
+
+        PendingCall(JsonNode request)
+        {
+            this.key = callKey(request);
+            this.request = request;
+        }
+    }
 }
@@ -5,6 +5,7 @@ import com.alphawallet.app.entity.cryptokeys.SignatureFromKey;
 import com.alphawallet.token.entity.Signable;
 
 import java.math.BigInteger;
+import java.util.List;
 
 import io.reactivex.Completable;
 import io.reactivex.Single;
@@ -69,6 +70,16 @@ public interface AccountKeystoreService {
 			byte[] rawTx,
 			long chainId);
 
+	/**
+	 * Sign a queue of messages with the key unlocked once, in a signing session
+	 * @param signer {@link Wallet} signing; authentication must already have been given
+	 * @param messages messages to sign
+	 * @return signatures in message order
+	 */
+	Single<List<SignatureFromKey>> signMessages(
+			Wallet signer,
+			List<Signable> messages);
+
 	Single<byte[]> signTransactionFast(
 			Wallet signer,
 			String password,
@@ -24,6 +24,8 @@ import com.alphawallet.app.entity.opensea.Asset;
 import com.alphawallet.app.entity.tokens.ERC721Token;
 import com.alphawallet.app.entity.tokens.Token;
 import com.alphawallet.app.entity.tokens.TokenFactory;
+import com.alphawallet.app.entity.tokenscript.AttributeResolver;
+import com.alphawallet.app.entity.tokenscript.EventFilterGroup;
 import com.alphawallet.app.entity.tokenscript.EventUtils;
 import com.alphawallet.app.entity.tokenscript.TokenScriptFile;
 import com.alphawallet.app.entity.tokenscript.TokenscriptFunction;
@@ -51,11 +53,11 @@ import com.alphawallet.token.entity.SigReturnType;
 import com.alphawallet.token.entity.TSAction;
 import com.alphawallet.token.entity.TSSelection;
 import com.alphawallet.token.entity.TokenScriptResult;
-import com.alphawallet.token.entity.TokenscriptContext;
 import com.alphawallet.token.entity.TokenscriptElement;
 import com.alphawallet.token.entity.TransactionResult;
 import com.alphawallet.token.entity.XMLDsigDescriptor;
 import com.alphawallet.token.tools.TokenDefinition;
+import com.alphawallet.token.tools.TokenDefinitionSnapshot;
 
 import org.jetbrains.annotations.NotNull;
 import org.web3j.abi.FunctionEncoder;
@@ -81,13 +83,16 @@ import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
 import java.net.URLEncoder;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -95,6 +100,8 @@ import java.util.TimeZone;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.reactivex.Completable;
 import io.reactivex.Observable;
@@ -131,6 +138,10 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
     private static final String ASSET_DEFINITION_DB = "ASSET-db.realm";
     private static final String BUNDLED_SCRIPT = "bundled";
     private static final long CHECK_TX_LOGS_INTERVAL = 20;
+    private static final int MAX_CACHED_DEFINITIONS = 16;
+    private static final String SNAPSHOT_DIR = "tsSnapshots";
+    private static final int MAX_CONCURRENT_EVENT_CHAINS = 4;
+    private static final int MAX_EVENT_CALLS_PER_CYCLE = 20; //eth_getLogs calls per filter group per check; a long catch up continues next check
 
     private final Context context;
     private final OkHttpClient okHttpClient;
@@ -145,11 +156,22 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
     private final TokenLocalSource tokenLocalSource;
     private final AlphaWalletService alphaWalletService;
     private final TransactionRepositoryType transactionRespository;
-    private TokenDefinition cachedDefinition = null;
+    private final Map<String, TokenDefinition> definitionCache = new LinkedHashMap<String, TokenDefinition>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TokenDefinition> eldest)
+        {
+            return size() > MAX_CACHED_DEFINITIONS;
+        }
+    };                                                                      //Parsed definitions keyed by file hash (or asset path for bundled scripts)
+    private final Map<String, String> definitionKeys = new ConcurrentHashMap<>();  //Contract (TSData key) to definitionCache key
+    private final AtomicInteger definitionCacheHits = new AtomicInteger();
+    private final AtomicInteger definitionCacheMisses = new AtomicInteger();
     private final ConcurrentHashMap<String, EventDefinition> eventList = new ConcurrentHashMap<>(); //List of events built during file load
     private final Semaphore assetLoadingLock;  // used to block if someone calls getAssetDefinitionASync() while loading
     private Disposable eventListener;           // timer thread that periodically checks event logs for scripts that require events
-    private final Semaphore eventConnection;
+    private final AtomicBoolean checkingEvents = new AtomicBoolean(false);
+    private final Map<String, Long> eventChunkSize = new ConcurrentHashMap<>(); //block range per event filter group, adapted to what the node accepts
     private FragmentMessenger homeMessenger;
 
     private final TokenscriptFunction tokenscriptUtility;
@@ -178,7 +200,6 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         tokenLocalSource = trs;
         transactionRespository = trt;
         assetLoadingLock = new Semaphore(1);
-        eventConnection = new Semaphore(1);
         //deleteAllEventData();
         loadAssetScripts();
     }
@@ -238,9 +259,10 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
 
                     if (tsf.exists())
                     {
-                        handledHashes.add(tsf.calcMD5()); //add the hash of the new file
+                        String newHash = tsf.calcMD5();
+                        handledHashes.add(newHash); //add the hash of the new file
                         //re-parse script, file hash has changed
-                        final TokenDefinition td = parseFile(tsf.getInputStream());
+                        final TokenDefinition td = loadDefinition(newHash, tsf.getInputStream());
                                 cacheSignature(tsf)
                                 .map(definition -> getOriginContracts(td))
                                 .subscribeOn(Schedulers.io())
@@ -253,7 +275,7 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
                 else if (entry.hasEvents())
                 {
                     //populate events
-                    TokenDefinition td = parseFile(tsf.getInputStream());
+                    TokenDefinition td = loadDefinition(entry.getFileHash(), tsf.getInputStream());
                     addToEventList(td);
                 }
             }
@@ -281,7 +303,7 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
                         final TokenScriptFile tsf = new TokenScriptFile(context, file.getAbsolutePath());
                         final String hash = tsf.calcMD5();
                         if (handledHashes.contains(hash)) return; //already handled this?
-                        final TokenDefinition td = parseFile(tsf.getInputStream());
+                        final TokenDefinition td = loadDefinition(hash, tsf.getInputStream());
                         cacheSignature(file)
                                 .map(definition -> getOriginContracts(td))
                                 .subscribeOn(Schedulers.io())
@@ -299,6 +321,8 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
 
     private void deleteTokenScriptFromRealm(Realm realm, String fileHash) throws RealmException
     {
+        removeCachedDefinition(fileHash);
+        getSnapshotFile(fileHash).delete();
         //delete from realm
         realm.executeTransactionAsync(r -> {
             //have to remove all instances of this hash
@@ -354,6 +378,17 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
 
     private void deleteAllInternalScriptFromRealm()
     {
+        //remove snapshots of scripts bundled with a previous app version
+        File[] snapshots = new File(context.getCacheDir(), SNAPSHOT_DIR).listFiles();
+        if (snapshots != null)
+        {
+            String currentPrefix = getBundledScriptKey("");
+            for (File snapshot : snapshots)
+            {
+                if (snapshot.getName().startsWith(BUNDLED_SCRIPT) && !snapshot.getName().startsWith(currentPrefix)) snapshot.delete();
+            }
+        }
+
         try
         {
             realmManager.getRealmInstance(ASSET_DEFINITION_DB).executeTransactionAsync(r -> {
@@ -393,6 +428,7 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
             }
 
             final String hash = file.calcMD5();
+            putCachedDefinition(hash, td); //already parsed; save parsing it again on first use
 
             realm.beginTransaction();
             for (ContractLocator cl : originContracts)
@@ -693,39 +729,46 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
     private TokenDefinition getDefinition(int chainId, String address)
     {
         if (address.equalsIgnoreCase(tokensService.getCurrentAddress())) address = "ethereum";
-        TokenDefinition result = null;
+        String contractKey = getTSDataKey(chainId, address);
         //try cache
-        if (cachedDefinition != null)
+        String definitionKey = definitionKeys.get(contractKey);
+        TokenDefinition result = definitionKey != null ? getCachedDefinition(definitionKey) : null;
+        if (result != null)
         {
-            //only match holding token
-            ContractInfo holdingContracts = cachedDefinition.contracts.get(cachedDefinition.holdingToken);
-            if (holdingContracts != null && holdingContracts.addresses.containsKey(chainId))
-            {
-                for (String addr : holdingContracts.addresses.get(chainId))
-                {
-                    if (addr.equalsIgnoreCase(address.toLowerCase())) return cachedDefinition;
-                }
-            }
+            definitionCacheHits.incrementAndGet();
+            return result;
         }
 
         try (Realm realm = realmManager.getRealmInstance(ASSET_DEFINITION_DB))
         {
             RealmTokenScriptData tsData = realm.where(RealmTokenScriptData.class)
-                    .equalTo("instanceKey", getTSDataKey(chainId, address))
+                    .equalTo("instanceKey", contractKey)
                     .findFirst();
 
             if (tsData != null)
             {
-                if (tsData.getFileHash().equals(BUNDLED_SCRIPT)) //handle bundled scripts
+                boolean isBundled = tsData.getFileHash().equals(BUNDLED_SCRIPT);
+                definitionKey = isBundled ? BUNDLED_SCRIPT + tsData.getFilePath() : tsData.getFileHash();
+                result = getCachedDefinition(definitionKey); //contracts sharing a script share the parsed definition
+                if (result != null)
                 {
-                    cachedDefinition = getBundledDefinition(tsData.getFilePath());
+                    definitionCacheHits.incrementAndGet();
                 }
                 else
                 {
-                    TokenScriptFile tf = new TokenScriptFile(context, tsData.getFilePath());
-                    cachedDefinition = parseFile(tf.getInputStream());
+                    definitionCacheMisses.incrementAndGet();
+                    if (isBundled) //handle bundled scripts
+                    {
+                        result = getBundledDefinition(tsData.getFilePath());
+                    }
+                    else
+                    {
+                        TokenScriptFile tf = new TokenScriptFile(context, tsData.getFilePath());
+                        result = loadDefinition(tsData.getFileHash(), tf.getInputStream());
+                    }
+                    if (result != null) putCachedDefinition(definitionKey, result);
                 }
-                result = cachedDefinition;
+                definitionKeys.put(contractKey, definitionKey);
             }
         }
         catch (Exception e)
@@ -736,6 +779,46 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         return result;
     }
 
+    private TokenDefinition getCachedDefinition(String definitionKey)
+    {
+        synchronized (definitionCache)
+        {
+            return definitionCache.get(definitionKey);
+        }
+    }
+
+    private void putCachedDefinition(String definitionKey, TokenDefinition td)
+    {
+        synchronized (definitionCache)
+        {
+            definitionCache.put(definitionKey, td);
+        }
+    }
+
+    private void removeCachedDefinition(String definitionKey)
+    {
+        synchronized (definitionCache)
+        {
+            definitionCache.remove(definitionKey);
+        }
+    }
+
+    /**
+     * @return number of definition lookups served without parsing a script
+     */
+    public int getDefinitionCacheHits()
+    {
+        return definitionCacheHits.get();
+    }
+
+    /**
+     * @return number of definition lookups that had to parse a script
+     */
+    public int getDefinitionCacheMisses()
+    {
+        return definitionCacheMisses.get();
+    }
+
     public TokenScriptFile getTokenScriptFile(int chainId, String address)
     {
         //pull from database
@@ -899,19 +982,65 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         throwable.printStackTrace();
     }
 
-    private TokenDefinition parseFile(InputStream xmlInputStream) throws IOException, SAXException, Exception
+    private Locale getLocale()
     {
-        Locale locale;
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-            locale = context.getResources().getConfiguration().getLocales().get(0);
+            return context.getResources().getConfiguration().getLocales().get(0);
         }
         else
         {
-            locale = context.getResources().getConfiguration().locale;
+            return context.getResources().getConfiguration().locale;
         }
+    }
 
+    private TokenDefinition parseFile(InputStream xmlInputStream) throws IOException, SAXException, Exception
+    {
         return new TokenDefinition(
-                xmlInputStream, locale, this);
+                xmlInputStream, getLocale(), this);
+    }
+
+    /**
+     * Load a definition from the binary snapshot of an earlier parse of the same content, falling back to
+     * parsing the XML (and snapshotting the result) when there isn't a current snapshot.
+     * @param contentKey file hash, or bundled script key
+     * @param xmlInputStream script content; only read if there's no snapshot. Closed here.
+     */
+    private TokenDefinition loadDefinition(String contentKey, InputStream xmlInputStream) throws IOException, SAXException, Exception
+    {
+        try
+        {
+            //localised strings are resolved at parse time, so the locale is part of the snapshot identity;
+            //the app version is too, so a parser or model change in an upgrade never reads an old snapshot
+            String sourceKey = contentKey + "-" + BuildConfig.VERSION_CODE + "-" + getLocale().toString();
+            File snapshot = getSnapshotFile(contentKey);
+            TokenDefinition td = TokenDefinitionSnapshot.read(snapshot, sourceKey);
+            if (td == null)
+            {
+                //the parser reports a failure part way through the tags without throwing; don't snapshot that
+                AtomicBoolean parseFailed = new AtomicBoolean(false);
+                td = new TokenDefinition(xmlInputStream, getLocale(), parseResult -> {
+                    if (parseResult == ParseResult.ParseResultId.PARSE_FAILED) parseFailed.set(true);
+                    parseMessage(parseResult);
+                });
+                if (!parseFailed.get() && !TextUtils.isEmpty(td.holdingToken)) TokenDefinitionSnapshot.write(td, sourceKey, snapshot); //only snapshot complete parses
+            }
+            return td;
+        }
+        finally
+        {
+            if (xmlInputStream != null) xmlInputStream.close();
+        }
+    }
+
+    private File getSnapshotFile(String contentKey)
+    {
+        return new File(new File(context.getCacheDir(), SNAPSHOT_DIR), contentKey);
+    }
+
+    private String getBundledScriptKey(String asset)
+    {
+        //bundled scripts only change with the app
+        return BUNDLED_SCRIPT + "-" + BuildConfig.VERSION_CODE + "-" + asset.replace(File.separatorChar, '_');
     }
 
     private Single<TokenDefinition> handleNewTSFile(File newFile)
@@ -924,11 +1053,14 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         try
         {
             boolean isDebugOverride = tsf.isDebug();
-            final TokenDefinition td = parseFile(tsf.getInputStream());
+            final TokenDefinition td = loadDefinition(tsf.calcMD5(), tsf.getInputStream());
             List<ContractLocator> originContracts = getOriginContracts(td);
             //remove all old definitions & certificates
             deleteScriptEntriesFromRealm(originContracts, isDebugOverride);
-            cachedDefinition = null;
+            for (ContractLocator cl : originContracts)
+            {
+                definitionKeys.remove(getTSDataKey(cl.chainId, cl.address));
+            }
             return cacheSignature(tsf)
                     .map(contracts -> fileLoadComplete(originContracts, tsf, td));
         }
@@ -1089,7 +1221,7 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
     private boolean addContractAssets(String asset)
     {
         try (InputStream input = context.getResources().getAssets().open(asset)) {
-            TokenDefinition token = parseFile(input);
+            TokenDefinition token = loadDefinition(getBundledScriptKey(asset), input);
             TokenScriptFile tsf = new TokenScriptFile(context, asset);
             ContractInfo holdingContracts = token.contracts.get(token.holdingToken);
             if (holdingContracts != null)
@@ -1123,7 +1255,7 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         TokenDefinition td = null;
         try (InputStream input = context.getResources().getAssets().open(asset))
         {
-            td = parseFile(input);
+            td = loadDefinition(getBundledScriptKey(asset), input);
         }
         catch (Exception e)
         {
@@ -1217,73 +1349,127 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         if (eventListener != null && !eventListener.isDisposed()) eventListener.dispose();
         eventListener =  Observable.interval(0, CHECK_TX_LOGS_INTERVAL, TimeUnit.SECONDS)
                 .doOnNext(l -> {
-                    checkEvents()
+                    if (!checkingEvents.compareAndSet(false, true)) return; //previous check still running
+                    checkEventDisposable = checkEvents()
                             .subscribeOn(Schedulers.io())
-                            .observeOn(AndroidSchedulers.mainThread())
-                            .subscribe(() -> {}, t -> {}) //results are handled within logging function
-                            .isDisposed();
+                            .doFinally(() -> checkingEvents.set(false))
+                            .subscribe(() -> {}, Throwable::printStackTrace); //results are handled within logging function
                 }).subscribe();
     }
 
+    /**
+     * Read new logs for all event definitions. Events on the same contract with the same topic filters share one
+     * eth_getLogs call; chains are read in parallel.
+     */
     private Completable checkEvents()
     {
-        //check events for corresponding tokens
-        return Completable.fromAction(() -> {
-            for (EventDefinition ev : eventList.values())
-            {
-                getEvent(ev);
-            }
+        return Completable.defer(() -> {
+            final String walletAddress = tokensService.getCurrentAddress();
+            Map<Integer, List<EventFilterGroup>> chainGroups = buildEventFilterGroups();
+            return Observable.fromIterable(chainGroups.entrySet())
+                    .flatMapCompletable(entry -> Completable.fromAction(() -> readChainEvents(walletAddress, entry.getKey(), entry.getValue()))
+                            .subscribeOn(Schedulers.io())
+                            .doOnError(Throwable::printStackTrace)
+                            .onErrorComplete(), false, MAX_CONCURRENT_EVENT_CHAINS); //one unreachable chain mustn't stop the others
         });
     }
 
-    private void getEvent(EventDefinition ev)
+    private Map<Integer, List<EventFilterGroup>> buildEventFilterGroups()
     {
-        try
+        Map<String, EventFilterGroup> groups = new HashMap<>();
+        Map<Integer, List<EventFilterGroup>> chainGroups = new HashMap<>();
+        for (EventDefinition ev : eventList.values())
         {
-            EthFilter filter = getEventFilter(ev);
-            if (filter == null) return;
-            if (BuildConfig.DEBUG) eventConnection.acquire(); //prevent overlapping event calls while debugging
-            final String walletAddress = tokensService.getCurrentAddress();
-            Web3j web3j = getWeb3jService(ev.getEventChainId());
-
-            checkEventDisposable = handleLogs(ev, filter, web3j, walletAddress)
-                    .subscribeOn(Schedulers.io())
-                    .observeOn(Schedulers.computation())
-                    .subscribe();
+            try
+            {
+                EthFilter filter = getEventFilter(ev);
+                if (filter == null) continue;
+                String groupKey = EventFilterGroup.groupKey(ev, filter);
+                EventFilterGroup group = groups.get(groupKey);
+                if (group == null)
+                {
+                    group = new EventFilterGroup(groupKey, ev.getEventChainId(), filter.getAddress().get(0), filter);
+                    groups.put(groupKey, group);
+                    List<EventFilterGroup> chainList = chainGroups.get(group.chainId);
+                    if (chainList == null)
+                    {
+                        chainList = new ArrayList<>();
+                        chainGroups.put(group.chainId, chainList);
+                    }
+                    chainList.add(group);
+                }
+                group.add(ev, filter);
+            }
+            catch (Exception e)
+            {
+                e.printStackTrace();
+            }
         }
-        catch (Exception e)
+
+        return chainGroups;
+    }
+
+    private void readChainEvents(String walletAddress, int chainId, List<EventFilterGroup> groups) throws IOException
+    {
+        Web3j web3j = getWeb3jService(chainId);
+        BigInteger latestBlock = web3j.ethBlockNumber().send().getBlockNumber();
+        for (EventFilterGroup group : groups)
         {
-            e.printStackTrace();
+            readGroupEvents(walletAddress, web3j, group, latestBlock);
         }
     }
 
-    private Single<String> handleLogs(EventDefinition ev, EthFilter filter, Web3j web3j, final String walletAddress)
+    /**
+     * Read logs from the group's earliest checkpoint up to latestBlock in block range chunks. A chunk that the node
+     * rejects or times out on is halved and retried; after each successful chunk the range grows again. Each chunk's
+     * results and the new checkpoints are written in one Realm transaction, so a catch up interrupted part way
+     * continues from the last complete chunk without reading the same logs again.
+     */
+    private void readGroupEvents(String walletAddress, Web3j web3j, EventFilterGroup group, BigInteger latestBlock)
     {
-        return Single.fromCallable(() -> {
-            String txHash = "";
+        BigInteger fromBlock = group.getStartBlock();
+        Long storedChunk = eventChunkSize.get(group.key);
+        long chunkSize = storedChunk != null ? storedChunk : latestBlock.subtract(fromBlock).longValue() + 1; //try the whole range first
+        if (chunkSize < 1) return; //up to date
+        int calls = 0;
+
+        while (fromBlock.compareTo(latestBlock) <= 0 && calls++ < MAX_EVENT_CALLS_PER_CYCLE)
+        {
+            BigInteger toBlock = fromBlock.add(BigInteger.valueOf(chunkSize - 1)).min(latestBlock);
+            EthLog ethLogs;
             try
             {
-                EthLog ethLogs = web3j.ethGetLogs(filter).send();
-                txHash = processLogs(ev, ethLogs.getLogs(), walletAddress);
+                ethLogs = web3j.ethGetLogs(group.buildFilter(fromBlock, toBlock)).send();
             }
-            catch (Exception e)
+            catch (SocketTimeoutException e)
+            {
+                ethLogs = null;
+            }
+            catch (IOException e)
             {
                 e.printStackTrace();
+                break; //node unavailable; retry next cycle
             }
-            finally
+
+            if (ethLogs == null || ethLogs.hasError() || ethLogs.getLogs() == null)
             {
-                if (BuildConfig.DEBUG) eventConnection.release();
+                //range too large for the node, or result count capped
+                if (chunkSize <= 1) break;
+                chunkSize = Math.max(chunkSize / 2, 1);
+                eventChunkSize.put(group.key, chunkSize);
+                continue;
             }
-            return txHash;
-        });
-        //More elegant, but requires a private node
-//        return web3j.ethLogFlowable(filter)
-//                .subscribeOn(Schedulers.io())
-//                .observeOn(AndroidSchedulers.mainThread())
-//                .subscribe(log -> {
-//            System.out.println("log.toString(): " +  log.toString());
-//            //TODO here: callback to event service listener
-//        }, this::onLogError);
+
+            if (!processLogs(group, ethLogs.getLogs(), walletAddress, web3j, toBlock)) break; //not stored; read this chunk again next cycle
+            fromBlock = toBlock.add(BigInteger.ONE);
+            if (eventChunkSize.containsKey(group.key))
+            {
+                chunkSize = chunkSize * 2;
+                //once the node accepts the whole remaining range, go back to reading full ranges
+                if (chunkSize > latestBlock.subtract(fromBlock).longValue()) eventChunkSize.remove(group.key);
+                else eventChunkSize.put(group.key, chunkSize);
+            }
+        }
     }
 
     private EthFilter getEventFilter(EventDefinition ev) throws Exception
@@ -1298,145 +1484,173 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         return EventUtils.generateLogFilter(ev, originToken, this);
     }
 
-    private String processLogs(EventDefinition ev, List<EthLog.LogResult> logs, String walletAddress)
+    /**
+     * Hand each log to the events it belongs to, then write the results and each event's checkpoint together.
+     * The events' in-memory read positions only move on once that write has committed
+     * @return true if the chunk was stored
+     */
+    private boolean processLogs(EventFilterGroup group, List<EthLog.LogResult> logs, String walletAddress, Web3j web3j, BigInteger toBlock)
     {
-        if (logs.size() == 0) return ""; //early return
-        int chainId = ev.contract.addresses.keySet().iterator().next();
-        Web3j web3j = getWeb3jService(chainId);
-
-        String firstTxHash = "";
-
-        int index = logs.size() - 1;
-
-        for (int i = index; i >= 0; i--)
+        List<EventActivity> activities = new ArrayList<>();
+        Map<String, TransactionResult> eventValues = new HashMap<>();
+        for (int i = logs.size() - 1; i >= 0; i--)
         {
             EthLog.LogResult ethLog = logs.get(i);
-            String txHash = ((Log)ethLog.get()).getTransactionHash();
-            if (TextUtils.isEmpty(firstTxHash)) firstTxHash = txHash;
-            String selectVal = EventUtils.getSelectVal(ev, ethLog);
-            BigInteger blockNumber = ((Log)ethLog.get()).getBlockNumber();
-
-            if (blockNumber.compareTo(ev.readBlock) > 0)
+            Log log = (Log)ethLog.get();
+            for (EventDefinition ev : group.getEvents(log))
             {
-                //Should store the latest event value
-                storeLatestEventBlockTime(walletAddress, ev, blockNumber);
+                processLog(ev, ethLog, walletAddress, web3j, activities, eventValues);
             }
+        }
 
-            if (ev.parentAttribute != null)
-            {
-                storeEventValue(walletAddress, ev, ethLog, ev.parentAttribute, selectVal);
-            }
-            else
-            {
-                EthBlock txBlock = EventUtils.getBlockDetails(((Log)ethLog.get()).getBlockHash(), web3j).blockingGet();
-                long blockTime = txBlock.getBlock().getTimestamp().longValue();
+        if (!storeEventResults(walletAddress, group, toBlock, activities, eventValues.values())) return false;
 
-                storeActivityValue(walletAddress, ev, ethLog, blockTime, ev.activityName);
+        for (EventDefinition ev : group.events)
+        {
+            if (ev.readBlock.compareTo(toBlock) <= 0) ev.readBlock = toBlock.add(BigInteger.ONE);
+        }
+        return true;
+    }
 
-                //do we need to fetch transaction from chain or do we have it already?
-                com.alphawallet.app.entity.Transaction tx = transactionRespository.fetchCachedTransaction(walletAddress, txHash);
+    private void processLog(EventDefinition ev, EthLog.LogResult ethLog, String walletAddress, Web3j web3j,
+                            List<EventActivity> activities, Map<String, TransactionResult> eventValues)
+    {
+        String txHash = ((Log)ethLog.get()).getTransactionHash();
+        String selectVal = EventUtils.getSelectVal(ev, ethLog);
 
-                if (tx == null)
-                {
-                    EventUtils.getTransactionDetails(txHash, web3j)
-                            .flatMap(ethTx -> transactionRespository.storeRawTx(new Wallet(walletAddress), ethTx, blockTime))
-                            .subscribeOn(Schedulers.io())
-                            .observeOn(AndroidSchedulers.mainThread())
-                            .subscribe(System.out::println, this::onError)
-                            .isDisposed();
-                }
-            }
+        if (ev.parentAttribute != null)
+        {
+            addEventValue(ev, ethLog, ev.parentAttribute, selectVal, eventValues);
         }
+        else
+        {
+            EthBlock txBlock = EventUtils.getBlockDetails(((Log)ethLog.get()).getBlockHash(), web3j).blockingGet();
+            if (txBlock.getBlock() == null) return;
+            long blockTime = txBlock.getBlock().getTimestamp().longValue();
+
+            activities.add(new EventActivity(ev, ethLog, blockTime));
+
+            //do we need to fetch transaction from chain or do we have it already?
+            com.alphawallet.app.entity.Transaction tx = transactionRespository.fetchCachedTransaction(walletAddress, txHash);
 
-        return firstTxHash;
+            if (tx == null)
+            {
+                EventUtils.getTransactionDetails(txHash, web3j)
+                        .flatMap(ethTx -> transactionRespository.storeRawTx(new Wallet(walletAddress), ethTx, blockTime))
+                        .subscribeOn(Schedulers.io())
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(System.out::println, this::onError)
+                        .isDisposed();
+            }
+        }
     }
 
-    private void storeLatestEventBlockTime(String walletAddress, EventDefinition ev, BigInteger readBlock)
+    /**
+     * Write a chunk's activity and attribute values and the checkpoint of every event in the group in one transaction.
+     * The checkpoint is the last block read; updateEventList resumes from the block after it. An event that was
+     * already read past this chunk keeps its own, later, checkpoint.
+     * @return true if the transaction committed
+     */
+    private boolean storeEventResults(String walletAddress, EventFilterGroup group, BigInteger lastBlockRead,
+                                   List<EventActivity> activities, Collection<TransactionResult> eventValues)
     {
-        ev.readBlock = readBlock.add(BigInteger.ONE);
         try (Realm realm = realmManager.getRealmInstance(walletAddress))
         {
-            int chainId = ev.getEventChainId();
-            String eventAddress = ev.getEventContractAddress();
-            String eventName = ev.activityName != null ? ev.activityName : ev.attributeName;
-            String databaseKey = TokensRealmSource.eventBlockKey(chainId, eventAddress, ev.type.name, ev.filter);
-            realm.executeTransactionAsync(r -> {
-                RealmAuxData realmToken = r.where(RealmAuxData.class)
-                        .equalTo("instanceKey", databaseKey)
-                        .findFirst();
-                if (realmToken == null) realmToken = r.createObject(RealmAuxData.class, databaseKey);
-                realmToken.setResultTime(System.currentTimeMillis());
-                realmToken.setResult(ev.readBlock.toString(16));
-                realmToken.setFunctionId(eventName);
-                realmToken.setChainId(chainId);
-                realmToken.setTokenAddress("");
+            realm.executeTransaction(r -> {
+                for (EventActivity activity : activities)
+                {
+                    storeActivityValue(r, activity);
+                }
+
+                for (TransactionResult eventValue : eventValues)
+                {
+                    if (eventValue.result != null) writeAuxData(r, eventValue);
+                }
+
+                for (EventDefinition ev : group.events)
+                {
+                    String eventName = ev.activityName != null ? ev.activityName : ev.attributeName;
+                    String databaseKey = TokensRealmSource.eventBlockKey(ev.getEventChainId(), ev.getEventContractAddress(), ev.type.name, ev.filter);
+                    RealmAuxData realmToken = r.where(RealmAuxData.class)
+                            .equalTo("instanceKey", databaseKey)
+                            .findFirst();
+                    if (realmToken == null) realmToken = r.createObject(RealmAuxData.class, databaseKey);
+                    realmToken.setResultTime(System.currentTimeMillis());
+                    realmToken.setResult(ev.readBlock.subtract(BigInteger.ONE).max(lastBlockRead).toString(16));
+                    realmToken.setFunctionId(eventName);
+                    realmToken.setChainId(ev.getEventChainId());
+                    realmToken.setTokenAddress("");
+                }
             });
+            return true;
         }
         catch (Exception e)
         {
             e.printStackTrace();
+            return false;
         }
     }
 
-    private void storeActivityValue(String walletAddress, EventDefinition ev, EthLog.LogResult log, long blockTime, String activityName)
+    private static class EventActivity
     {
+        final EventDefinition ev;
+        final EthLog.LogResult log;
+        final long blockTime;
+
+        EventActivity(EventDefinition ev, EthLog.LogResult log, long blockTime)
+        {
+            this.ev = ev;
+            this.log = log;
+            this.blockTime = blockTime;
+        }
+    }
+
+    private void storeActivityValue(Realm realm, EventActivity activity)
+    {
+        EventDefinition ev = activity.ev;
+        EthLog.LogResult log = activity.log;
         BigInteger tokenId = EventUtils.getTokenId(ev, log);
         //split out all the event data
         String valueList = EventUtils.getAllTopics(ev, log);
 
-        String selectVal = EventUtils.getSelectVal(ev, log);
-
-        ContractAddress eventContractAddress = new ContractAddress(ev.getEventChainId(),
-                ev.getEventContractAddress());
-
-        //store this data
+        //store the event itself
         String txHash = ((Log) log.get()).getTransactionHash();
-        String key = TokensRealmSource.eventActivityKey(txHash, ev.type.name);
-        storeAuxData(walletAddress, key, tokenId, valueList, activityName, eventContractAddress, blockTime); //store the event itself
+        String databaseKey = TokensRealmSource.eventActivityKey(txHash, ev.type.name);
+        RealmAuxData realmToken = realm.where(RealmAuxData.class)
+                .equalTo("instanceKey", databaseKey)
+                .findFirst();
+        if (realmToken == null) realmToken = realm.createObject(RealmAuxData.class, databaseKey);
+        realmToken.setResultTime(activity.blockTime);
+        realmToken.setResult(valueList);
+        realmToken.setFunctionId(ev.activityName);
+        realmToken.setChainId(ev.getEventChainId());
+        realmToken.setTokenId(tokenId.toString(16));
+        realmToken.setTokenAddress(ev.getEventContractAddress());
+        realmToken.setResultReceivedTime(System.currentTimeMillis());
     }
 
-    private void storeAuxData(String walletAddress, String databaseKey, BigInteger tokenId, String eventData, String activityName, ContractAddress cAddr, long blockTime)
-    {
-        try (Realm realm = realmManager.getRealmInstance(walletAddress))
-        {
-            realm.executeTransactionAsync(r -> {
-                RealmAuxData realmToken = r.where(RealmAuxData.class)
-                        .equalTo("instanceKey", databaseKey)
-                        .findFirst();
-                if (realmToken == null) realmToken = r.createObject(RealmAuxData.class, databaseKey);
-                realmToken.setResultTime(blockTime);
-                realmToken.setResult(eventData);
-                realmToken.setFunctionId(activityName);
-                realmToken.setChainId(cAddr.chainId);
-                realmToken.setTokenId(tokenId.toString(16));
-                realmToken.setTokenAddress(cAddr.address);
-                realmToken.setResultReceivedTime(System.currentTimeMillis());
-            });
-        }
-        catch (Exception e)
-        {
-            e.printStackTrace();
-        }
-    }
-
-    private void storeEventValue(String walletAddress, EventDefinition ev, EthLog.LogResult log, Attribute attr,
-                                 String selectVal)
+    /**
+     * Queue the attribute value from an event log, to be written with the rest of the chunk in storeEventResults.
+     * Only the value from the latest block is kept for each token and attribute.
+     */
+    private void addEventValue(EventDefinition ev, EthLog.LogResult log, Attribute attr, String selectVal,
+                               Map<String, TransactionResult> eventValues)
     {
-        //store result
         BigInteger tokenId = EventUtils.getTokenId(ev, log);
-
         ContractAddress eventContractAddress = new ContractAddress(ev.getEventChainId(),
                 ev.getEventContractAddress());
-        TransactionResult txResult = getFunctionResult(eventContractAddress, attr, tokenId);
-        txResult.result = attr.getSyntaxVal(selectVal);
-
         long blockNumber = ((Log)log.get()).getBlockNumber().longValue();
+        String databaseKey = functionKey(eventContractAddress, tokenId, attr.name);
+
+        TransactionResult txResult = eventValues.get(databaseKey);
+        if (txResult == null) txResult = getFunctionResult(eventContractAddress, attr, tokenId);
 
         //Update the entry for the attribute if required
         if (txResult.resultTime == 0 || blockNumber >= txResult.resultTime)
         {
+            txResult.result = attr.getSyntaxVal(selectVal);
             txResult.resultTime = blockNumber;
-            storeAuxData(walletAddress, txResult);
+            eventValues.put(databaseKey, txResult);
         }
     }
 
@@ -1820,28 +2034,15 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
 
     private Map<BigInteger, Map<String, TokenScriptResult.Attribute>> getRequiredAttributeResults(List<String> requiredAttrNames, List<BigInteger> tokenIds, TokenDefinition td, Token token)
     {
-        Map<BigInteger, Map<String, TokenScriptResult.Attribute>> resultSet = new HashMap<>();
-        for (BigInteger tokenId : tokenIds)
+        List<Attribute> requiredAttrs = new ArrayList<>();
+        for (String attrName : requiredAttrNames)
         {
-            for (String attrName : requiredAttrNames)
-            {
-                Attribute attr = td.attributes.get(attrName);
-                if (attr == null) continue;
-                TokenScriptResult.Attribute attrResult = tokenscriptUtility.fetchAttrResult(token, attr, tokenId, td, this, false).blockingSingle();
-                if (attrResult != null)
-                {
-                    Map<String, TokenScriptResult.Attribute> tokenIdMap = resultSet.get(tokenId);
-                    if (tokenIdMap == null)
-                    {
-                        tokenIdMap = new HashMap<>();
-                        resultSet.put(tokenId, tokenIdMap);
-                    }
-                    tokenIdMap.put(attrName, attrResult);
-                }
-            }
+            Attribute attr = td.attributes.get(attrName);
+            if (attr != null) requiredAttrs.add(attr);
         }
 
-        return resultSet;
+        //fetch each dependency level for every tokenId together, rather than one blocking call per tokenId per attribute
+        return new AttributeResolver(td, requiredAttrs, null, this, null).resolveAll(token, tokenIds, false);
     }
 
     private List<String> getRequiredAttributeNames(Map<String, TSAction> actions, TokenDefinition td)
@@ -2063,25 +2264,7 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         if (tResult.result == null || tResult.resultTime < 0) return tResult;
         try (Realm realm = realmManager.getRealmInstance(walletAddress))
         {
-            ContractAddress cAddr = new ContractAddress(tResult.contractChainId, tResult.contractAddress);
-            String databaseKey = functionKey(cAddr, tResult.tokenId, tResult.attrId);
-            realm.executeTransactionAsync(r -> {
-                RealmAuxData realmToken = r.where(RealmAuxData.class)
-                        .equalTo("instanceKey", databaseKey)
-                        .equalTo("chainId", tResult.contractChainId)
-                        .findFirst();
-
-                if (realmToken == null)
-                {
-                    createAuxData(r, tResult, databaseKey);
-                }
-                else if (tResult.result != null)
-                {
-                    realmToken.setResult(tResult.result);
-                    realmToken.setResultTime(tResult.resultTime);
-                    realmToken.setResultReceivedTime(System.currentTimeMillis());
-                }
-            });
+            realm.executeTransactionAsync(r -> writeAuxData(r, tResult));
         }
         catch (Exception e)
         {
@@ -2091,6 +2274,27 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         return tResult;
     }
 
+    private void writeAuxData(Realm r, TransactionResult tResult)
+    {
+        ContractAddress cAddr = new ContractAddress(tResult.contractChainId, tResult.contractAddress);
+        String databaseKey = functionKey(cAddr, tResult.tokenId, tResult.attrId);
+        RealmAuxData realmToken = r.where(RealmAuxData.class)
+                .equalTo("instanceKey", databaseKey)
+                .equalTo("chainId", tResult.contractChainId)
+                .findFirst();
+
+        if (realmToken == null)
+        {
+            createAuxData(r, tResult, databaseKey);
+        }
+        else if (tResult.result != null)
+        {
+            realmToken.setResult(tResult.result);
+            realmToken.setResultTime(tResult.resultTime);
+            realmToken.setResultReceivedTime(System.currentTimeMillis());
+        }
+    }
+
     private void updateEventBlockTimes()
     {
         try (Realm realm = realmManager.getRealmInstance(tokensService.getCurrentAddress()))
@@ -2163,7 +2367,7 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         EventDefinition ev = eventList.get(eventKey);
         if (ev != null)
         {
-            ev.readBlock = new BigInteger(eventData.getResult(), 16).add(BigInteger.ONE); // add one so we don't pick up the same event again
+            ev.readBlock = new BigInteger(eventData.getResult(), 16).add(BigInteger.ONE); // stored value is the last block read; add one so we don't pick up the same event again
         }
     }
 
@@ -2273,49 +2477,30 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
     public Observable<TokenScriptResult.Attribute> resolveAttrs(Token token, BigInteger tokenId, List<Attribute> extraAttrs, boolean itemView)
     {
         TokenDefinition definition = getAssetDefinition(token.tokenInfo.chainId, token.tokenInfo.address);
-        ContractAddress cAddr = new ContractAddress(token.tokenInfo.chainId, token.tokenInfo.address);
         if (definition == null) return Observable.fromCallable(() -> new TokenScriptResult.Attribute("RAttrs", "", BigInteger.ZERO, ""));
 
-        definition.context = new TokenscriptContext();
-        definition.context.cAddr = cAddr;
-        definition.context.attrInterface = this;
-
-        List<Attribute> attrList = new ArrayList<>(definition.attributes.values());
-        if (extraAttrs != null) attrList.addAll(extraAttrs);
-
-        tokenscriptUtility.buildAttrMap(attrList);
-
-        return Observable.fromIterable(attrList)
-                .flatMap(attr -> tokenscriptUtility.fetchAttrResult(token, attr, tokenId,
-                                                                    definition, this, itemView));
+        return resolveAttrs(token, definition, tokenId, null, extraAttrs, itemView);
     }
 
     public Observable<TokenScriptResult.Attribute> resolveAttrs(Token token, List<BigInteger> tokenIds, List<Attribute> extraAttrs)
     {
         TokenDefinition definition = getAssetDefinition(token.tokenInfo.chainId, token.tokenInfo.address);
-        //pre-fill tokenIds
-        for (Attribute attrType : definition.attributes.values())
-        {
-            resolveTokenIds(attrType, tokenIds);
-        }
-
-        //TODO: store transaction fetch time for multiple tokenIds
+        if (definition == null) return Observable.fromCallable(() -> new TokenScriptResult.Attribute("RAttrs", "", BigInteger.ZERO, ""));
 
-        return resolveAttrs(token, tokenIds.get(0), extraAttrs, false);
+        //tokenId[n] references are filled from this call's tokenIds rather than written into the shared definition
+        return resolveAttrs(token, definition, tokenIds.get(0), tokenIds, extraAttrs, false);
     }
 
-    private void resolveTokenIds(Attribute attrType, List<BigInteger> tokenIds)
+    private Observable<TokenScriptResult.Attribute> resolveAttrs(Token token, TokenDefinition definition, BigInteger tokenId,
+                                                                 List<BigInteger> tokenIds, List<Attribute> extraAttrs, boolean itemView)
     {
-        if (attrType.function == null) return;
+        List<Attribute> attrList = new ArrayList<>(definition.attributes.values());
+        if (extraAttrs != null) attrList.addAll(extraAttrs);
 
-        for (MethodArg arg : attrType.function.parameters)
-        {
-            int index = arg.getTokenIndex();
-            if (arg.isTokenId() && index >= 0 && index < tokenIds.size())
-            {
-                arg.element.value = tokenIds.get(index).toString();
-            }
-        }
+        tokenscriptUtility.buildAttrMap(attrList); //still used when the action's transaction is encoded
+
+        return new AttributeResolver(definition, attrList, tokenIds, this, tokenscriptUtility)
+                .resolve(token, tokenId, itemView);
     }
 
     private List<String> getLocalTSMLFiles()
@@ -2362,7 +2547,11 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
      */
     public void clearCache()
     {
-        cachedDefinition = null;
+        synchronized (definitionCache)
+        {
+            definitionCache.clear();
+        }
+        definitionKeys.clear();
     }
 
     public ContractLocator getHoldingContract(String importFileName)
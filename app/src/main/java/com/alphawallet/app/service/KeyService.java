@@ -12,6 +12,7 @@ import android.security.keystore.KeyPermanentlyInvalidatedException;
 import android.security.keystore.KeyProperties;
 import android.security.keystore.StrongBoxUnavailableException;
 import android.security.keystore.UserNotAuthenticatedException;
+import android.text.format.DateUtils;
 import android.util.Log;
 import android.widget.Toast;
 
@@ -95,6 +96,7 @@ public class KeyService implements AuthenticationCallback, PinAuthenticationCall
     private static final String PADDING = KeyProperties.ENCRYPTION_PADDING_NONE;
     private static final String CIPHER_ALGORITHM = "AES/GCM/NoPadding";
     private static final int AUTHENTICATION_DURATION_SECONDS = 30;
+    private static final long MAX_SESSION_DURATION = AUTHENTICATION_DURATION_SECONDS * DateUtils.SECOND_IN_MILLIS; //a session can't outlive the authentication that opened it
     public  static final String FAILED_SIGNATURE = "00000000000000000000000000000000000000000000000000000000000000000";
 
     //This value determines the time interval between the user swiping away the backup warning notice and it re-appearing
@@ -131,6 +133,7 @@ public class KeyService implements AuthenticationCallback, PinAuthenticationCall
     private ImportWalletCallback importCallback;
     private SignAuthenticationCallback signCallback;
     private boolean requireAuthentication = false;
+    private SigningSession signingSession;
 
     private static SecurityStatus securityStatus = SecurityStatus.NOT_CHECKED;
 
@@ -383,6 +386,62 @@ public class KeyService implements AuthenticationCallback, PinAuthenticationCall
         return returnSig;
     }
 
+    /**
+     * Open a signing session: unlock and derive the wallet's key once, for a burst of signatures such as typed data
+     * requests from a dapp or a batch of magic links. As with signData, authentication must already have been given.
+     *
+     * Only the session's own sign calls use the unlocked key; signData, and so transaction signing, always goes
+     * through the key store. Close the session when the burst is done; it also closes itself after the given
+     * duration, which is capped at the key store's authentication window. Opening a session closes any previous one.
+     *
+     * @param wallet wallet to sign with
+     * @param duration maximum session time in milliseconds, at most AUTHENTICATION_DURATION_SECONDS
+     * @return open session
+     * @throws KeyServiceException if the key can't be read
+     * @throws UserNotAuthenticatedException if authentication has lapsed
+     */
+    public synchronized SigningSession openSigningSession(Wallet wallet, long duration) throws KeyServiceException, UserNotAuthenticatedException
+    {
+        closeSigningSession();
+        currentWallet = wallet;
+        byte[] key;
+        switch (wallet.type)
+        {
+            case HDKEY:
+                HDWallet hdWallet = new HDWallet(unpackMnemonic(), "");
+                key = hdWallet.getKeyForCoin(CoinType.ETHEREUM).data();
+                break;
+            case KEYSTORE:
+            case KEYSTORE_LEGACY:
+                key = getKeystorePrivateKey();
+                break;
+            case WATCH:
+                throw new KeyServiceException(context.getString(R.string.watch_wallet));
+            case NOT_DEFINED:
+            case TEXT_MARKER:
+            default:
+                throw new KeyServiceException(context.getString(R.string.no_key));
+        }
+
+        signingSession = new SigningSession(wallet.address, key, wallet.type != WalletType.HDKEY,
+                Math.min(duration, MAX_SESSION_DURATION), this::onSigningSessionClosed);
+        return signingSession;
+    }
+
+    private synchronized void onSigningSessionClosed(SigningSession session)
+    {
+        if (signingSession == session) signingSession = null;
+    }
+
+    public synchronized void closeSigningSession()
+    {
+        if (signingSession != null)
+        {
+            signingSession.close();
+            signingSession = null;
+        }
+    }
+
     /**
      * Fetches keystore password for export/backup of keystore
      *
@@ -1139,6 +1198,27 @@ public class KeyService implements AuthenticationCallback, PinAuthenticationCall
         return returnSig;
     }
 
+    private byte[] getKeystorePrivateKey() throws KeyServiceException, UserNotAuthenticatedException
+    {
+        try
+        {
+            String password = currentWallet.type == WalletType.KEYSTORE_LEGACY
+                    ? new String(getLegacyPassword(context, currentWallet.address))
+                    : unpackMnemonic();
+
+            File keyFolder = new File(context.getFilesDir(), KEYSTORE_FOLDER);
+            Credentials credentials = KeystoreAccountService.getCredentials(keyFolder, currentWallet.address, password);
+            if (credentials == null) throw new KeyServiceException(context.getString(R.string.no_key));
+            return Numeric.toBytesPadded(credentials.getEcKeyPair().getPrivateKey(), 32);
+        }
+        catch (ServiceErrorException e)
+        {
+            //Legacy keystore error
+            if (!BuildConfig.DEBUG) FirebaseCrashlytics.getInstance().recordException(e);
+            throw new KeyServiceException(e.getMessage());
+        }
+    }
+
     /*
             Utility methods
      */
@@ -1,10 +1,12 @@
 package com.alphawallet.app.service;
 
+import android.security.keystore.UserNotAuthenticatedException;
 import android.util.Log;
 
 import com.alphawallet.app.BuildConfig;
 import com.alphawallet.app.entity.Wallet;
 import com.alphawallet.app.entity.WalletType;
+import com.alphawallet.app.entity.cryptokeys.KeyServiceException;
 import com.alphawallet.app.entity.cryptokeys.SignatureFromKey;
 import com.alphawallet.app.entity.cryptokeys.SignatureReturnType;
 import com.alphawallet.app.util.Utils;
@@ -368,6 +370,35 @@ public class KeystoreAccountService implements AccountKeystoreService
         });
     }
 
+    @Override
+    public Single<List<SignatureFromKey>> signMessages(Wallet signer, List<Signable> messages)
+    {
+        return Single.fromCallable(() -> {
+            List<SignatureFromKey> signatures = new ArrayList<>();
+            try (SigningSession session = keyService.openSigningSession(signer, SigningSession.DEFAULT_DURATION))
+            {
+                for (Signable message : messages)
+                {
+                    SignatureFromKey returnSig = session.sign(message.getPrehash());
+                    returnSig.signature = patchSignatureVComponent(returnSig.signature);
+                    signatures.add(returnSig);
+                }
+            }
+            catch (KeyServiceException | UserNotAuthenticatedException e)
+            {
+                for (int i = signatures.size(); i < messages.size(); i++)
+                {
+                    SignatureFromKey failSig = new SignatureFromKey();
+                    failSig.sigType = SignatureReturnType.KEY_AUTHENTICATION_ERROR;
+                    failSig.signature = KeyService.FAILED_SIGNATURE.getBytes();
+                    failSig.failMessage = e.getMessage();
+                    signatures.add(failSig);
+                }
+            }
+            return signatures;
+        }).subscribeOn(Schedulers.io());
+    }
+
     @Override
     public boolean hasAccount(String address) {
         address = Numeric.cleanHexPrefix(address);
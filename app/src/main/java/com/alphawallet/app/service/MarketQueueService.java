@@ -8,11 +8,13 @@ import com.alphawallet.app.entity.CryptoFunctions;
 import com.alphawallet.app.entity.TradeInstance;
 import com.alphawallet.app.entity.Wallet;
 import com.alphawallet.app.entity.cryptokeys.SignatureFromKey;
+import com.alphawallet.app.entity.cryptokeys.SignatureReturnType;
 import com.alphawallet.app.repository.EthereumNetworkRepository;
 import com.alphawallet.app.repository.TransactionRepositoryType;
 import com.alphawallet.token.entity.MagicLinkData;
 import com.alphawallet.token.entity.MessageData;
 import com.alphawallet.token.entity.Signable;
+import com.alphawallet.token.entity.SignableBytes;
 import com.alphawallet.token.tools.ParseMagicLink;
 
 import org.json.JSONArray;
@@ -25,7 +27,9 @@ import java.io.DataOutputStream;
 import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import io.reactivex.Observable;
@@ -50,6 +54,7 @@ import static com.alphawallet.app.entity.CryptoFunctions.sigFromByteArray;
 public class MarketQueueService {
     private static final long MARKET_INTERVAL = 10*60; // 10 minutes
     private static final int TRADE_AMOUNT = 1008;
+    private static final int SIGNING_BATCH = 48; //trades signed per signing session; progress is reported per batch
     private static final String MARKET_QUEUE_URL = "https://482kdh4npg.execute-api.ap-southeast-1.amazonaws.com/dev/";
     private static final String MARKET_QUEUE_FETCH = MARKET_QUEUE_URL + "contract/";
 
@@ -219,20 +224,31 @@ public class MarketQueueService {
         return transactionRepository.getSignature(wallet, data, chainId);
     }
 
-    private Single<TradeInstance> tradesInnerLoop(Wallet wallet, String password, BigInteger price, int[] tickets, String contractAddr, BigInteger firstTicketId, int chainId) {
+    private Single<TradeInstance> tradesInnerLoop(Wallet wallet, BigInteger price, int[] tickets, String contractAddr, BigInteger firstTicketId, int chainId) {
         return Single.fromCallable(() ->
         {
             long initialExpiry = (System.currentTimeMillis() / 1000L) + MARKET_INTERVAL;
             //Recover public key
-            BigInteger recoveredKey = ecRecoverPublicKey(wallet, password, chainId);
+            BigInteger recoveredKey = ecRecoverPublicKey(wallet, chainId);
 
             TradeInstance trade = new TradeInstance(price, BigInteger.valueOf(initialExpiry), tickets, contractAddr, recoveredKey, firstTicketId);
 
-            for (int i = 0; i < TRADE_AMOUNT; i++)
+            //sign the trades in batches, unlocking the key once per batch rather than once per trade
+            for (int start = 0; start < TRADE_AMOUNT; start += SIGNING_BATCH)
             {
-                trade.expiry =  BigInteger.valueOf(initialExpiry + (i * MARKET_INTERVAL));
-                trade.addSignature(getTradeSignature(wallet, password, trade, chainId).blockingGet());
-                float upd = ((float)i/TRADE_AMOUNT)*100.0f;
+                List<Signable> tradeMessages = new ArrayList<>();
+                for (int i = start; i < Math.min(start + SIGNING_BATCH, TRADE_AMOUNT); i++)
+                {
+                    trade.expiry = BigInteger.valueOf(initialExpiry + (i * MARKET_INTERVAL));
+                    tradeMessages.add(new SignableBytes(trade.getTradeBytes()));
+                }
+
+                for (SignatureFromKey signature : transactionRepository.getSignatures(wallet, tradeMessages).blockingGet())
+                {
+                    trade.addSignature(checkSignature(signature));
+                }
+
+                float upd = ((float)trade.sigCount()/TRADE_AMOUNT)*100.0f;
                 messageCallback.queueUpdate((int)upd);
             }
             trade.expiry = BigInteger.valueOf(initialExpiry); //ensure expiry of first order is correct
@@ -241,16 +257,13 @@ public class MarketQueueService {
     }
 
     private Single<TradeInstance> getTradeMessages(Wallet wallet, BigInteger price, int[] tickets, String contractAddr, BigInteger firstTicketId, int chainId) {
-        return tradesInnerLoop(wallet, "password", price, tickets, contractAddr, firstTicketId, chainId);
+        return tradesInnerLoop(wallet, price, tickets, contractAddr, firstTicketId, chainId);
     }
 
-    private Single<byte[]> getTradeSignature(Wallet wallet, String password, TradeInstance trade, int chainId) {
-        return encodeMessageForTrade(trade)
-                .flatMap(tradeBytes -> transactionRepository.getSignatureFast(wallet, password, tradeBytes, chainId));
-    }
-
-    private Single<byte[]> encodeMessageForTrade(TradeInstance trade) {
-        return Single.fromCallable(trade::getTradeBytes);
+    private byte[] checkSignature(SignatureFromKey signature) throws Exception
+    {
+        if (signature.sigType != SignatureReturnType.SIGNATURE_GENERATED) throw new Exception(signature.failMessage);
+        return signature.signature;
     }
 
     public Observable<TradeInstance> getTradeInstances(Wallet wallet, BigInteger price, int[] tickets, String contractAddr, BigInteger firstTicketId, int chainId) {
@@ -373,10 +386,10 @@ public class MarketQueueService {
         return sb.toString();
     }
 
-    private BigInteger ecRecoverPublicKey(Wallet wallet, String password, int chainId) throws Exception
+    private BigInteger ecRecoverPublicKey(Wallet wallet, int chainId) throws Exception
     {
         String testSigMsg = "obtain public key";
-        byte[] testSigBytes = transactionRepository.getSignatureFast(wallet, password, testSigMsg.getBytes(), chainId).blockingGet();
+        byte[] testSigBytes = checkSignature(transactionRepository.getSignature(wallet, new SignableBytes(testSigMsg.getBytes()), chainId).blockingGet());
         Sign.SignatureData testSig = sigFromByteArray(testSigBytes);
         BigInteger recoveredKey = Sign.signedMessageToKey(testSigMsg.getBytes(), testSig);
         String publicKeyString = Keys.getAddress(recoveredKey); //TODO: Remove - this is here for debug/testing
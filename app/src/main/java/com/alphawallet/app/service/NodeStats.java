@@ -0,0 +1,101 @@
+package com.alphawallet.app.service;
+
+import android.text.format.DateUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rolling latency and error statistics for one RPC endpoint, with a circuit breaker.
+ *
+ * Stats are shared by every AWHttpService that uses the same URL, so a slow or failing node learnt about in
+ * one part of the app is avoided everywhere. Once open, the breaker lets a call through after OPEN_TIME;
+ * a success closes it, another failure re-opens it.
+ */
+class NodeStats
+{
+    private static final double LATENCY_ALPHA = 0.2;
+    private static final double ERROR_ALPHA = 0.1;
+    private static final int FAILURES_TO_OPEN = 3;
+    private static final long OPEN_TIME = 30 * DateUtils.SECOND_IN_MILLIS;
+    private static final int LATENCY_SAMPLES = 64;
+    private static final int MIN_SAMPLES_FOR_P95 = 10;
+    private static final long DEFAULT_LATENCY = 500; //ms; assumed until a node has been measured
+    private static final double ERROR_PENALTY = 4.0; //error rate of 25% doubles the effective latency
+
+    private static final Map<String, NodeStats> nodes = new HashMap<>();
+
+    private double latency = DEFAULT_LATENCY;
+    private double errorRate;
+    private int consecutiveFailures;
+    private long openUntil;
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int sampleCount;
+    private int nextSample;
+
+    static NodeStats forNode(String url)
+    {
+        synchronized (nodes)
+        {
+            NodeStats stats = nodes.get(url);
+            if (stats == null)
+            {
+                stats = new NodeStats();
+                nodes.put(url, stats);
+            }
+            return stats;
+        }
+    }
+
+    synchronized void recordSuccess(long elapsed)
+    {
+        addLatency(elapsed);
+        errorRate = (1 - ERROR_ALPHA) * errorRate;
+        consecutiveFailures = 0;
+        openUntil = 0;
+    }
+
+    synchronized void recordFailure(long elapsed)
+    {
+        addLatency(elapsed); //a timeout is a latency sample too
+        errorRate = (1 - ERROR_ALPHA) * errorRate + ERROR_ALPHA;
+        consecutiveFailures++;
+        if (consecutiveFailures >= FAILURES_TO_OPEN)
+        {
+            openUntil = System.currentTimeMillis() + OPEN_TIME;
+        }
+    }
+
+    synchronized boolean isAvailable()
+    {
+        return System.currentTimeMillis() >= openUntil;
+    }
+
+    /**
+     * @return effective latency used to rank nodes; lower is better
+     */
+    synchronized double score()
+    {
+        return latency * (1 + ERROR_PENALTY * errorRate);
+    }
+
+    /**
+     * @return 95th percentile of recent latencies in ms, or -1 if there aren't enough samples yet
+     */
+    synchronized long p95Latency()
+    {
+        if (sampleCount < MIN_SAMPLES_FOR_P95) return -1;
+        long[] sorted = Arrays.copyOf(latencies, sampleCount);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(0.95 * sampleCount) - 1];
+    }
+
+    private void addLatency(long elapsed)
+    {
+        latency = LATENCY_ALPHA * elapsed + (1 - LATENCY_ALPHA) * latency;
+        latencies[nextSample] = elapsed;
+        nextSample = (nextSample + 1) % LATENCY_SAMPLES;
+        if (sampleCount < LATENCY_SAMPLES) sampleCount++;
+    }
+}
@@ -6,27 +6,31 @@ import android.text.format.DateUtils;
 
 import com.alphawallet.app.entity.ContractType;
 import com.alphawallet.app.entity.opensea.Asset;
+import com.alphawallet.app.entity.opensea.AssetContract;
 import com.alphawallet.app.entity.tokens.Token;
 import com.alphawallet.app.entity.tokens.TokenFactory;
 import com.alphawallet.app.entity.tokens.TokenInfo;
 import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
+import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Single;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
+import okhttp3.ResponseBody;
 
 /**
  * Created by James on 2/10/2018.
@@ -40,6 +44,14 @@ public class OpenseaService {
     private static final int PAGE_SIZE = 40;
     private final Map<String, String> imageUrls = new HashMap<>();
     private final List<Integer> storedImagesForChain = new ArrayList<>();
+    private final TokenFactory tokenFactory = new TokenFactory();
+
+    //One adapter for all pages; assets are read directly from the response stream
+    private static final TypeAdapter<Asset> assetAdapter = new Gson().getAdapter(Asset.class);
+
+    //Polls between full reads stop at the first page holding only known assets
+    private static final long FULL_SYNC_INTERVAL = 10 * DateUtils.MINUTE_IN_MILLIS;
+    private final Map<String, AssetCursor> cursors = new ConcurrentHashMap<>();
 
     //TODO: remove old files not accessed for some time
     //      On service creation, check files for old files and delete
@@ -60,22 +72,55 @@ public class OpenseaService {
         return Single.fromCallable(() -> {
             int receivedTokens;
             int offset = 0;
+            boolean complete = false;
+            String lastContract = null;
+            String cursorKey = address.toLowerCase() + "-" + networkId;
+            AssetCursor cursor = cursors.get(cursorKey);
+            boolean fullSync = cursor == null || System.currentTimeMillis() > cursor.lastFullSync + FULL_SYNC_INTERVAL;
+            Set<String> seenAssets = new HashSet<>();
 
             Map<String, Token> foundTokens = new HashMap<>();
 
             do
             {
-                String jsonData = fetchTokensFromOpensea(address, networkId, offset);
-                if (!verifyData(jsonData)) return foundTokens.values().toArray(new Token[0]); //on error return results found so far
-                JSONObject result = new JSONObject(jsonData);
-                JSONArray assets = result.getJSONArray("assets");
-                receivedTokens = assets.length();
-                offset += assets.length();
+                List<Asset> assets = fetchTokensFromOpensea(address, networkId, offset);
+                if (assets == null) break; //on error use results found so far
+                receivedTokens = assets.size();
+                offset += receivedTokens;
 
                 //process this page of results
-                processOpenseaTokens(foundTokens, assets, address, networkId, networkName, tokensService);
+                boolean allKnown = cursor != null && receivedTokens > 0;
+                for (Asset asset : assets)
+                {
+                    if (asset == null || asset.getAssetContract() == null) continue;
+                    String assetKey = asset.getAssetContract().getAddress() + "-" + asset.getTokenId();
+                    if (allKnown && !cursor.knownAssets.contains(assetKey)) allKnown = false;
+                    seenAssets.add(assetKey);
+                    if (processOpenseaAsset(foundTokens, asset, address, networkId, networkName, tokensService))
+                    {
+                        lastContract = asset.getAssetContract().getAddress();
+                    }
+                }
+
+                if (receivedTokens < PAGE_SIZE)
+                {
+                    complete = true;
+                }
+                else if (!fullSync && allKnown)
+                {
+                    break; //page held nothing new; anything changed further down is picked up by the next full sync
+                }
             }
-            while (receivedTokens == PAGE_SIZE); //keep fetching until last page
+            while (!complete); //keep fetching until last page
+
+            //Opensea returns assets ordered by contract, so the last contract read may continue on the next page.
+            //Don't return it as the asset list would be incomplete, and saving it would delete the unread assets
+            if (!complete && lastContract != null)
+            {
+                foundTokens.remove(lastContract);
+            }
+
+            updateCursor(cursorKey, cursor, seenAssets, complete);
 
             //now write the contract images
             if (!storedImagesForChain.contains(networkId))
@@ -108,81 +153,75 @@ public class OpenseaService {
         });
     }
 
-    private void processOpenseaTokens(Map<String, Token> foundTokens, JSONArray assets, String address,
-                                      int networkId, String networkName, TokensService tokensService) throws Exception
+    private void updateCursor(String cursorKey, AssetCursor cursor, Set<String> seenAssets, boolean complete)
     {
-        TokenFactory tf = new TokenFactory();
-        for (int i = 0; i < assets.length(); i++)
+        if (complete || cursor == null)
         {
-            Asset asset = new Gson().fromJson(assets.getJSONObject(i).toString(), Asset.class);
-            if (asset != null && (asset.getAssetContract().getSchemaName() == null
-                    || asset.getAssetContract().getSchemaName().length() == 0
-                    || asset.getAssetContract().getSchemaName().equalsIgnoreCase("ERC721"))) //filter ERC721
-            {
-                addAssetImageToHashMap(imageUrls, assets.getJSONObject(i), networkId);
-                Token token = foundTokens.get(asset.getAssetContract().getAddress());
-                if (token == null)
-                {
-                    TokenInfo tInfo;
-                    ContractType type;
-                    long lastCheckTime = 0;
-                    Token checkToken = tokensService.getToken(networkId, asset.getAssetContract().getAddress());
-                    if (checkToken != null && (checkToken.isERC721() || checkToken.isERC721Ticket()))
-                    {
-                        tInfo = checkToken.tokenInfo;
-                        type = checkToken.getInterfaceSpec();
-                        lastCheckTime = checkToken.lastTxTime;
-                    }
-                    else //if we haven't seen the contract before, or it was previously logged as something other than a ERC721 variant then specify undetermined flag
-                    {
-                        tInfo = new TokenInfo(asset.getAssetContract().getAddress(), asset.getAssetContract().getName(), asset.getAssetContract().getSymbol(), 0, true, networkId);
-                        type = ContractType.ERC721_UNDETERMINED;
-                    }
-
-                    token = tf.createToken(tInfo, type, networkName);
-                    token.setTokenWallet(address);
-                    token.lastTxTime = lastCheckTime;
-                    foundTokens.put(asset.getAssetContract().getAddress(), token);
-                }
-                token.addAssetToTokenBalanceAssets(asset);
-            }
+            //a complete read replaces the known set, so assets that have left the wallet are forgotten
+            cursors.put(cursorKey, new AssetCursor(seenAssets, complete ? System.currentTimeMillis() : 0));
+        }
+        else
+        {
+            cursor.knownAssets.addAll(seenAssets);
         }
     }
 
-    private void addAssetImageToHashMap(Map<String, String> imageUrls, JSONObject asset, int networkId)
+    /**
+     * @return true if the asset was added to a token
+     */
+    private boolean processOpenseaAsset(Map<String, Token> foundTokens, Asset asset, String address,
+                                      int networkId, String networkName, TokensService tokensService)
     {
-        if (storedImagesForChain.contains(networkId)) return;
+        String schemaName = asset.getAssetContract().getSchemaName();
+        if (schemaName != null && schemaName.length() > 0 && !schemaName.equalsIgnoreCase("ERC721")) return false; //filter ERC721
 
-        try
+        addAssetImageToHashMap(imageUrls, asset.getAssetContract(), networkId);
+        Token token = foundTokens.get(asset.getAssetContract().getAddress());
+        if (token == null)
         {
-            if (asset.has("asset_contract"))
+            TokenInfo tInfo;
+            ContractType type;
+            long lastCheckTime = 0;
+            Token checkToken = tokensService.getToken(networkId, asset.getAssetContract().getAddress());
+            if (checkToken != null && (checkToken.isERC721() || checkToken.isERC721Ticket()))
             {
-                JSONObject assetContract = asset.getJSONObject("asset_contract");
-                String address = assetContract.getString("address").toLowerCase();
-                if (!imageUrls.containsKey(address) && assetContract.has("image_url"))
-                {
-                    String url = assetContract.getString("image_url");
-                    if (!TextUtils.isEmpty(url) && url.startsWith("http"))
-                    {
-                        imageUrls.put(address, url);
-                    }
-                }
+                tInfo = checkToken.tokenInfo;
+                type = checkToken.getInterfaceSpec();
+                lastCheckTime = checkToken.lastTxTime;
             }
+            else //if we haven't seen the contract before, or it was previously logged as something other than a ERC721 variant then specify undetermined flag
+            {
+                tInfo = new TokenInfo(asset.getAssetContract().getAddress(), asset.getAssetContract().getName(), asset.getAssetContract().getSymbol(), 0, true, networkId);
+                type = ContractType.ERC721_UNDETERMINED;
+            }
+
+            token = tokenFactory.createToken(tInfo, type, networkName);
+            token.setTokenWallet(address);
+            token.lastTxTime = lastCheckTime;
+            foundTokens.put(asset.getAssetContract().getAddress(), token);
         }
-        catch (JSONException e)
-        {
-            // no action
-        }
+        token.addAssetToTokenBalanceAssets(asset);
+        return true;
     }
 
-    private boolean verifyData(String jsonData)
+    private void addAssetImageToHashMap(Map<String, String> imageUrls, AssetContract assetContract, int networkId)
     {
-        return jsonData != null && jsonData.length() >= 10 && jsonData.contains("assets"); //validate return from API
+        if (storedImagesForChain.contains(networkId) || assetContract.getAddress() == null) return;
+
+        String address = assetContract.getAddress().toLowerCase();
+        String url = assetContract.getImageUrl();
+        if (!imageUrls.containsKey(address) && !TextUtils.isEmpty(url) && url.startsWith("http"))
+        {
+            imageUrls.put(address, url);
+        }
     }
 
-    private String fetchTokensFromOpensea(String address, int networkId, int offset)
+    /**
+     * Fetch one page of assets, streaming the response straight into Asset objects
+     * @return assets in the page, or null if the page couldn't be read
+     */
+    private List<Asset> fetchTokensFromOpensea(String address, int networkId, int offset)
     {
-        String jsonResult = "{\"noresult\":[]}";
         String apiBase;
         switch (networkId)
         {
@@ -193,7 +232,7 @@ public class OpenseaService {
                 apiBase = "https://rinkeby-api.opensea.io";
                 break;
             default:
-                return jsonResult;
+                return null;
         }
 
         StringBuilder sb = new StringBuilder();
@@ -204,16 +243,21 @@ public class OpenseaService {
         sb.append("&offset=");
         sb.append(offset);
 
-        try
+        List<Asset> assets = null;
+
+        Request request = new Request.Builder()
+                .url(sb.toString())
+                .get()
+                .build();
+
+        try (okhttp3.Response response = httpClient.newCall(request).execute())
         {
-            Request request = new Request.Builder()
-                    .url(sb.toString())
-                    .get()
-                    .build();
-
-            okhttp3.Response response = httpClient.newCall(request).execute();
-            jsonResult = response.body().string();
-            balanceAccess.put(address, System.currentTimeMillis());
+            ResponseBody body = response.body();
+            if (response.isSuccessful() && body != null)
+            {
+                assets = readAssets(new JsonReader(body.charStream()));
+                balanceAccess.put(address, System.currentTimeMillis());
+            }
         }
         catch (InterruptedIOException e)
         {
@@ -226,6 +270,47 @@ public class OpenseaService {
             e.printStackTrace();
         }
 
-        return jsonResult;
+        return assets;
+    }
+
+    /**
+     * Read the "assets" array of an Opensea response; all other fields are skipped
+     * @return assets read, or null if the response has no assets array
+     */
+    private static List<Asset> readAssets(JsonReader reader) throws IOException
+    {
+        List<Asset> assets = null;
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            if (reader.nextName().equals("assets") && reader.peek() == JsonToken.BEGIN_ARRAY)
+            {
+                assets = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext())
+                {
+                    assets.add(assetAdapter.read(reader));
+                }
+                reader.endArray();
+            }
+            else
+            {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return assets;
+    }
+
+    private static class AssetCursor
+    {
+        final Set<String> knownAssets; //contract-tokenId of every asset seen since the last full read
+        final long lastFullSync;
+
+        AssetCursor(Set<String> knownAssets, long lastFullSync)
+        {
+            this.knownAssets = knownAssets;
+            this.lastFullSync = lastFullSync;
+        }
     }
 }
@@ -0,0 +1,123 @@
+package com.alphawallet.app.service;
+
+import android.text.format.DateUtils;
+
+import com.alphawallet.app.entity.cryptokeys.SignatureFromKey;
+import com.alphawallet.app.entity.cryptokeys.SignatureReturnType;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.disposables.Disposable;
+import wallet.core.jni.Curve;
+import wallet.core.jni.Hash;
+import wallet.core.jni.PrivateKey;
+
+import static com.alphawallet.app.service.KeyService.FAILED_SIGNATURE;
+
+/**
+ * A wallet's private key, unlocked once and held for a short time so a burst of signatures doesn't decrypt the
+ * key store and re-derive the key for every payload. Opened by KeyService.openSigningSession; only this session's
+ * sign and signAll use the key.
+ *
+ * Only the raw key bytes are held; they are zeroed on close, and the session closes itself when its time is up.
+ */
+public class SigningSession implements Closeable
+{
+    public static final long DEFAULT_DURATION = 30 * DateUtils.SECOND_IN_MILLIS;
+
+    interface CloseListener
+    {
+        void onClosed(SigningSession session);
+    }
+
+    private final String address;
+    private final boolean ethereumV; //keystore signatures have always had v as 27/28, HD signatures 0/1
+    private final long expiry;
+    private final CloseListener closeListener;
+    private byte[] key;
+    private Disposable expiryTimer;
+
+    SigningSession(String address, byte[] key, boolean ethereumV, long duration, CloseListener closeListener)
+    {
+        this.address = address;
+        this.key = key;
+        this.ethereumV = ethereumV;
+        this.closeListener = closeListener;
+        this.expiry = System.currentTimeMillis() + duration;
+        this.expiryTimer = Completable.timer(duration, TimeUnit.MILLISECONDS)
+                .subscribe(this::close, e -> close());
+    }
+
+    public synchronized boolean isOpen()
+    {
+        return key != null && System.currentTimeMillis() < expiry;
+    }
+
+    public boolean isFor(String walletAddress)
+    {
+        return address.equalsIgnoreCase(walletAddress);
+    }
+
+    /**
+     * Sign as KeyService.signData would: keccak256 the data then sign the digest
+     */
+    public synchronized SignatureFromKey sign(byte[] data)
+    {
+        SignatureFromKey returnSig = new SignatureFromKey();
+        if (!isOpen())
+        {
+            wipeKey(); //expiry timer does the full close
+            returnSig.sigType = SignatureReturnType.KEY_AUTHENTICATION_ERROR;
+            returnSig.signature = FAILED_SIGNATURE.getBytes();
+            returnSig.failMessage = "Signing session closed";
+            return returnSig;
+        }
+
+        byte[] signature = new PrivateKey(key).sign(Hash.keccak256(data), Curve.SECP256K1);
+        if (ethereumV && signature.length == 65) signature[64] += 27;
+        returnSig.signature = signature;
+        returnSig.sigType = SignatureReturnType.SIGNATURE_GENERATED;
+        return returnSig;
+    }
+
+    /**
+     * Sign each payload in turn
+     * @return signatures in payload order
+     */
+    public List<SignatureFromKey> signAll(List<byte[]> payloads)
+    {
+        List<SignatureFromKey> signatures = new ArrayList<>();
+        for (byte[] payload : payloads)
+        {
+            signatures.add(sign(payload));
+        }
+        return signatures;
+    }
+
+    @Override
+    public void close()
+    {
+        synchronized (this)
+        {
+            wipeKey();
+            if (expiryTimer != null && !expiryTimer.isDisposed()) expiryTimer.dispose();
+        }
+
+        //outside the session lock: the listener takes the KeyService lock, which is held while KeyService closes sessions
+        if (closeListener != null) closeListener.onClosed(this);
+    }
+
+    private void wipeKey()
+    {
+        if (key != null)
+        {
+            Arrays.fill(key, (byte) 0);
+            key = null;
+        }
+    }
+}
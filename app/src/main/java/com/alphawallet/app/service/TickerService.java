@@ -3,6 +3,7 @@ package com.alphawallet.app.service;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
+import android.text.TextUtils;
 import android.text.format.DateUtils;
 
 import com.alphawallet.app.entity.CoinGeckoTicker;
@@ -35,6 +36,7 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.RoundingMode;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -72,12 +74,15 @@ public class TickerService
 
     public static final long TICKER_TIMEOUT = DateUtils.HOUR_IN_MILLIS; //remove ticker if not seen in one hour
     public static final long TICKER_STALE_TIMEOUT = 15 * DateUtils.MINUTE_IN_MILLIS; //try to use market API if AlphaWallet market oracle not updating
+    private static final int MAX_TICKER_URL_LENGTH = 2000; //CoinGecko rejects longer request lines; about 40 addresses per request
+    private static final int MAX_CONCURRENT_TICKER_FETCHES = 4;
 
     private final OkHttpClient httpClient;
     private final Gson gson;
     private final Context context;
     private final TokenLocalSource localSource;
-    private final Map<String, TokenTicker> erc20Tickers = new HashMap<>();
+    private volatile Map<String, TokenTicker> erc20Tickers = new ConcurrentHashMap<>(); //replaced as a whole each ticker cycle
+    private final Map<String, TokenTicker> writtenERC20Tickers = new ConcurrentHashMap<>(); //as last written to the ticker database
     private final Map<Integer, TokenTicker> ethTickers = new ConcurrentHashMap<>();
     private Disposable tickerUpdateTimer;
     private double currentConversionRate = 0.0;
@@ -163,59 +168,119 @@ public class TickerService
         });
     }
 
+    /**
+     * Fetch ERC20 prices from CoinGecko. Addresses are split into requests that fit the URL limit and fetched in
+     * parallel; if a request fails the previous prices for its tokens are kept.
+     */
     public Single<Integer> getERC20Tickers(List<TokenCardMeta> erc20Tokens)
     {
         if (!canUpdate || erc20Tokens.size() == 0) return Single.fromCallable(() -> 0);
+        canUpdate = false;
 
-        return Single.fromCallable(() -> {
-            int newSize = 0;
-            canUpdate = false;
-            try
-            {
-                //build ticker header
-                StringBuilder sb = new StringBuilder();
-                boolean isFirst = true;
-                for (TokenCardMeta t : erc20Tokens)
-                {
-                    if (!isFirst) sb.append(",");
-                    sb.append(t.getAddress());
-                    isFirst = false;
-                }
-
-                 Request request = new Request.Builder()
-                        .url(COINGECKO_API.replace(CONTRACT_ADDR, sb.toString()))
-                        .get()
-                        .build();
+        return Observable.fromIterable(buildTickerQueries(erc20Tokens))
+                .flatMapSingle(addresses -> fetchERC20Tickers(addresses).subscribeOn(Schedulers.io()), false, MAX_CONCURRENT_TICKER_FETCHES)
+                .collect(() -> new ConcurrentHashMap<String, TokenTicker>(), (tickers, chunk) -> tickers.putAll(chunk))
+                .map(this::storeERC20Tickers);
+    }
 
-                okhttp3.Response response = httpClient.newCall(request)
-                        .execute();
+    /**
+     * @return comma separated contract addresses, one entry per request
+     */
+    private List<String> buildTickerQueries(List<TokenCardMeta> erc20Tokens)
+    {
+        int maxQueryLength = MAX_TICKER_URL_LENGTH - COINGECKO_API.length() + CONTRACT_ADDR.length();
+        List<String> queries = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        for (TokenCardMeta t : erc20Tokens)
+        {
+            String address = t.getAddress();
+            if (sb.length() > 0 && sb.length() + 1 + address.length() > maxQueryLength)
+            {
+                queries.add(sb.toString());
+                sb.setLength(0);
+            }
+            if (sb.length() > 0) sb.append(",");
+            sb.append(address);
+        }
 
-                List<CoinGeckoTicker> tickers = CoinGeckoTicker.buildTickerList(response.body().string());
-                newSize = tickers.size();
+        if (sb.length() > 0) queries.add(sb.toString());
+        return queries;
+    }
 
-                erc20Tickers.clear();
+    private Single<Map<String, TokenTicker>> fetchERC20Tickers(String addresses)
+    {
+        return Single.fromCallable(() -> {
+            Map<String, TokenTicker> tickers = new HashMap<>();
+            Request request = new Request.Builder()
+                    .url(COINGECKO_API.replace(CONTRACT_ADDR, addresses))
+                    .get()
+                    .build();
 
-                for (CoinGeckoTicker t : tickers)
+            try (okhttp3.Response response = httpClient.newCall(request).execute())
+            {
+                if (response.isSuccessful() && response.body() != null)
                 {
-                    BigDecimal changeValue = new BigDecimal(t.usdChange);
-                    TokenTicker tTicker = new TokenTicker(String.valueOf(t.usdPrice * currentConversionRate),
-                            changeValue.setScale(3, RoundingMode.DOWN).toString(), currentCurrencySymbolTxt, "", System.currentTimeMillis());
+                    for (CoinGeckoTicker t : CoinGeckoTicker.buildTickerList(response.body().string()))
+                    {
+                        BigDecimal changeValue = new BigDecimal(t.usdChange);
+                        TokenTicker tTicker = new TokenTicker(String.valueOf(t.usdPrice * currentConversionRate),
+                                changeValue.setScale(3, RoundingMode.DOWN).toString(), currentCurrencySymbolTxt, "", System.currentTimeMillis());
 
-                    //store ticker
-                    erc20Tickers.put(t.address, tTicker);
+                        tickers.put(t.address, tTicker);
+                    }
+                    return tickers;
                 }
-
-                localSource.updateERC20Tickers(erc20Tickers);
             }
             catch (Exception e)
             {
                 e.printStackTrace();
             }
 
-            return newSize;
+            //request failed; keep the previous prices for these tokens
+            for (String address : addresses.split(","))
+            {
+                TokenTicker previous = erc20Tickers.get(address.toLowerCase());
+                if (previous != null) tickers.put(address.toLowerCase(), previous);
+            }
+            return tickers;
         });
     }
 
+    private int storeERC20Tickers(Map<String, TokenTicker> tickers)
+    {
+        erc20Tickers = tickers;
+        writeERC20TickerChanges();
+        return tickers.size();
+    }
+
+    /**
+     * Write only the tickers that changed since they were last written. Unchanged tickers are re-written after
+     * half the ticker timeout so the database doesn't expire them.
+     */
+    private synchronized void writeERC20TickerChanges()
+    {
+        long keepAliveTime = System.currentTimeMillis() - TICKER_TIMEOUT / 2;
+        Map<String, TokenTicker> changedTickers = new HashMap<>();
+        for (Map.Entry<String, TokenTicker> entry : erc20Tickers.entrySet())
+        {
+            TokenTicker ticker = entry.getValue();
+            TokenTicker written = writtenERC20Tickers.get(entry.getKey());
+            if (written == null || written.updateTime < keepAliveTime
+                    || !TextUtils.equals(written.price, ticker.price)
+                    || !TextUtils.equals(written.percentChange24h, ticker.percentChange24h)
+                    || !TextUtils.equals(written.priceSymbol, ticker.priceSymbol))
+            {
+                changedTickers.put(entry.getKey(), ticker);
+            }
+        }
+
+        if (changedTickers.size() > 0)
+        {
+            localSource.updateERC20Tickers(changedTickers);
+            writtenERC20Tickers.putAll(changedTickers);
+        }
+    }
+
     private EtherscanTransaction[] getEtherscanTransactions(String response) throws JSONException
     {
         JSONObject stateData = new JSONObject(response);
@@ -339,7 +404,7 @@ public class TickerService
         System.out.println("Tickers received: " + tickerSize);
         //store ticker values. If values have changed then update the token's update time so the wallet view will update
         localSource.updateEthTickers(ethTickers);
-        localSource.updateERC20Tickers(erc20Tickers);
+        writeERC20TickerChanges();
         localSource.removeOutdatedTickers();
     }
 
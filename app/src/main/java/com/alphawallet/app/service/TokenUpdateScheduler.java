@@ -0,0 +1,472 @@
+package com.alphawallet.app.service;
+
+import android.text.format.DateUtils;
+
+import com.alphawallet.app.entity.ContractLocator;
+import com.alphawallet.app.entity.ContractType;
+import com.alphawallet.app.entity.tokens.Token;
+import com.alphawallet.app.entity.tokens.TokenCardMeta;
+import com.alphawallet.app.repository.TokensRealmSource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * In-memory schedule of balance and transaction checks for the tokens in the current wallet.
+ *
+ * Tokens sit in min-heaps ordered by the time their next check falls due, so each update tick only looks
+ * at the heads of the heaps instead of scanning the wallet database. Heap keys are computed with the normal
+ * intervals; focus token, pending chain and app focus rules are applied when an entry reaches the head, and
+ * an entry that isn't due under the current rules is simply re-queued.
+ *
+ * Balance checks keep the weighting of the old database scan: any token is due once its cutoff (30 seconds,
+ * 20 for base chains) has passed, and the due token with the highest weight * time since last update goes
+ * first. There's one heap per weight and cutoff, so the head of each is its oldest token and the pick only
+ * compares the heads.
+ */
+public class TokenUpdateScheduler
+{
+    private static final long BALANCE_INTERVAL = 30*DateUtils.SECOND_IN_MILLIS; //normal minimum update interval for tokens
+    private static final long CHAIN_BALANCE_INTERVAL = 20*DateUtils.SECOND_IN_MILLIS; //minimum interval for base chains
+    private static final float BACKGROUND_WEIGHT = 0.1f; //weight of other tokens while a token is in detail view
+    private static final long FOCUS_BALANCE_INTERVAL = 15*DateUtils.SECOND_IN_MILLIS;
+    private static final long PENDING_BALANCE_INTERVAL = 15*DateUtils.SECOND_IN_MILLIS;
+    private static final long BACKGROUND_BALANCE_INTERVAL = 60*DateUtils.SECOND_IN_MILLIS; //other tokens while a token is in detail view
+    private static final long CHAIN_TX_INTERVAL = 30*DateUtils.SECOND_IN_MILLIS;
+    private static final long PENDING_TX_INTERVAL = 10*DateUtils.SECOND_IN_MILLIS;
+    private static final long FOCUS_TX_INTERVAL = 10*DateUtils.SECOND_IN_MILLIS;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, PriorityQueue<Scheduled>> balanceQueues = new HashMap<>(); //by Entry.balanceClass
+    private final PriorityQueue<Scheduled> txQueue = new PriorityQueue<>();
+    private final List<Entry> deferred = new ArrayList<>(); //tokens passed over while the app is out of focus
+    private final Set<Integer> pendingChains = new HashSet<>();
+    private final Set<Integer> pendingTxChains = new HashSet<>();
+    private String walletAddress;
+    private String focusKey;
+    private int focusChainId;
+    private boolean appHasFocus = true;
+
+    /**
+     * Replace the schedule with the given tokens. Check times already recorded in memory are kept if they're
+     * more recent than the ones read from the database
+     * @param wallet wallet address
+     * @param metas tokens to schedule
+     * @param tokens matching tokens (used for transaction check intervals), same order as metas; entries may be null
+     */
+    public synchronized void rebuild(String wallet, TokenCardMeta[] metas, Token[] tokens)
+    {
+        Map<String, Entry> previous = walletAddress != null && walletAddress.equalsIgnoreCase(wallet) ? new HashMap<>(entries) : new HashMap<>();
+        walletAddress = wallet;
+        entries.clear();
+        deferred.clear();
+        balanceQueues.clear();
+        txQueue.clear();
+
+        for (int i = 0; i < metas.length; i++)
+        {
+            if (tokens[i] == null) continue;
+            Entry entry = new Entry(metas[i], tokens[i]);
+            Entry old = previous.get(entry.key);
+            if (old != null)
+            {
+                entry.lastUpdate = Math.max(entry.lastUpdate, old.lastUpdate);
+                entry.lastTxCheck = Math.max(entry.lastTxCheck, old.lastTxCheck);
+            }
+            entries.put(entry.key, entry);
+            scheduleBalance(entry);
+            scheduleTransaction(entry, entry.lastTxCheck + transactionInterval(entry));
+        }
+    }
+
+    /**
+     * Add a token, or refresh its weighting after its balance or type changed
+     * @param meta
+     * @param token
+     */
+    public synchronized void update(TokenCardMeta meta, Token token)
+    {
+        if (walletAddress == null) return;
+        Entry entry = new Entry(meta, token);
+        Entry old = entries.get(entry.key);
+        if (old != null)
+        {
+            entry.lastUpdate = Math.max(entry.lastUpdate, old.lastUpdate);
+            entry.lastTxCheck = Math.max(entry.lastTxCheck, old.lastTxCheck);
+            old.balanceGeneration++; //retire queued nodes of the old entry
+            old.txGeneration++;
+            deferred.remove(old);
+        }
+        entries.put(entry.key, entry);
+        scheduleBalance(entry);
+        scheduleTransaction(entry, entry.lastTxCheck + transactionInterval(entry));
+    }
+
+    /**
+     * Stop checking a token, eg when it's been hidden. Its queued checks are retired as they reach the heads
+     * @param chainId
+     * @param address
+     */
+    public synchronized void remove(int chainId, String address)
+    {
+        Entry old = entries.remove(TokensRealmSource.databaseKey(chainId, address));
+        if (old != null)
+        {
+            old.balanceGeneration++;
+            old.txGeneration++;
+            deferred.remove(old);
+        }
+    }
+
+    public synchronized void clear()
+    {
+        walletAddress = null;
+        entries.clear();
+        deferred.clear();
+        balanceQueues.clear();
+        txQueue.clear();
+        pendingChains.clear();
+        pendingTxChains.clear();
+    }
+
+    public synchronized boolean isEmpty()
+    {
+        return entries.isEmpty();
+    }
+
+    public synchronized void setFocusToken(ContractLocator focus)
+    {
+        String newFocusKey = focus != null ? TokensRealmSource.databaseKey(focus.chainId, focus.address) : null;
+        if (newFocusKey == null ? focusKey == null : newFocusKey.equals(focusKey)) return;
+        focusKey = newFocusKey;
+        focusChainId = focus != null ? focus.chainId : 0;
+        if (focus == null) return; //entries keyed for the old focus chain are re-keyed when they reach the head
+
+        //transaction checks for the focus chain come due sooner; re-key them once here rather than on every tick
+        for (Entry entry : entries.values())
+        {
+            if (entry.chainId == focusChainId) scheduleTransaction(entry, entry.lastTxCheck + FOCUS_TX_INTERVAL);
+        }
+    }
+
+    public synchronized void setChainPending(int chainId, boolean pending)
+    {
+        if (pending) pendingChains.add(chainId);
+        else pendingChains.remove(chainId);
+    }
+
+    public synchronized void setAppFocus(boolean hasFocus)
+    {
+        appHasFocus = hasFocus;
+        if (hasFocus)
+        {
+            for (Entry entry : deferred)
+            {
+                scheduleBalance(entry);
+            }
+            deferred.clear();
+        }
+    }
+
+    /**
+     * Pops the token whose balance is most due for a check, and marks it as checked
+     * @return token to check, or null if nothing is due
+     */
+    public synchronized ContractLocator nextBalanceCheck()
+    {
+        long currentTime = System.currentTimeMillis();
+        Entry next = nextPriorityBalanceCheck(currentTime);
+        if (next == null) next = pollDueBalanceCheck(currentTime);
+
+        if (next == null) return null;
+        next.lastUpdate = currentTime;
+        scheduleBalance(next);
+        return next.locator;
+    }
+
+    /**
+     * Pops further tokens of one type on a chain that are due for a balance check, so they can share a batch call.
+     * Due tokens that don't match stay queued
+     * @param chainId
+     * @param type
+     * @param max maximum number of tokens to return
+     * @return tokens to check, marked as checked
+     */
+    public synchronized List<ContractLocator> takeDueBalanceChecks(int chainId, ContractType type, int max)
+    {
+        long currentTime = System.currentTimeMillis();
+        List<ContractLocator> due = new ArrayList<>();
+        List<Entry> skipped = new ArrayList<>();
+
+        while (due.size() < max)
+        {
+            Entry entry = pollDueBalanceCheck(currentTime);
+            if (entry == null) break;
+            if (entry.chainId != chainId || entry.type != type)
+            {
+                skipped.add(entry);
+                continue;
+            }
+
+            entry.lastUpdate = currentTime;
+            scheduleBalance(entry);
+            due.add(entry.locator);
+        }
+
+        for (Entry entry : skipped)
+        {
+            queue(getBalanceQueue(entry), entry, currentTime, ++entry.balanceGeneration);
+        }
+
+        return due;
+    }
+
+    // Next entry that is due under the current focus rules: of the due heap heads, the highest weight * time since update
+    private Entry pollDueBalanceCheck(long currentTime)
+    {
+        while (true)
+        {
+            PriorityQueue<Scheduled> bestQueue = null;
+            float bestFactor = 0;
+            for (PriorityQueue<Scheduled> queue : balanceQueues.values())
+            {
+                Scheduled head = queue.peek();
+                while (head != null && head.generation != head.entry.balanceGeneration) //superseded by a later schedule
+                {
+                    queue.poll();
+                    head = queue.peek();
+                }
+                if (head == null || head.dueTime > currentTime) continue;
+
+                float updateFactor = balanceWeight(head.entry) * (float) (currentTime - head.entry.lastUpdate);
+                if (bestQueue == null || updateFactor > bestFactor)
+                {
+                    bestQueue = queue;
+                    bestFactor = updateFactor;
+                }
+            }
+
+            if (bestQueue == null) return null;
+            Entry entry = bestQueue.poll().entry;
+
+            if (!appHasFocus && !entry.isEthereum && !entry.key.equals(focusKey)) //only check chains when wallet out of focus
+            {
+                entry.balanceGeneration++;
+                deferred.add(entry);
+                continue;
+            }
+
+            long dueTime = entry.lastUpdate + currentBalanceInterval(entry);
+            if (dueTime > currentTime)
+            {
+                queue(bestQueue, entry, dueTime, ++entry.balanceGeneration);
+                continue;
+            }
+
+            return entry;
+        }
+    }
+
+    /**
+     * Pops the token most overdue for a transaction check, and marks it as checked
+     * @param pending chains that have pending transactions
+     * @return token to check, or null if nothing is due
+     */
+    public synchronized ContractLocator nextTransactionCheck(Collection<Integer> pending)
+    {
+        long currentTime = System.currentTimeMillis();
+        updatePendingTxChains(pending);
+
+        while (!txQueue.isEmpty() && txQueue.peek().dueTime <= currentTime)
+        {
+            Scheduled scheduled = txQueue.poll();
+            Entry entry = scheduled.entry;
+            if (scheduled.generation != entry.txGeneration) continue;
+
+            long interval = transactionInterval(entry);
+            if (interval == 0) continue;
+            if (entry.lastTxCheck + interval > currentTime)
+            {
+                scheduleTransaction(entry, entry.lastTxCheck + interval);
+                continue;
+            }
+
+            entry.lastTxCheck = currentTime;
+            scheduleTransaction(entry, currentTime + interval);
+            return entry.locator;
+        }
+
+        return null;
+    }
+
+    // Focus token and base chains with a recent transaction go ahead of the queue
+    private Entry nextPriorityBalanceCheck(long currentTime)
+    {
+        Entry focus = focusKey != null ? entries.get(focusKey) : null;
+        if (focus != null && currentTime - focus.lastUpdate > FOCUS_BALANCE_INTERVAL)
+        {
+            return focus;
+        }
+
+        for (int chainId : pendingChains)
+        {
+            Entry chain = walletAddress != null ? entries.get(TokensRealmSource.databaseKey(chainId, walletAddress)) : null;
+            if (chain != null && currentTime - chain.lastUpdate > PENDING_BALANCE_INTERVAL)
+            {
+                return chain;
+            }
+        }
+
+        return null;
+    }
+
+    private void updatePendingTxChains(Collection<Integer> pending)
+    {
+        if (pending == null) pending = new ArrayList<>();
+        for (int chainId : pending)
+        {
+            Entry chain = walletAddress != null ? entries.get(TokensRealmSource.databaseKey(chainId, walletAddress)) : null;
+            if (!pendingTxChains.contains(chainId) && chain != null)
+            {
+                scheduleTransaction(chain, chain.lastTxCheck + PENDING_TX_INTERVAL); //chains dropping out of pending are re-keyed when they reach the head
+            }
+        }
+        pendingTxChains.clear();
+        pendingTxChains.addAll(pending);
+    }
+
+    private void scheduleBalance(Entry entry)
+    {
+        long interval = balanceInterval(entry);
+        entry.balanceGeneration++;
+        if (interval > 0) queue(getBalanceQueue(entry), entry, entry.lastUpdate + interval, entry.balanceGeneration);
+    }
+
+    private PriorityQueue<Scheduled> getBalanceQueue(Entry entry)
+    {
+        PriorityQueue<Scheduled> queue = balanceQueues.get(entry.balanceClass);
+        if (queue == null)
+        {
+            queue = new PriorityQueue<>();
+            balanceQueues.put(entry.balanceClass, queue);
+        }
+        return queue;
+    }
+
+    private void scheduleTransaction(Entry entry, long dueTime)
+    {
+        entry.txGeneration++;
+        if (transactionInterval(entry) > 0) queue(txQueue, entry, dueTime, entry.txGeneration);
+    }
+
+    private void queue(PriorityQueue<Scheduled> queue, Entry entry, long dueTime, int generation)
+    {
+        queue.add(new Scheduled(entry, dueTime, generation));
+        if (queue.size() > 2*entries.size() + 64) dropSuperseded(queue, queue != txQueue);
+    }
+
+    // Re-queueing leaves superseded nodes behind until they reach the head; clear them out if they pile up
+    private static void dropSuperseded(PriorityQueue<Scheduled> queue, boolean isBalanceQueue)
+    {
+        List<Scheduled> live = new ArrayList<>();
+        for (Scheduled scheduled : queue)
+        {
+            int generation = isBalanceQueue ? scheduled.entry.balanceGeneration : scheduled.entry.txGeneration;
+            if (scheduled.generation == generation) live.add(scheduled);
+        }
+        queue.clear();
+        queue.addAll(live);
+    }
+
+    /**
+     * Normal balance check cutoff. The weighting in TokenCardMeta orders due tokens rather than setting the interval
+     * @return interval, or 0 if the token isn't checked on a timer
+     */
+    private static long balanceInterval(Entry entry)
+    {
+        if (entry.weight <= 0) return 0;
+        return entry.isEthereum ? CHAIN_BALANCE_INTERVAL : BALANCE_INTERVAL;
+    }
+
+    private float balanceWeight(Entry entry)
+    {
+        return (focusKey != null && !entry.isEthereum) ? BACKGROUND_WEIGHT : entry.weight;
+    }
+
+    private long currentBalanceInterval(Entry entry)
+    {
+        long interval = balanceInterval(entry);
+        if (focusKey != null && !entry.isEthereum)
+        {
+            interval = Math.max(interval, BACKGROUND_BALANCE_INTERVAL); //when looking at token in detail view (ERC20TokenDetail) update other tokens at 1 minute cycle
+        }
+        return interval;
+    }
+
+    private long transactionInterval(Entry entry)
+    {
+        if (entry.txInterval == 0) return 0;
+        if (focusKey != null && entry.chainId == focusChainId) return FOCUS_TX_INTERVAL;
+        if (entry.isEthereum && pendingTxChains.contains(entry.chainId)) return PENDING_TX_INTERVAL;
+        return entry.txInterval;
+    }
+
+    private static class Entry
+    {
+        final String key;
+        final ContractLocator locator;
+        final int chainId;
+        final ContractType type;
+        final boolean isEthereum;
+        final float weight;
+        final String balanceClass; //entries with the same weight and cutoff share a heap
+        final long txInterval;
+        long lastUpdate;
+        long lastTxCheck;
+        int balanceGeneration;
+        int txGeneration;
+
+        Entry(TokenCardMeta meta, Token token)
+        {
+            key = meta.tokenId;
+            chainId = meta.getChain();
+            locator = new ContractLocator(meta.getAddress(), chainId);
+            type = meta.type;
+            isEthereum = meta.isEthereum();
+            weight = meta.calculateBalanceUpdateWeight();
+            balanceClass = (isEthereum ? "chain-" : "token-") + weight;
+            lastUpdate = meta.lastUpdate;
+            lastTxCheck = token.lastTxCheck;
+
+            if (!token.needsTransactionCheck()) txInterval = 0;
+            else if (isEthereum) txInterval = CHAIN_TX_INTERVAL; //allow base chains to be checked about every 30 seconds when not pending
+            else txInterval = token.getTransactionCheckInterval();
+        }
+    }
+
+    private static class Scheduled implements Comparable<Scheduled>
+    {
+        final Entry entry;
+        final long dueTime;
+        final int generation;
+
+        Scheduled(Entry entry, long dueTime, int generation)
+        {
+            this.entry = entry;
+            this.dueTime = dueTime;
+            this.generation = generation;
+        }
+
+        @Override
+        public int compareTo(Scheduled other)
+        {
+            return Long.compare(dueTime, other.dueTime);
+        }
+    }
+}
@@ -29,7 +29,6 @@ import com.alphawallet.token.entity.ContractAddress;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -56,6 +55,8 @@ public class TokensService
     private static final long OPENSEA_CHECK_INTERVAL = 30 * DateUtils.SECOND_IN_MILLIS;
     private static final long OPENSEA_RINKEBY_CHECK = 4; //1 in [OPENSEA_RINKEBY_CHECK] opensea calls will to Rinkeby opensea
     public static final long PENDING_TIME_LIMIT = 3*DateUtils.MINUTE_IN_MILLIS; //cut off pending chain after 3 minutes
+    private static final int ERC20_BALANCE_BATCH = 100; //due ERC20 tokens on a chain are checked together in one batch call
+    private static final long UPDATE_SCHEDULE_REFRESH = 5*DateUtils.MINUTE_IN_MILLIS; //re-read token list from DB to pick up tokens added or hidden elsewhere
 
     private static final Map<String, Float> tokenValueMap = new ConcurrentHashMap<>(); //this is used to compute the USD value of the tokens on an address
     private static final Map<Integer, Long> pendingChainMap = new ConcurrentHashMap<>();
@@ -71,9 +72,10 @@ public class TokensService
     private final List<Integer> networkFilter;
     private ContractLocator focusToken;
     private final ConcurrentLinkedDeque<ContractAddress> unknownTokens;
+    private final TokenUpdateScheduler updateScheduler = new TokenUpdateScheduler();
+    private long nextScheduleRefresh;
     private long nextOpenSeaCheck;
     private int openSeaCount;
-    private boolean appHasFocus = true;
 
     @Nullable
     private Disposable openSeaCheckDisposable;
@@ -108,7 +110,6 @@ public class TokensService
         focusToken = null;
         setCurrentAddress(preferenceRepository.getCurrentWalletAddress()); //set current wallet address at service startup
         this.unknownTokens = new ConcurrentLinkedDeque<>();
-        appHasFocus = true;
     }
 
     private void checkUnknownTokens()
@@ -156,6 +157,7 @@ public class TokensService
             intent.putParcelableArrayListExtra(C.EXTRA_TOKENID_LIST, new ArrayList<>(Collections.singletonList(new ContractLocator(token.getAddress(), token.tokenInfo.chainId, token.getInterfaceSpec()))));
             context.sendBroadcast(intent);
             //now add to the balance update list if has balance
+            scheduleTokenUpdate(token);
         }
     }
 
@@ -215,9 +217,9 @@ public class TokensService
 
     private void storedToken(Token[] tokens)
     {
-        if (tokens.length > 0)
+        for (Token token : tokens)
         {
-            //token is stored
+            scheduleTokenUpdate(token);
         }
     }
 
@@ -251,6 +253,8 @@ public class TokensService
             tokenValueMap.clear();
             pendingChainMap.clear();
             tokenStoreList.clear();
+            updateScheduler.clear();
+            nextScheduleRefresh = 0;
             stopUpdateCycle();
         }
     }
@@ -295,11 +299,13 @@ public class TokensService
     {
         networkFilter.clear();
         networkFilter.addAll(ethereumNetworkRepository.getFilterNetworkList());
+        nextScheduleRefresh = 0;
     }
 
     public void setFocusToken(Token token)
     {
         focusToken = new ContractLocator(token.getAddress(), token.tokenInfo.chainId);
+        updateScheduler.setFocusToken(focusToken);
         if (token.isERC721())
         {
             nextOpenSeaCheck = 0;
@@ -309,11 +315,7 @@ public class TokensService
     public void clearFocusToken()
     {
         focusToken = null;
-    }
-
-    private boolean isFocusToken(Token t)
-    {
-        return focusToken != null && focusToken.equals(t);
+        updateScheduler.setFocusToken(null);
     }
 
     /**
@@ -411,6 +413,7 @@ public class TokensService
 
         addUnresolvedContracts(ethereumNetworkRepository.getAllKnownContracts(getNetworkFilters()));
         checkIssueTokens();
+        nextScheduleRefresh = 0;
 
         eventTimer = Observable.interval(1, 500, TimeUnit.MILLISECONDS)
                     .doOnNext(l -> checkTokensBalance()).subscribe();
@@ -450,13 +453,17 @@ public class TokensService
     {
         Token t = getNextInBalanceUpdateQueue();
 
-        if (t != null)
+        if (t != null && t.getInterfaceSpec() == ContractType.ERC20)
+        {
+            checkERC20Balances(t);
+        }
+        else if (t != null)
         {
             if (BuildConfig.DEBUG) Log.d("TOKEN", "Updating: " + t.tokenInfo.chainId + (t.isEthereum() ? " (Base Chain) ":"") + " : " + t.getAddress() + " : " + t.getFullName());
             balanceCheckDisposable = tokenRepository.updateTokenBalance(currentAddress, t.tokenInfo.chainId, t.getAddress(), t.getInterfaceSpec())
                     .subscribeOn(Schedulers.io())
                     .observeOn(AndroidSchedulers.mainThread())
-                    .subscribe(balanceChange -> onBalanceChange(balanceChange, t.tokenInfo.chainId), this::onError);
+                    .subscribe(balanceChange -> onBalanceChange(balanceChange, t), this::onError);
         }
 
         if (System.currentTimeMillis() > nextOpenSeaCheck &&
@@ -473,10 +480,45 @@ public class TokensService
         return tokenRepository.fetchChainBalance(walletAddress, chainId);
     }
 
-    private void onBalanceChange(Boolean balanceChange, int chainId)
+    // Check the balance of this token along with any other ERC20 tokens on the chain that are due
+    private void checkERC20Balances(Token t)
+    {
+        int chainId = t.tokenInfo.chainId;
+        List<String> tokenAddresses = new ArrayList<>();
+        tokenAddresses.add(t.getAddress());
+        for (ContractLocator cl : updateScheduler.takeDueBalanceChecks(chainId, ContractType.ERC20, ERC20_BALANCE_BATCH - 1))
+        {
+            tokenAddresses.add(cl.address);
+        }
+
+        if (BuildConfig.DEBUG) Log.d("TOKEN", "Updating: " + chainId + " : " + tokenAddresses.size() + " ERC20 tokens");
+        balanceCheckDisposable = tokenRepository.updateERC20Balances(currentAddress, chainId, tokenAddresses)
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(changed -> onBalancesChange(changed, chainId), this::onError);
+    }
+
+    private void onBalanceChange(Boolean balanceChange, Token token)
     {
         // could still be pending transactions so let's keep checking for a short while
-        if (balanceChange && BuildConfig.DEBUG) Log.d("TOKEN", "Change Registered: * " + chainId);
+        if (balanceChange && BuildConfig.DEBUG) Log.d("TOKEN", "Change Registered: * " + token.tokenInfo.chainId);
+        if (balanceChange) updateBalanceWeighting(token.tokenInfo.chainId, token.getAddress());
+    }
+
+    private void onBalancesChange(String[] changedAddresses, int chainId)
+    {
+        if (changedAddresses.length > 0 && BuildConfig.DEBUG) Log.d("TOKEN", "Change Registered: * " + chainId + " : " + changedAddresses.length + " tokens");
+        for (String address : changedAddresses)
+        {
+            updateBalanceWeighting(chainId, address);
+        }
+    }
+
+    // update weighting depends on balance
+    private void updateBalanceWeighting(int chainId, String address)
+    {
+        Token updated = getToken(chainId, address);
+        if (updated != null) updateScheduler.update(new TokenCardMeta(updated), updated);
     }
 
     private void checkPendingChains()
@@ -488,6 +530,7 @@ public class TokensService
             if (currentTime > pendingChainMap.get(chainId))
             {
                 pendingChainMap.remove(chainId);
+                updateScheduler.setChainPending(chainId, false);
             }
         }
     }
@@ -605,6 +648,7 @@ public class TokensService
     public void markChainPending(int chainId)
     {
         pendingChainMap.put(chainId, System.currentTimeMillis() + PENDING_TIME_LIMIT);
+        updateScheduler.setChainPending(chainId, true);
     }
 
     public void addTokenValue(int chainId, String tokenAddress, float value)
@@ -645,60 +689,14 @@ public class TokensService
 
     /**
      * Token update heuristic - calculates which token should be updated next
+     * Timings and weightings are in TokenUpdateScheduler
      * @return
      */
     public Token getNextInBalanceUpdateQueue()
     {
-        //pull all tokens from this wallet out of DB
-        TokenCardMeta[] tokenList = tokenRepository.fetchTokenMetasForUpdate(new Wallet(currentAddress), networkFilter);
-
-        //calculate update based on last update time & importance
-        float highestWeighting = 0;
-        long currentTime = System.currentTimeMillis();
-        Token highestToken = null;
-
-        //this list will be in order of update.
-        for (TokenCardMeta check : tokenList)
-        {
-            Token token = getToken(check.getChain(), check.getAddress());
-            if (token == null) continue;
-            long lastUpdateDiff = currentTime - check.lastUpdate;
-            float weighting = check.calculateBalanceUpdateWeight();
-
-            if (!appHasFocus && (!token.isEthereum() && !isFocusToken(token))) continue; //only check chains when wallet out of focus
-
-            //simply multiply the weighting by the last diff.
-            float updateFactor = weighting * (float) lastUpdateDiff;
-            long cutoffCheck = 30*DateUtils.SECOND_IN_MILLIS; //normal minimum update frequency for token 30 seconds
-
-            if (isFocusToken(token))
-            {
-                updateFactor = 3.0f * (float) lastUpdateDiff;
-                cutoffCheck = 15*DateUtils.SECOND_IN_MILLIS; //focus token can be checked every 15 seconds - focus token when erc20 or chain clicked on in wallet
-            }
-            else if (check.isEthereum() && pendingChainMap.containsKey(token.tokenInfo.chainId)) //higher priority for checking balance of pending chain
-            {
-                cutoffCheck = 15*DateUtils.SECOND_IN_MILLIS;
-                updateFactor = 4.0f * (float) lastUpdateDiff; //chain has a recent transaction
-            }
-            else if (check.isEthereum())
-            {
-                cutoffCheck = 20*DateUtils.SECOND_IN_MILLIS; //update check limit for base chains is 20 seconds
-            }
-            else if (focusToken != null)
-            {
-                updateFactor = 0.1f * (float) lastUpdateDiff;
-                cutoffCheck = 60*DateUtils.SECOND_IN_MILLIS; //when looking at token in detail view (ERC20TokenDetail) update other tokens at 1 minute cycle
-            }
-
-            if (updateFactor > highestWeighting && (lastUpdateDiff > (float)cutoffCheck))
-            {
-                highestWeighting = updateFactor;
-                highestToken = token;
-            }
-        }
-
-        return highestToken;
+        checkUpdateSchedule();
+        ContractLocator next = updateScheduler.nextBalanceCheck();
+        return next != null ? getToken(next.chainId, next.address) : null;
     }
 
     /**
@@ -708,69 +706,54 @@ public class TokensService
      */
     public Token getRequiresTransactionUpdate(List<Integer> pendingTxChains)
     {
-        //pull all tokens from this wallet out of DB
-        TokenCardMeta[] tokenList = tokenRepository.fetchTokenMetasForUpdate(new Wallet(currentAddress), networkFilter);
+        checkUpdateSchedule();
+        ContractLocator next = updateScheduler.nextTransactionCheck(pendingTxChains);
+        return next != null ? getToken(next.chainId, next.address) : null;
+    }
 
-        //calculate update based on last update time & importance
-        long currentTime = System.currentTimeMillis();
-        Token highestToken = null;
-        long highestDiff = 0;
+    /**
+     * Reload the update schedule from the database when the wallet or network filter changes, and periodically
+     * so tokens enabled or hidden outside this service are picked up
+     */
+    private synchronized void checkUpdateSchedule()
+    {
+        if (currentAddress == null || System.currentTimeMillis() < nextScheduleRefresh) return;
+        nextScheduleRefresh = System.currentTimeMillis() + UPDATE_SCHEDULE_REFRESH;
 
-        for (TokenCardMeta check : tokenList)
+        //pull all tokens from this wallet out of DB
+        TokenCardMeta[] tokenList = tokenRepository.fetchTokenMetasForUpdate(new Wallet(currentAddress), networkFilter);
+        Token[] tokens = new Token[tokenList.length];
+        for (int i = 0; i < tokenList.length; i++)
         {
-            Token token = getToken(check.getChain(), check.getAddress());
-            if (token == null) continue;
-            if (!token.needsTransactionCheck()) continue;
-            long timeIntervalCheck = getTokenTimeInterval(token, pendingTxChains);
-            if (timeIntervalCheck == 0) continue;
-
-            if (focusToken != null && token.tokenInfo.chainId == focusToken.chainId)
-            {
-                timeIntervalCheck = 10*DateUtils.SECOND_IN_MILLIS;
-            }
-
-            if (currentTime >= (token.lastTxCheck + timeIntervalCheck))
-            {
-                long diff = currentTime - (token.lastTxCheck + timeIntervalCheck);
-                if (diff > highestDiff)
-                {
-                    highestDiff = diff;
-                    highestToken = token;
-                }
-            }
+            tokens[i] = getToken(tokenList[i].getChain(), tokenList[i].getAddress());
         }
 
-        return highestToken;
+        updateScheduler.rebuild(currentAddress, tokenList, tokens);
+        updateScheduler.setFocusToken(focusToken);
+        for (Integer chainId : pendingChainMap.keySet())
+        {
+            updateScheduler.setChainPending(chainId, true);
+        }
     }
 
     /**
-     * Timings for when there can be a check for new transactions
-     * @param t
-     * @param pending
-     * @return
+     * Call after a token is enabled or hidden, so the schedule follows straight away rather than at the next refresh
+     * @param token
      */
-    private long getTokenTimeInterval(Token t, Collection<Integer> pending)
+    public void tokenEnableChanged(Token token)
     {
-        long nextTimeCheck;
+        scheduleTokenUpdate(token);
+    }
 
-        if (t.isEthereum() && pending != null && pending.contains(t.tokenInfo.chainId)) //check chain every 10 seconds while transaction is pending
-        {
-            nextTimeCheck = 10*DateUtils.SECOND_IN_MILLIS;
-        }
-        else if (t.isEthereum())
-        {
-            nextTimeCheck = 30*DateUtils.SECOND_IN_MILLIS; //allow base chains to be checked about every 30 seconds when not pending
-        }
-        else if (t != null)
-        {
-            nextTimeCheck = t.getTransactionCheckInterval();
-        }
-        else
+    private void scheduleTokenUpdate(Token token)
+    {
+        if (currentAddress == null || !currentAddress.equalsIgnoreCase(token.getWallet())) return;
+        if (!networkFilter.contains(token.tokenInfo.chainId) || (!token.isEthereum() && !token.tokenInfo.isEnabled))
         {
-            nextTimeCheck = 0;
+            updateScheduler.remove(token.tokenInfo.chainId, token.getAddress()); //stop checking it now, not at the next schedule refresh
+            return;
         }
-
-        return nextTimeCheck;
+        updateScheduler.update(new TokenCardMeta(token), token);
     }
 
     public Realm getTickerRealmInstance()
@@ -798,12 +781,12 @@ public class TokensService
 
     public void appInFocus()
     {
-        appHasFocus = true;
+        updateScheduler.setAppFocus(true);
     }
 
     public void appOutOfFocus()
     {
-        appHasFocus = false;
+        updateScheduler.setAppFocus(false);
     }
 
     /**
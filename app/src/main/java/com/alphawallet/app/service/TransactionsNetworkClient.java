@@ -231,10 +231,17 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
     private void getRelatedTransactionList(List<Transaction> txList, EtherscanTransaction[] myTxs, String walletAddress, int chainId)
     {
         txList.clear();
-        for (EtherscanTransaction etx : myTxs)
+        Transaction[] txs = new Transaction[myTxs.length];
+        for (int i = 0; i < myTxs.length; i++)
         {
-            Transaction tx = etx.createTransaction(walletAddress, chainId);
-            if (tx != null)
+            txs[i] = myTxs[i].createTransaction(null, chainId);
+        }
+
+        //decode the page in one pass; the involvement check below then uses the stored inputs
+        Transaction.decoder.decodeAll(txs, walletAddress);
+        for (Transaction tx : txs)
+        {
+            if (tx.getWalletInvolvedInTransaction(walletAddress))
             {
                 txList.add(tx);
             }
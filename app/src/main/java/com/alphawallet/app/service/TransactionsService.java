@@ -1,6 +1,8 @@
 package com.alphawallet.app.service;
 
+import android.net.Uri;
 import android.text.TextUtils;
+import android.text.format.DateUtils;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
@@ -20,19 +22,30 @@ import com.alphawallet.token.entity.ContractAddress;
 
 import org.web3j.exceptions.MessageDecodingException;
 import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
 import org.web3j.protocol.core.methods.response.EthBlock;
 import org.web3j.protocol.core.methods.response.EthGetTransactionReceipt;
 import org.web3j.protocol.core.methods.response.EthTransaction;
 
+import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.CompositeDisposable;
 import io.reactivex.disposables.Disposable;
+import io.reactivex.observers.DisposableSingleObserver;
 import io.reactivex.schedulers.Schedulers;
 
 /**
@@ -40,17 +53,31 @@ import io.reactivex.schedulers.Schedulers;
  */
 public class TransactionsService
 {
-    private static final String NO_TRANSACTION_EXCEPTION = "NoSuchElementException";
     private final TokensService tokensService;
     private final EthereumNetworkRepositoryType ethereumNetworkRepository;
     private final TransactionsNetworkClientType transactionsClient;
     private final TransactionLocalSource transactionsCache;
-    private int currentChainIndex;
-    private boolean nftCheck;
 
     private final static int TRANSACTION_DROPPED = -1;
     private final static int TRANSACTION_SEEN = -2;
 
+    //Token transfer sync: every chain's ERC20 and NFT transfers are read each cycle, several chains at once
+    private final static long TRANSFER_SYNC_INTERVAL = 15 * DateUtils.SECOND_IN_MILLIS;
+    private final static int MAX_CONCURRENT_TRANSFER_READS = 4;
+    private final static long PROVIDER_CALL_INTERVAL = 500; //ms between calls to one API provider; keeps within free tier limits
+    private final static long RECENT_ACTIVITY = 10 * DateUtils.MINUTE_IN_MILLIS;
+
+    private final Map<String, TransferSync> transferSyncs = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> chainActivity = new ConcurrentHashMap<>(); //chainId -> time transfers were last seen
+    private final Map<String, Long> providerNextCall = new ConcurrentHashMap<>();
+    private final CompositeDisposable transferReads = new CompositeDisposable(); //running reads, cancelled on wallet change
+
+    //Pending transactions of the current wallet, loaded from the database once per wallet and then kept up to date here
+    private final Map<String, Transaction> pendingTransactions = new ConcurrentHashMap<>();
+    private final Set<String> seenInPool = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final Set<Integer> checkingPendingChains = Collections.newSetFromMap(new ConcurrentHashMap<>()); //chains with a check still running
+    private String pendingWallet;
+
     @Nullable
     private Disposable fetchTransactionDisposable;
     @Nullable
@@ -58,8 +85,6 @@ public class TransactionsService
     @Nullable
     private Disposable erc20EventCheckCycle;
     @Nullable
-    private Disposable eventFetch;
-    @Nullable
     private Disposable pendingTransactionFetch;
 
     public TransactionsService(TokensService tokensService,
@@ -85,8 +110,7 @@ public class TransactionsService
 
     private void fetchTransactions()
     {
-        currentChainIndex = 0;
-        nftCheck = true; //check nft first to filter out NFT tokens
+        resetTransferSync();
 
         if (fetchTransactionDisposable != null && !fetchTransactionDisposable.isDisposed())
             fetchTransactionDisposable.dispose();
@@ -100,7 +124,7 @@ public class TransactionsService
 
         if (erc20EventCheckCycle == null || erc20EventCheckCycle.isDisposed())
         {
-            erc20EventCheckCycle = Observable.interval(2, 15, TimeUnit.SECONDS)
+            erc20EventCheckCycle = Observable.interval(2, 1, TimeUnit.SECONDS)
                     .doOnNext(l -> checkTransactions()).subscribe();
         }
 
@@ -123,33 +147,155 @@ public class TransactionsService
     /**
      * Start the token transaction checker
      * This uses the Etherscan API routes returning ERC20 and ERC721 token transfers, both incoming and outgoing.
+     *
+     * Each chain has an ERC20 and an NFT read, each with its own block cursor (see TransactionsNetworkClient.readTransfers).
+     * Reads that are due run in parallel up to MAX_CONCURRENT_TRANSFER_READS, with calls to any one API provider spaced
+     * by PROVIDER_CALL_INTERVAL. Chains with pending transactions go first, then chains with recent transfers.
      */
-    private void checkTransactions()
+    private synchronized void checkTransactions()
     {
+        String walletAddress = tokensService.getCurrentAddress();
         List<Integer> filters = tokensService.getNetworkFilters();
-        if (tokensService.getCurrentAddress() == null || filters.size() == 0 ||
-                (eventFetch != null && !eventFetch.isDisposed())) { return; }
-        if (currentChainIndex >= filters.size()) currentChainIndex = 0;
+        if (walletAddress == null || filters.size() == 0) { return; }
 
-        readTokenMoves(filters.get(currentChainIndex), nftCheck);
+        int inFlight = 0;
+        for (TransferSync sync : transferSyncs.values())
+        {
+            if (sync.inFlight) inFlight++;
+        }
+        if (inFlight >= MAX_CONCURRENT_TRANSFER_READS) return;
 
-        if (!nftCheck)
+        long currentTime = System.currentTimeMillis();
+        List<TransferSync> dueReads = new ArrayList<>();
+        for (int chainId : filters)
         {
-            nftCheck = true;
+            TransferSync nftSync = getTransferSync(chainId, true);
+            TransferSync erc20Sync = getTransferSync(chainId, false);
+            if (nftSync.isDue(currentTime)) dueReads.add(nftSync);
+            //check nft first to filter out NFT tokens
+            if (erc20Sync.isDue(currentTime) && nftSync.lastRead > 0) dueReads.add(erc20Sync);
         }
-        else
+
+        if (dueReads.size() == 0) return;
+
+        List<Integer> pendingChains = getPendingChains();
+        for (TransferSync sync : dueReads)
         {
-            nftCheck = false;
-            currentChainIndex++;
+            Long lastActivity = chainActivity.get(sync.chainId);
+            if (pendingChains.contains(sync.chainId)) sync.priority = 0;
+            else if (lastActivity != null && currentTime - lastActivity < RECENT_ACTIVITY) sync.priority = 1;
+            else sync.priority = 2;
+        }
+
+        Collections.sort(dueReads, (a, b) -> {
+            if (a.priority != b.priority) return Integer.compare(a.priority, b.priority);
+            if (a.lastRead != b.lastRead) return Long.compare(a.lastRead, b.lastRead);
+            return Boolean.compare(b.isNFT, a.isNFT);
+        });
+
+        for (TransferSync sync : dueReads)
+        {
+            if (inFlight >= MAX_CONCURRENT_TRANSFER_READS) break;
+            NetworkInfo network = ethereumNetworkRepository.getNetworkByChain(sync.chainId);
+            if (network == null) continue;
+            String provider = getProviderKey(network);
+            Long nextCall = providerNextCall.get(provider);
+            if (nextCall != null && currentTime < nextCall) continue; //provider is busy; this read is picked up on a later tick
+
+            providerNextCall.put(provider, currentTime + PROVIDER_CALL_INTERVAL);
+            readTokenMoves(walletAddress, network, sync);
+            inFlight++;
         }
     }
 
-    private void readTokenMoves(int chainId, boolean isNFT)
+    private void readTokenMoves(String walletAddress, NetworkInfo network, TransferSync sync)
     {
-        eventFetch = transactionsClient.readTransfers(tokensService.getCurrentAddress(), ethereumNetworkRepository.getNetworkByChain(chainId), tokensService, isNFT)
+        sync.inFlight = true;
+        transferReads.add(transactionsClient.readTransfers(walletAddress, network, tokensService, sync.isNFT)
                 .subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(count -> { eventFetch = null; System.out.println("Received: " + count); });
+                .subscribeWith(new DisposableSingleObserver<Integer>()
+                {
+                    @Override
+                    public void onSuccess(Integer count)
+                    {
+                        transferReads.delete(this);
+                        onTransfersRead(walletAddress, sync, count);
+                    }
+
+                    @Override
+                    public void onError(Throwable e)
+                    {
+                        transferReads.delete(this);
+                        onTransfersRead(walletAddress, sync, 0);
+                    }
+                }));
+    }
+
+    private synchronized void onTransfersRead(String walletAddress, TransferSync sync, int count)
+    {
+        //a read for the previous wallet that finished before it could be cancelled; its sync entry has been discarded
+        if (!walletAddress.equalsIgnoreCase(tokensService.getCurrentAddress())
+                || transferSyncs.get(getTransferSyncKey(sync.chainId, sync.isNFT)) != sync)
+        {
+            return;
+        }
+
+        long currentTime = System.currentTimeMillis();
+        sync.inFlight = false;
+        sync.lastRead = sync.readAgain ? 0 : currentTime;
+        sync.readAgain = false;
+        if (count > 0)
+        {
+            chainActivity.put(sync.chainId, currentTime);
+            if (BuildConfig.DEBUG) Log.d("TRANSACTION", "Received " + count + (sync.isNFT ? " NFT" : " ERC20") + " transfers on chain " + sync.chainId);
+        }
+    }
+
+    /**
+     * Read this chain's transfers on the next tick, ahead of chains without activity
+     */
+    private synchronized void requestTransferRead(int chainId, boolean isNFT)
+    {
+        TransferSync sync = getTransferSync(chainId, isNFT);
+        if (sync.inFlight) sync.readAgain = true; //the running read may have started before this transaction was mined
+        else sync.lastRead = 0;
+        chainActivity.put(chainId, System.currentTimeMillis());
+    }
+
+    private synchronized void resetTransferSync()
+    {
+        transferReads.clear(); //cancel reads still running for the previous wallet
+        transferSyncs.clear();
+        chainActivity.clear();
+    }
+
+    private TransferSync getTransferSync(int chainId, boolean isNFT)
+    {
+        String key = getTransferSyncKey(chainId, isNFT);
+        TransferSync sync = transferSyncs.get(key);
+        if (sync == null)
+        {
+            sync = new TransferSync(chainId, isNFT);
+            transferSyncs.put(key, sync);
+        }
+        return sync;
+    }
+
+    private static String getTransferSyncKey(int chainId, boolean isNFT)
+    {
+        return chainId + (isNFT ? "-nft" : "-erc20");
+    }
+
+    /**
+     * Rate limits are per API key, which is shared across an explorer's subdomains (eg api-ropsten.etherscan.io)
+     */
+    private static String getProviderKey(NetworkInfo network)
+    {
+        String host = Uri.parse(network.etherscanTxUrl).getHost();
+        if (TextUtils.isEmpty(host)) return network.etherscanTxUrl;
+        int tld = host.lastIndexOf('.');
+        int domain = tld > 0 ? host.lastIndexOf('.', tld - 1) : -1;
+        return host.substring(domain + 1);
     }
 
     private void checkTransactionQueue()
@@ -157,11 +303,12 @@ public class TransactionsService
         if (tokensService.getCurrentAddress() == null) return;
         if (fetchTransactionDisposable == null)
         {
-            Token t = tokensService.getRequiresTransactionUpdate(getPendingChains());
+            List<Integer> pendingChains = getPendingChains();
+            Token t = tokensService.getRequiresTransactionUpdate(pendingChains);
 
             if (t != null)
             {
-                String tick = (t.isEthereum() && getPendingChains().contains(t.tokenInfo.chainId)) ? "*" : "";
+                String tick = (t.isEthereum() && pendingChains.contains(t.tokenInfo.chainId)) ? "*" : "";
                 if (t.isEthereum())
                     System.out.println("Transaction check for: " + t.tokenInfo.chainId + " (" + t.getNetworkName() + ") " + tick);
                 NetworkInfo network = ethereumNetworkRepository.getNetworkByChain(t.tokenInfo.chainId);
@@ -183,8 +330,7 @@ public class TransactionsService
     private List<Integer> getPendingChains()
     {
         List<Integer> pendingChains = new ArrayList<>();
-        Transaction[] pendingTransactions = fetchPendingTransactions();
-        for (Transaction tx : pendingTransactions)
+        for (Transaction tx : getPendingTransactions())
         {
             if (!pendingChains.contains(tx.chainId)) pendingChains.add(tx.chainId);
         }
@@ -192,16 +338,27 @@ public class TransactionsService
         return pendingChains;
     }
 
-    private Transaction[] fetchPendingTransactions()
+    /**
+     * @return pending transactions of the current wallet; only reads the database when the wallet changes
+     */
+    private synchronized Collection<Transaction> getPendingTransactions()
     {
-        if (!TextUtils.isEmpty(tokensService.getCurrentAddress()))
-        {
-            return transactionsCache.fetchPendingTransactions(tokensService.getCurrentAddress());
-        }
-        else
+        String currentWallet = tokensService.getCurrentAddress();
+        if (TextUtils.isEmpty(currentWallet)) return Collections.emptyList();
+
+        if (!currentWallet.equalsIgnoreCase(pendingWallet))
         {
-            return new Transaction[0];
+            pendingTransactions.clear();
+            seenInPool.clear();
+            for (Transaction tx : transactionsCache.fetchPendingTransactions(currentWallet))
+            {
+                pendingTransactions.put(tx.hash, tx);
+                if (String.valueOf(TRANSACTION_SEEN).equals(tx.blockNumber)) seenInPool.add(tx.hash);
+            }
+            pendingWallet = currentWallet;
         }
+
+        return pendingTransactions.values();
     }
 
     private void onTxError(Throwable throwable)
@@ -279,68 +436,159 @@ public class TransactionsService
         eventTimer = null;
     }
 
-    public void markPending(Transaction tx)
+    public synchronized void markPending(Transaction tx)
     {
         System.out.println("Marked Pending Tx Chain: " + tx.chainId);
+        getPendingTransactions(); //make sure the wallet's existing pending transactions are loaded first
+        if (tx.from == null || !tx.from.equalsIgnoreCase(pendingWallet))
+        {
+            //sent from another wallet, eg just before a wallet switch; it's loaded from the database when that wallet is current
+            return;
+        }
+        pendingTransactions.put(tx.hash, tx);
         tokensService.markChainPending(tx.chainId);
     }
 
+    /**
+     * Check pending transactions, one JSON-RPC batch per chain for the transactions and another for the receipts
+     * of those that were mined
+     */
     private void checkPendingTransactions()
     {
         final String currentWallet = tokensService.getCurrentAddress();
-        Transaction[] pendingTxs = fetchPendingTransactions();
-        if (BuildConfig.DEBUG) Log.d("TRANSACTION", "Checking " + pendingTxs.length + " Transactions");
-        for (final Transaction tx : pendingTxs)
+        Map<Integer, List<Transaction>> chainTransactions = new HashMap<>();
+        for (Transaction tx : getPendingTransactions())
         {
-            Web3j web3j = TokenRepository.getWeb3jService(tx.chainId);
-            web3j.ethGetTransactionByHash(tx.hash).sendAsync().thenAccept(txDetails -> {
-                org.web3j.protocol.core.methods.response.Transaction fetchedTx = txDetails.getTransaction().orElseThrow(); //try to read the transaction data
-                //if transaction is complete; record it here
-                BigInteger blockNumber;
-                try
-                {
-                    blockNumber = fetchedTx.getBlockNumber();
-                }
-                catch (MessageDecodingException e)
-                {
-                    blockNumber = BigInteger.valueOf(-1);
-                }
+            List<Transaction> txList = chainTransactions.get(tx.chainId);
+            if (txList == null)
+            {
+                txList = new ArrayList<>();
+                chainTransactions.put(tx.chainId, txList);
+            }
+            txList.add(tx);
+        }
 
-                if (blockNumber.compareTo(BigInteger.ZERO) > 0)
-                {
-                    //Write to database (including detecting Transaction write error)
-                    web3j.ethGetTransactionReceipt(tx.hash).sendAsync().thenAccept(receipt -> {
-                        if (receipt != null)
-                        {
-                            //get timestamp and write tx
-                            EventUtils.getBlockDetails(fetchedTx.getBlockHash(), web3j)
-                                    .map(ethBlock -> storeRawTx(ethBlock, tx.chainId, receipt, txDetails, currentWallet))
-                                    .map(this::triggerTokenMoveCheck)
-                                    .subscribeOn(Schedulers.io())
-                                    .observeOn(AndroidSchedulers.mainThread())
-                                    .subscribe().isDisposed();
-                        }
-                    }).exceptionally(throwable -> {
-                        throwable.printStackTrace();
-                        return null;
-                    });
-                }
-                else if (!tx.blockNumber.equals(String.valueOf(TRANSACTION_SEEN)))
-                {
-                    //detected the tx in the pool, mark as seen
-                    transactionsCache.markTransactionBlock(currentWallet, tx.hash, TRANSACTION_SEEN);
-                }
-            }).exceptionally(throwable -> {
-                String c1 = throwable.getMessage(); //java.util.NoSuchElementException: No value present
-                if (!TextUtils.isEmpty(c1) && c1.contains(NO_TRANSACTION_EXCEPTION) && tx.blockNumber.equals(String.valueOf(TRANSACTION_SEEN))) //we sighted this tx in the pool, now it's gone
+        if (chainTransactions.isEmpty()) return;
+        if (BuildConfig.DEBUG) Log.d("TRANSACTION", "Checking " + pendingTransactions.size() + " Transactions");
+
+        for (Map.Entry<Integer, List<Transaction>> entry : chainTransactions.entrySet())
+        {
+            if (!checkingPendingChains.add(entry.getKey())) continue; //previous check of this chain still running
+            Single.fromCallable(() -> checkPendingChain(currentWallet, entry.getKey(), entry.getValue()))
+                    .subscribeOn(Schedulers.io())
+                    .doFinally(() -> checkingPendingChains.remove(entry.getKey()))
+                    .subscribe(minedTxs -> { for (Transaction tx : minedTxs) triggerTokenMoveCheck(tx); },
+                            Throwable::printStackTrace).isDisposed();
+        }
+    }
+
+    /**
+     * @return transactions that were mined and written to the database
+     */
+    private List<Transaction> checkPendingChain(String currentWallet, int chainId, List<Transaction> pendingTxs) throws IOException
+    {
+        Web3j web3j = TokenRepository.getWeb3jService(chainId);
+        AWHttpService nodeService = TokenRepository.getNodeService(chainId);
+        List<Transaction> minedTxs = new ArrayList<>();
+
+        List<Request<?, EthTransaction>> txRequests = new ArrayList<>();
+        for (Transaction tx : pendingTxs)
+        {
+            txRequests.add(web3j.ethGetTransactionByHash(tx.hash));
+        }
+        Map<Long, EthTransaction> txResults = sendBatch(nodeService, txRequests, EthTransaction.class);
+
+        Map<Transaction, EthTransaction> mined = new HashMap<>();
+        List<Request<?, EthGetTransactionReceipt>> receiptRequests = new ArrayList<>();
+        for (int i = 0; i < pendingTxs.size(); i++)
+        {
+            Transaction tx = pendingTxs.get(i);
+            EthTransaction txDetails = txResults.get(txRequests.get(i).getId());
+            if (txDetails == null || txDetails.hasError()) continue; //try again next cycle
+
+            org.web3j.protocol.core.methods.response.Transaction fetchedTx = txDetails.getResult();
+            if (fetchedTx == null)
+            {
+                if (seenInPool.contains(tx.hash))
                 {
-                    //transaction is no longer in pool or on chain. Cause: dropped from mining pool
-                    //mark transaction as dropped
+                    //we sighted this tx in the pool, now it's gone: it was dropped from the mining pool
                     transactionsCache.markTransactionBlock(currentWallet, tx.hash, TRANSACTION_DROPPED);
+                    removePending(tx);
                 }
-                return null;
-            });
+                continue;
+            }
+
+            BigInteger blockNumber;
+            try
+            {
+                blockNumber = fetchedTx.getBlockNumber();
+            }
+            catch (MessageDecodingException e)
+            {
+                blockNumber = BigInteger.valueOf(-1);
+            }
+
+            if (blockNumber.compareTo(BigInteger.ZERO) > 0)
+            {
+                mined.put(tx, txDetails);
+                receiptRequests.add(web3j.ethGetTransactionReceipt(tx.hash));
+            }
+            else if (seenInPool.add(tx.hash))
+            {
+                //detected the tx in the pool, mark as seen
+                transactionsCache.markTransactionBlock(currentWallet, tx.hash, TRANSACTION_SEEN);
+            }
+        }
+
+        if (mined.isEmpty()) return minedTxs;
+
+        Map<String, EthGetTransactionReceipt> receipts = new HashMap<>();
+        Map<Long, EthGetTransactionReceipt> receiptResults = sendBatch(nodeService, receiptRequests, EthGetTransactionReceipt.class);
+        for (EthGetTransactionReceipt receipt : receiptResults.values())
+        {
+            if (receipt.getResult() != null) receipts.put(receipt.getResult().getTransactionHash().toLowerCase(), receipt);
+        }
+
+        for (Map.Entry<Transaction, EthTransaction> entry : mined.entrySet())
+        {
+            Transaction tx = entry.getKey();
+            EthGetTransactionReceipt receipt = receipts.get(tx.hash.toLowerCase());
+            if (receipt == null) continue; //receipt not available yet
+
+            //get timestamp and write tx; blocks are cached so transactions mined together share one block fetch
+            EthBlock ethBlock = EventUtils.getBlockDetails(entry.getValue().getResult().getBlockHash(), web3j).blockingGet();
+            if (ethBlock.getBlock() == null) continue;
+
+            Transaction minedTx = transactionsCache.storeRawTx(new Wallet(currentWallet), chainId, entry.getValue(),
+                    ethBlock.getBlock().getTimestamp().longValue(), receipt.getResult().getStatus().equals("0x1"));
+            removePending(tx);
+            if (minedTx != null) minedTxs.add(minedTx);
         }
+
+        return minedTxs;
+    }
+
+    /**
+     * Send requests as one batch, or one at a time if the node doesn't support batches
+     */
+    private <T extends Response<?>> Map<Long, T> sendBatch(AWHttpService nodeService, List<Request<?, T>> requests, Class<T> responseType) throws IOException
+    {
+        Map<Long, T> results = nodeService.sendBatch(requests, responseType);
+        if (results == null)
+        {
+            results = new HashMap<>();
+            for (Request<?, T> request : requests)
+            {
+                results.put(request.getId(), request.send());
+            }
+        }
+        return results;
+    }
+
+    private void removePending(Transaction tx)
+    {
+        pendingTransactions.remove(tx.hash);
+        seenInPool.remove(tx.hash);
     }
 
     private Transaction triggerTokenMoveCheck(Transaction transaction)
@@ -359,7 +607,7 @@ public class TransactionsService
                 case RECEIVED:
                 case SEND:
                     if (BuildConfig.DEBUG) Log.d("TRANSACTION", "Checking Token moves for " + t.getFullName());
-                    readTokenMoves(transaction.chainId, t.isERC721());
+                    requestTransferRead(transaction.chainId, t.isERC721());
                 default:
                     break;
             }
@@ -368,15 +616,24 @@ public class TransactionsService
         return transaction;
     }
 
-    private Transaction storeRawTx(EthBlock ethBlock, int chainId, EthGetTransactionReceipt receipt, EthTransaction txDetails, String currentWallet)
+    private static class TransferSync
     {
-        if (ethBlock != null || ethBlock.getBlock() != null)
+        final int chainId;
+        final boolean isNFT;
+        long lastRead; //0 until the first read completes
+        boolean inFlight;
+        boolean readAgain;
+        int priority;
+
+        TransferSync(int chainId, boolean isNFT)
         {
-            return transactionsCache.storeRawTx(new Wallet(currentWallet), chainId, txDetails, ethBlock.getBlock().getTimestamp().longValue(), receipt.getResult().getStatus().equals("0x1"));
+            this.chainId = chainId;
+            this.isNFT = isNFT;
         }
-        else
+
+        boolean isDue(long currentTime)
         {
-            return null;
+            return !inFlight && currentTime >= lastRead + TRANSFER_SYNC_INTERVAL;
         }
     }
 }
@@ -1,6 +1,7 @@
 package com.alphawallet.app.ui.widget.adapter;
 
 import android.content.Context;
+import android.view.Choreographer;
 
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.SortedList;
@@ -34,7 +35,10 @@ import org.jetbrains.annotations.NotNull;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import io.realm.Realm;
 
@@ -45,6 +49,7 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder> {
     public static final int FILTER_ASSETS = 2;
     public static final int FILTER_COLLECTIBLES = 3;
     private static final BigDecimal CUTOFF_VALUE = BigDecimal.valueOf(99999999999L);
+    private static final String BALANCE_CHANGED = "balance"; //change payload: only the balance differs, so only the balance text rebinds
     private final Realm realm;
 
     private int filterType;
@@ -58,6 +63,11 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder> {
 
     private boolean gridFlag;
 
+    private final Map<String, TokenSortedItem> tokenIndex = new HashMap<>();          //tokenId -> item currently in the list
+    private final Map<String, TokenCardMeta> pendingUpdates = new LinkedHashMap<>();  //latest incoming update per token, applied on the next frame
+    private final Choreographer.FrameCallback applyPendingUpdates = frameTimeNanos -> flushPendingUpdates();
+    private boolean updatesScheduled;
+
     protected final OnTokenClickListener onTokenClickListener;
     protected final SortedList<SortedItem> items = new SortedList<>(SortedItem.class, new SortedList.Callback<SortedItem>() {
         @Override
@@ -70,6 +80,23 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder> {
             notifyItemRangeChanged(position, count);
         }
 
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            notifyItemRangeChanged(position, count, payload);
+        }
+
+        @Override
+        public Object getChangePayload(SortedItem oldItem, SortedItem newItem) {
+            //same token in the same place, so anything areContentsTheSame saw change is the balance
+            if (oldItem instanceof TokenSortedItem && newItem instanceof TokenSortedItem
+                    && oldItem.viewType == newItem.viewType && oldItem.weight == newItem.weight
+                    && ((TokenCardMeta) oldItem.value).type == ((TokenCardMeta) newItem.value).type)
+            {
+                return BALANCE_CHANGED;
+            }
+            return null;
+        }
+
         @Override
         public boolean areContentsTheSame(SortedItem oldItem, SortedItem newItem) {
             return oldItem.areContentsTheSame(newItem);
@@ -168,6 +195,19 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder> {
         holder.bind(items.get(position).value);
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull BinderViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.contains(BALANCE_CHANGED) && holder instanceof TokenHolder)
+        {
+            items.get(position).view = holder;
+            ((TokenHolder) holder).updateBalance((TokenCardMeta) items.get(position).value);
+        }
+        else
+        {
+            onBindViewHolder(holder, position);
+        }
+    }
+
     public void onRViewRecycled(RecyclerView.ViewHolder holder)
     {
         ((BinderViewHolder<?>)holder).onDestroyView();
@@ -225,8 +265,40 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder> {
         }
     }
 
+    /**
+     * Queue token updates. Updates arriving within one frame are coalesced, keeping the latest per token,
+     * and applied together in a single batched update on the next frame.
+     *
+     * @param tokens
+     */
     public void setTokens(TokenCardMeta[] tokens)
     {
+        for (TokenCardMeta token : tokens)
+        {
+            pendingUpdates.put(tokenKey(token.tokenId), token);
+        }
+
+        if (!updatesScheduled)
+        {
+            updatesScheduled = true;
+            Choreographer.getInstance().postFrameCallback(applyPendingUpdates);
+        }
+    }
+
+    /**
+     * Apply any queued updates now rather than on the next frame
+     */
+    public void flushPendingUpdates()
+    {
+        if (updatesScheduled)
+        {
+            Choreographer.getInstance().removeFrameCallback(applyPendingUpdates);
+            updatesScheduled = false;
+        }
+
+        if (pendingUpdates.isEmpty()) return;
+        TokenCardMeta[] tokens = pendingUpdates.values().toArray(new TokenCardMeta[0]);
+        pendingUpdates.clear();
         populateTokens(tokens, false);
     }
 
@@ -239,20 +311,29 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder> {
     {
         if (canDisplayToken(token))
         {
+            String key = tokenKey(token.tokenId);
             //does this token already exist with a different weight (ie name has changed)?
-            removeMatchingTokenDifferentWeight(token);
-            int position = -1;
+            TokenSortedItem existing = tokenIndex.get(key);
+            if (existing != null && existing.weight != token.nameWeight)
+            {
+                items.remove(existing);
+            }
+
+            TokenSortedItem tsi;
             if (gridFlag)
             {
-                position = items.add(new TokenSortedItem(TokenGridHolder.VIEW_TYPE, token, token.nameWeight));
+                tsi = new TokenSortedItem(TokenGridHolder.VIEW_TYPE, token, token.nameWeight);
             }
             else
             {
-                TokenSortedItem tsi = new TokenSortedItem(TokenHolder.VIEW_TYPE, token, token.nameWeight);
+                tsi = new TokenSortedItem(TokenHolder.VIEW_TYPE, token, token.nameWeight);
                 if (debugView) tsi.debug();
-                position = items.add(tsi);
             }
 
+            //an item with the same token and weight is replaced in place
+            int position = items.add(tsi);
+            tokenIndex.put(key, tsi);
+
             if (notify) notifyItemChanged(position);
         }
         else
@@ -261,69 +342,30 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder> {
         }
     }
 
-    private void removeMatchingTokenDifferentWeight(TokenCardMeta token)
-    {
-        for (int i = 0; i < items.size(); i++)
-        {
-            if (items.get(i) instanceof TokenSortedItem)
-            {
-                TokenSortedItem tsi = (TokenSortedItem) items.get(i);
-                if (tsi.value.equals(token))
-                {
-                    if (tsi.value.nameWeight != token.nameWeight)
-                    {
-                        notifyItemChanged(i);
-                        items.removeItemAt(i);
-                        break;
-                    }
-                }
-            }
-        }
-    }
-
     private TokenCardMeta getToken(int chainId, String tokenAddress)
     {
-        String id = TokensRealmSource.databaseKey(chainId, tokenAddress);
-        for (int i = 0; i < items.size(); i++) {
-            Object si = items.get(i);
-            if (si instanceof TokenSortedItem) {
-                TokenSortedItem tsi = (TokenSortedItem) si;
-                if (tsi.value.tokenId.equalsIgnoreCase(id)) {
-                    return tsi.value;
-                }
-            }
-        }
-
-        return null;
+        TokenSortedItem tsi = tokenIndex.get(tokenKey(TokensRealmSource.databaseKey(chainId, tokenAddress)));
+        return tsi != null ? tsi.value : null;
     }
 
     public void removeToken(TokenCardMeta token) {
-        for (int i = 0; i < items.size(); i++) {
-            Object si = items.get(i);
-            if (si instanceof TokenSortedItem) {
-                TokenSortedItem tsi = (TokenSortedItem) si;
-                TokenCardMeta thisToken = tsi.value;
-                if (thisToken.tokenId.equalsIgnoreCase(token.tokenId)) {
-                    items.removeItemAt(i);
-                    break;
-                }
-            }
-        }
+        removeToken(tokenKey(token.tokenId));
     }
 
     public void removeToken(int chainId, String tokenAddress) {
-        String id = TokensRealmSource.databaseKey(chainId, tokenAddress);
-        for (int i = 0; i < items.size(); i++) {
-            Object si = items.get(i);
-            if (si instanceof TokenSortedItem) {
-                TokenSortedItem tsi = (TokenSortedItem) si;
-                TokenCardMeta thisToken = tsi.value;
-                if (thisToken.tokenId.equalsIgnoreCase(id)) {
-                    items.removeItemAt(i);
-                    break;
-                }
-            }
-        }
+        removeToken(tokenKey(TokensRealmSource.databaseKey(chainId, tokenAddress)));
+    }
+
+    private void removeToken(String key)
+    {
+        pendingUpdates.remove(key);
+        TokenSortedItem tsi = tokenIndex.remove(key);
+        if (tsi != null) items.remove(tsi); //SortedList finds the item by binary search on its weight
+    }
+
+    private String tokenKey(String tokenId)
+    {
+        return tokenId.toLowerCase();
     }
 
     private boolean canDisplayToken(TokenCardMeta token)
@@ -376,6 +418,7 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder> {
         items.beginBatchedUpdates();
         if (clear) {
             items.clear();
+            tokenIndex.clear();
         }
         addManageTokensLayout();
         for (TokenCardMeta token : tokens)
@@ -426,6 +469,7 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder> {
 
     public void setFilterType(int filterType)
     {
+        flushPendingUpdates();
         this.filterType = filterType;
         gridFlag = filterType == FILTER_COLLECTIBLES;
         filterAdapterItems();
@@ -433,9 +477,17 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder> {
 
     public void clear()
     {
+        if (updatesScheduled)
+        {
+            Choreographer.getInstance().removeFrameCallback(applyPendingUpdates);
+            updatesScheduled = false;
+        }
+        pendingUpdates.clear();
+
         items.beginBatchedUpdates();
         items.clear();
         items.endBatchedUpdates();
+        tokenIndex.clear();
 
         notifyDataSetChanged();
     }
@@ -452,6 +504,7 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder> {
 
     public int getScrollPosition()
     {
+        flushPendingUpdates();
         if (scrollToken != null)
         {
             for (int i = 0; i < items.size(); i++)
@@ -475,6 +528,9 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder> {
 
     public void onDestroy(RecyclerView recyclerView)
     {
+        Choreographer.getInstance().removeFrameCallback(applyPendingUpdates);
+        updatesScheduled = false;
+
         //ensure all holders have their realm listeners cleaned up
         for (int childCount = recyclerView.getChildCount(), i = 0; i < childCount; ++i)
         {
@@ -142,6 +142,38 @@ public class TokenHolder extends BinderViewHolder<TokenCardMeta> implements View
         }
     }
 
+    /**
+     * Refresh the balance only, for an update where nothing else about the token changed
+     */
+    public void updateBalance(@Nullable TokenCardMeta data)
+    {
+        Token updated = data != null ? tokensService.getToken(data.getChain(), data.getAddress()) : null;
+        if (token == null || updated == null || !updated.getAddress().equalsIgnoreCase(token.getAddress()))
+        {
+            bind(data);
+            return;
+        }
+
+        token = updated;
+        String nameValue = token.getStringBalance() + " " + token.getFullName(assetDefinition, token.getTicketCount());
+        balanceEth.setText(nameValue);
+        setPendingAmount();
+
+        TokenTicker ticker = tokensService.getTokenTicker(token);
+        if (ticker == null) return;
+        if (balanceCurrency.getVisibility() != View.VISIBLE)
+        {
+            //first ticker since the full bind: switch to the ticker views and listener, as bind would have
+            if (realmUpdate != null)
+            {
+                realmUpdate.removeAllChangeListeners();
+                realmUpdate = null;
+            }
+            handleTicker();
+        }
+        setTickerInfo(ticker);
+    }
+
     @Override
     public void onDestroyView()
     {
@@ -12,7 +12,12 @@ import com.google.gson.reflect.TypeToken;
 
 import org.web3j.protocol.Web3j;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
@@ -25,10 +30,12 @@ public class AWEnsResolver extends EnsResolver
 {
     static final long DEFAULT_SYNC_THRESHOLD = 1000 * 60 * 3;
     private final Context context;
+    private final EnsCache ensCache;
 
     public AWEnsResolver(Web3j web3j, Context context) {
         super(web3j, DEFAULT_SYNC_THRESHOLD);
         this.context = context;
+        this.ensCache = EnsCache.getInstance(context);
     }
 
     /**
@@ -39,7 +46,10 @@ public class AWEnsResolver extends EnsResolver
     public Single<String> resolveEnsName(String address)
     {
         return Single.fromCallable(() -> {
-            String ensName = checkENSHistoryForAddress(address); //First check known ENS names
+            String ensName = ensCache.getName(address);
+            if (ensName != null) return ensName;
+
+            ensName = checkENSHistoryForAddress(address); //First check known ENS names
 
             try
             {
@@ -56,9 +66,11 @@ public class AWEnsResolver extends EnsResolver
                         ensName = "";
                     }
                 }
+                ensCache.putName(address, ensName);
             }
             catch (UnableToResolveENS resolve)
             {
+                //unverified fallback; not cached, so the next lookup tries the resolver again
                 ensName = fetchPreviouslyUsedENS(address);
             }
             catch (Exception e)
@@ -70,25 +82,109 @@ public class AWEnsResolver extends EnsResolver
         });
     }
 
+    /**
+     * Find the ENS names of many addresses at once, eg for a list of counterparties. Cached names are used first;
+     * the rest are reverse resolved and verified with a few batched calls rather than several calls per address.
+     * Failed lookups aren't cached and give the name used before, if any, so a flaky node doesn't wipe known names.
+     * @param addresses Ethereum addresses
+     * @return lower case address -> verified ENS name, or "" where the address is known to have no name
+     */
+    public Single<Map<String, String>> resolveEnsNames(List<String> addresses)
+    {
+        return Single.fromCallable(() -> {
+            Map<String, String> ensNames = new HashMap<>();
+            List<String> lookup = new ArrayList<>();
+            for (String address : addresses)
+            {
+                if (!Utils.isAddressValid(address)) continue;
+                String ensName = ensCache.getName(address);
+                if (ensName == null)
+                {
+                    if (!lookup.contains(address.toLowerCase())) lookup.add(address.toLowerCase());
+                }
+                else
+                {
+                    ensNames.put(address.toLowerCase(), ensName);
+                }
+            }
+
+            if (lookup.isEmpty()) return ensNames;
+
+            Map<String, String> history = getENSHistory();
+            try
+            {
+                //known ENS names first, then reverse records for the rest
+                Map<String, String> candidates = new HashMap<>();
+                List<String> reverseLookup = new ArrayList<>();
+                for (String address : lookup)
+                {
+                    String ensName = history.get(address);
+                    if (!TextUtils.isEmpty(ensName)) candidates.put(address, ensName);
+                    else reverseLookup.add(address);
+                }
+                Set<String> failedAddresses = new HashSet<>();
+                candidates.putAll(reverseLookupAll(reverseLookup, failedAddresses));
+
+                //check ENS name integrity - each name must point back to its address
+                Set<String> failedNames = new HashSet<>();
+                Map<String, String> resolved = resolveAll(candidates.values(), failedNames);
+                for (String address : lookup)
+                {
+                    String ensName = candidates.get(address);
+                    if (failedAddresses.contains(address) || (ensName != null && failedNames.contains(ensName)))
+                    {
+                        //unknown; as resolveEnsName does, fall back to the name used before, and try again next time
+                        if (!TextUtils.isEmpty(history.get(address))) ensNames.put(address, history.get(address));
+                        continue;
+                    }
+                    String resolvedAddress = ensName != null ? resolved.get(ensName) : null;
+                    if (resolvedAddress == null || !resolvedAddress.equalsIgnoreCase(address)) ensName = "";
+                    ensCache.putName(address, ensName);
+                    ensNames.put(address, ensName);
+                }
+            }
+            catch (Exception e)
+            {
+                e.printStackTrace();
+                //return the cached names, and names used before for the rest
+                for (String address : lookup)
+                {
+                    if (!ensNames.containsKey(address) && !TextUtils.isEmpty(history.get(address))) ensNames.put(address, history.get(address));
+                }
+            }
+
+            return ensNames;
+        });
+    }
+
     //Only checks wallet history for ENS name
     //TODO: Check address book for name, once addressbook is implemented
     public String checkENSHistoryForAddress(String address)
     {
         String ensName = "";
         //try previously resolved names
-        String historyJson = PreferenceManager.getDefaultSharedPreferences(context).getString(C.ENS_HISTORY_PAIR, "");
-        if (historyJson.length() > 0)
+        Map<String, String> history = getENSHistory();
+        if (history.containsKey(address.toLowerCase()))
         {
-            HashMap<String, String> history = new Gson().fromJson(historyJson, new TypeToken<HashMap<String, String>>() {}.getType());
-            if (history.containsKey(address.toLowerCase()))
-            {
-                ensName = history.get(address.toLowerCase());
-            }
+            ensName = history.get(address.toLowerCase());
         }
 
         return ensName;
     }
 
+    private Map<String, String> getENSHistory()
+    {
+        String historyJson = PreferenceManager.getDefaultSharedPreferences(context).getString(C.ENS_HISTORY_PAIR, "");
+        if (historyJson.length() > 0)
+        {
+            return new Gson().fromJson(historyJson, new TypeToken<HashMap<String, String>>() {}.getType());
+        }
+        else
+        {
+            return new HashMap<>();
+        }
+    }
+
     private String fetchPreviouslyUsedENS(String address)
     {
         String ensName = "";
@@ -135,9 +231,12 @@ public class AWEnsResolver extends EnsResolver
             System.out.println("Verify: " + ensName);
             String address = "";
             if (!isValidEnsName(ensName)) return "";
+            String cachedAddress = ensCache.getAddress(ensName);
+            if (!TextUtils.isEmpty(cachedAddress)) return cachedAddress;
             try
             {
                 address = resolve(ensName);
+                ensCache.putAddress(ensName, address);
             }
             catch (Exception e)
             {
@@ -1,143 +1,126 @@
 package com.alphawallet.app.util;
 
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
-import android.graphics.Rect;
-
-import java.util.Arrays;
-
+import android.util.LruCache;
+
+/**
+ * Blockies identicons, rendered as circular bitmaps.
+ *
+ * Generator state is local to each call so icons can be created from any thread. Pixels are written straight
+ * into an int buffer, including the circular crop, and finished icons are kept in an LRU cache keyed by
+ * (address, scale) so list rows re-binding the same address share one bitmap.
+ */
 public class Blockies {
     private static final int size = 8;
-    private static long[] randSeed = new long[4];
+    private static final int CACHE_SIZE_KB = 4 * 1024; //about 64 icons at the default scale
+
+    private static final LruCache<String, Bitmap> iconCache = new LruCache<String, Bitmap>(CACHE_SIZE_KB) {
+        @Override
+        protected int sizeOf(String key, Bitmap bitmap) {
+            return bitmap.getByteCount() / 1024;
+        }
+    };
 
     public static Bitmap createIcon(String address) {
         return createIcon(address, 16);
     }
 
     public static Bitmap createIcon(String address, int scale) {
-        seedRand(address);
-        HSL color = createColor();
-        HSL bgColor = createColor();
-        HSL spotColor = createColor();
-        return createCanvas(createImageData(), color, bgColor, spotColor, scale);
+        String key = address + "-" + scale;
+        Bitmap icon = iconCache.get(key);
+        if (icon == null) {
+            icon = renderIcon(address, scale);
+            iconCache.put(key, icon); //two threads may race to render the same icon; the result is identical
+        }
+        return icon;
     }
 
-    private static Bitmap createCanvas(double[] imgData, HSL color, HSL bgColor, HSL spotColor, int scale) {
-        int width = (int) Math.sqrt(imgData.length);
-
-        int w = width * scale;
-        int h = width * scale;
-
-        Bitmap.Config conf = Bitmap.Config.ARGB_8888;
-        Bitmap bmp = Bitmap.createBitmap(w, h, conf);
-        Canvas canvas = new Canvas(bmp);
-
-        int background = toRGB((int) bgColor.h, (int) bgColor.s, (int) bgColor.l);
-
-        Paint paint = new Paint();
-        paint.setStyle(Paint.Style.FILL);
-        paint.setColor(background);
-        canvas.drawRect(0, 0, w, h, paint);
-
-        int main = toRGB((int) color.h, (int) color.s, (int) color.l);
-        int scolor = toRGB((int) spotColor.h, (int) spotColor.s, (int) spotColor.l);
-
-        for (int i = 0; i < imgData.length; i++) {
-            int row = (int) Math.floor(i / width);
-            int col = i % width;
-            paint = new Paint();
-
-            paint.setColor((imgData[i] == 1.0d) ? main : scolor);
-
-            if (imgData[i] > 0d) {
-                canvas.drawRect(col * scale, row * scale, (col * scale) + scale, (row * scale) + scale, paint);
+    private static Bitmap renderIcon(String address, int scale) {
+        Generator generator = new Generator(address);
+        int color = generator.createColor();
+        int bgColor = generator.createColor();
+        int spotColor = generator.createColor();
+        int[] imgData = generator.createImageData();
+
+        int[] palette = { bgColor, color, spotColor };
+        int w = size * scale;
+        int[] pixels = new int[w * w];
+
+        //circular crop with an anti-aliased edge one pixel wide
+        float radius = w / 2f;
+        for (int y = 0; y < w; y++) {
+            int rowStart = (y / scale) * size;
+            float dy = y + 0.5f - radius;
+            for (int x = 0; x < w; x++) {
+                float dx = x + 0.5f - radius;
+                float coverage = radius - (float) Math.sqrt(dx * dx + dy * dy) + 0.5f;
+                if (coverage <= 0f) continue; //transparent
+                int pixel = palette[imgData[rowStart + x / scale]];
+                if (coverage < 1f) {
+                    pixel = (pixel & 0x00FFFFFF) | ((int) (coverage * 255) << 24);
+                }
+                pixels[y * w + x] = pixel;
             }
         }
-        return getCroppedBitmap(bmp);
-    }
-
-    private static double rand() {
-        int t = (int) (randSeed[0] ^ (randSeed[0] << 11));
-        randSeed[0] = randSeed[1];
-        randSeed[1] = randSeed[2];
-        randSeed[2] = randSeed[3];
-        randSeed[3] = (randSeed[3] ^ (randSeed[3] >> 19) ^ t ^ (t >> 8));
-        double t1 = Math.abs(randSeed[3]);
-        return (t1 / Integer.MAX_VALUE);
-    }
 
-    private static HSL createColor() {
-        double h = Math.floor(rand() * 360d);
-        double s = ((rand() * 60d) + 40d);
-        double l = ((rand() + rand() + rand() + rand()) * 25d);
-        return new HSL(h, s, l);
+        return Bitmap.createBitmap(pixels, w, w, Bitmap.Config.ARGB_8888);
     }
 
-    private static double[] createImageData() {
-        int width = size;
-        int height = size;
+    /**
+     * Seeded xorshift generator, matching the reference blockies implementation.
+     */
+    private static class Generator {
+        private final long[] randSeed = new long[4];
 
-        double dataWidth = Math.ceil(width / 2);
-        double mirrorWidth = width - dataWidth;
-
-        double[] data = new double[size * size];
-        int dataCount = 0;
-        for (int y = 0; y < height; y++) {
-            double[] row = new double[(int) dataWidth];
-            for (int x = 0; x < dataWidth; x++) {
-                row[x] = Math.floor(rand() * 2.3d);
+        Generator(String seed) {
+            for (int i = 0; i < seed.length(); i++) {
+                long test = randSeed[i % 4] << 5;
+                if (test > Integer.MAX_VALUE << 1 || test < Integer.MIN_VALUE << 1)
+                    test = (int) test;
 
+                long test2 = test - randSeed[i % 4];
+                randSeed[i % 4] = (test2 + Character.codePointAt(seed, i));
             }
-            double[] r = Arrays.copyOfRange(row, 0, (int) mirrorWidth);
-            r = reverse(r);
-            row = concat(row, r);
 
-            for (double v : row) {
-                data[dataCount] = v;
-                dataCount++;
-            }
+            for (int i = 0; i < randSeed.length; i++)
+                randSeed[i] = (int) randSeed[i];
         }
 
-        return data;
-    }
-
-    public static double[] concat(double[] a, double[] b) {
-        int aLen = a.length;
-        int bLen = b.length;
-        double[] c = new double[aLen + bLen];
-        System.arraycopy(a, 0, c, 0, aLen);
-        System.arraycopy(b, 0, c, aLen, bLen);
-        return c;
-    }
-
-    private static double[] reverse(double[] data) {
-        for (int i = 0; i < data.length / 2; i++) {
-            double temp = data[i];
-            data[i] = data[data.length - i - 1];
-            data[data.length - i - 1] = temp;
+        private double rand() {
+            int t = (int) (randSeed[0] ^ (randSeed[0] << 11));
+            randSeed[0] = randSeed[1];
+            randSeed[1] = randSeed[2];
+            randSeed[2] = randSeed[3];
+            randSeed[3] = (randSeed[3] ^ (randSeed[3] >> 19) ^ t ^ (t >> 8));
+            double t1 = Math.abs(randSeed[3]);
+            return (t1 / Integer.MAX_VALUE);
         }
-        return data;
-    }
 
-    private static void seedRand(String seed) {
-        for (int i = 0; i < Blockies.randSeed.length; i++) {
-            Blockies.randSeed[i] = 0;
+        int createColor() {
+            int h = (int) Math.floor(rand() * 360d);
+            int s = (int) ((rand() * 60d) + 40d);
+            int l = (int) ((rand() + rand() + rand() + rand()) * 25d);
+            return toRGB(h, s, l);
         }
-        for (int i = 0; i < seed.length(); i++) {
-            long test = Blockies.randSeed[i % 4] << 5;
-            if (test > Integer.MAX_VALUE << 1 || test < Integer.MIN_VALUE << 1)
-                test = (int) test;
 
-            long test2 = test - Blockies.randSeed[i % 4];
-            Blockies.randSeed[i % 4] = (test2 + Character.codePointAt(seed, i));
-        }
+        /**
+         * @return size * size cells; 0 = background, 1 = main colour, 2 = spot colour. Each row is mirrored
+         */
+        int[] createImageData() {
+            int dataWidth = size / 2;
+            int[] data = new int[size * size];
+            for (int y = 0; y < size; y++) {
+                int rowStart = y * size;
+                for (int x = 0; x < dataWidth; x++) {
+                    int value = (int) (rand() * 2.3d);
+                    data[rowStart + x] = value;
+                    data[rowStart + size - 1 - x] = value;
+                }
+            }
 
-        for (int i = 0; i < Blockies.randSeed.length; i++)
-            Blockies.randSeed[i] = (int) Blockies.randSeed[i];
+            return data;
+        }
     }
 
     private static int toRGB(float h, float s, float l) {
@@ -183,33 +166,4 @@ public class Blockies {
         }
         return p;
     }
-
-    private static Bitmap getCroppedBitmap(Bitmap bitmap) {
-        Bitmap output = Bitmap.createBitmap(bitmap.getWidth(),
-                bitmap.getHeight(), Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(output);
-
-        final int color = 0xff424242;
-        final Paint paint = new Paint();
-        final Rect rect = new Rect(0, 0, bitmap.getWidth(), bitmap.getHeight());
-
-        paint.setAntiAlias(true);
-        canvas.drawARGB(0, 0, 0, 0);
-        paint.setColor(color);
-        canvas.drawCircle(bitmap.getWidth() / 2, bitmap.getHeight() / 2,
-                bitmap.getWidth() / 2, paint);
-        paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
-        canvas.drawBitmap(bitmap, rect, rect, paint);
-        return output;
-    }
-
-    static class HSL {
-        double h, s, l;
-
-        HSL(double h, double s, double l) {
-            this.h = h;
-            this.s = s;
-            this.l = l;
-        }
-    }
-}
\ No newline at end of file
+}
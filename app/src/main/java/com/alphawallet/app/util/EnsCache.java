@@ -0,0 +1,172 @@
+package com.alphawallet.app.util;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.text.TextUtils;
+import android.text.format.DateUtils;
+
+import com.alphawallet.app.C;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.Completable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Results of ENS forward (name -> address) and reverse (address -> name) resolution, kept across restarts.
+ *
+ * A found name or address is kept for POSITIVE_TTL. 'Nothing registered' is kept too, for the shorter NEGATIVE_TTL,
+ * so address lists don't re-query the many counterparties that have no name. Failed lookups aren't stored.
+ */
+public class EnsCache
+{
+    private static final long POSITIVE_TTL = 6 * DateUtils.HOUR_IN_MILLIS;
+    private static final long NEGATIVE_TTL = 30 * DateUtils.MINUTE_IN_MILLIS;
+    private static final int MAX_ENTRIES = 1000;
+    private static final long SAVE_DELAY = 5; //seconds; changes made close together are written once
+
+    private static final String NAME_PREFIX = "n-"; //address -> name
+    private static final String ADDRESS_PREFIX = "a-"; //name -> address
+
+    private static EnsCache instance;
+
+    private final SharedPreferences pref;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean savePending = new AtomicBoolean(false);
+
+    public static synchronized EnsCache getInstance(Context context)
+    {
+        if (instance == null) instance = new EnsCache(context.getApplicationContext());
+        return instance;
+    }
+
+    private EnsCache(Context context)
+    {
+        pref = PreferenceManager.getDefaultSharedPreferences(context);
+        load();
+    }
+
+    /**
+     * @return cached name for the address, "" if the address is known to have no name, or null if not cached
+     */
+    public String getName(String address)
+    {
+        return getValue(NAME_PREFIX + address.toLowerCase());
+    }
+
+    /**
+     * @param name verified name, or empty if the address has no name
+     */
+    public void putName(String address, String name)
+    {
+        putValue(NAME_PREFIX + address.toLowerCase(), name);
+    }
+
+    /**
+     * @return cached address for the name, "" if the name is known not to resolve, or null if not cached
+     */
+    public String getAddress(String ensName)
+    {
+        return getValue(ADDRESS_PREFIX + ensName.toLowerCase());
+    }
+
+    public void putAddress(String ensName, String address)
+    {
+        putValue(ADDRESS_PREFIX + ensName.toLowerCase(), address);
+    }
+
+    private String getValue(String key)
+    {
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        if (entry.expiry < System.currentTimeMillis())
+        {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    private void putValue(String key, String value)
+    {
+        if (value == null) value = "";
+        long ttl = TextUtils.isEmpty(value) ? NEGATIVE_TTL : POSITIVE_TTL;
+        entries.put(key, new Entry(value, System.currentTimeMillis() + ttl));
+        scheduleSave();
+    }
+
+    private void scheduleSave()
+    {
+        if (savePending.compareAndSet(false, true))
+        {
+            Completable.timer(SAVE_DELAY, TimeUnit.SECONDS, Schedulers.io())
+                    .subscribe(this::save, Throwable::printStackTrace)
+                    .isDisposed();
+        }
+    }
+
+    private void load()
+    {
+        String cacheJson = pref.getString(C.ENS_RESOLUTION_CACHE, "");
+        if (cacheJson.length() == 0) return;
+
+        try
+        {
+            Map<String, Entry> stored = new Gson().fromJson(cacheJson, new TypeToken<HashMap<String, Entry>>() {}.getType());
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, Entry> e : stored.entrySet())
+            {
+                if (e.getValue() != null && e.getValue().expiry >= now) entries.put(e.getKey(), e.getValue());
+            }
+        }
+        catch (Exception e)
+        {
+            //unreadable cache; start again
+        }
+    }
+
+    private void save()
+    {
+        savePending.set(false);
+        long now = System.currentTimeMillis();
+        List<Map.Entry<String, Entry>> live = new ArrayList<>();
+        for (Map.Entry<String, Entry> e : entries.entrySet())
+        {
+            if (e.getValue().expiry >= now) live.add(e);
+            else entries.remove(e.getKey());
+        }
+
+        //keep the entries that will be valid longest
+        Collections.sort(live, (e1, e2) -> Long.compare(e2.getValue().expiry, e1.getValue().expiry));
+        Map<String, Entry> store = new HashMap<>();
+        for (int i = 0; i < live.size(); i++)
+        {
+            if (i < MAX_ENTRIES) store.put(live.get(i).getKey(), live.get(i).getValue());
+            else entries.remove(live.get(i).getKey());
+        }
+
+        pref.edit().putString(C.ENS_RESOLUTION_CACHE, new Gson().toJson(store)).apply();
+    }
+
+    private static class Entry
+    {
+        final String value;
+        final long expiry;
+
+        Entry(String value, long expiry)
+        {
+            this.value = value;
+            this.expiry = expiry;
+        }
+    }
+}
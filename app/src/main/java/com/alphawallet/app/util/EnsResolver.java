@@ -20,6 +20,7 @@ import org.web3j.ens.EnsResolutionException;
 import org.web3j.ens.NameHash;
 import org.web3j.protocol.Web3j;
 import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Request;
 import org.web3j.protocol.core.methods.response.EthBlock;
 import org.web3j.protocol.core.methods.response.EthCall;
 import org.web3j.protocol.core.methods.response.EthSyncing;
@@ -29,14 +30,25 @@ import org.web3j.utils.Numeric;
 import java.io.InterruptedIOException;
 import java.math.BigInteger;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.alphawallet.ethereum.EthereumNetworkBase.MAINNET_ID;
 import static org.web3j.protocol.core.methods.request.Transaction.createEthCallTransaction;
 
 /**
  * EnsResolver from Web3j adapted for Android Java's BigInteger
+ *
+ * The registry address, resolver contracts (by namehash) and the node's sync state are cached for all instances,
+ * so a lookup is normally a single eth_call. The *All methods resolve many names or addresses with one batched
+ * call per step.
  */
 public class EnsResolver {
 
@@ -45,6 +57,16 @@ public class EnsResolver {
     public static final String CRYPTO_RESOLVER = "0xD1E5b0FF1287aA9f9A268759062E4Ab08b9Dacbe";
     public static final String CRYPTO_ETH_KEY = "crypto.ETH.address";
 
+    private static final long SYNC_CHECK_INTERVAL = 60 * 1000; //re-check the node's sync state at most once a minute
+    private static final long RESOLVER_CACHE_TIME = 60 * 60 * 1000;
+    private static final int MAX_BATCH_SIZE = 100;
+
+    //namehash -> resolver contract, zero address if the name has no resolver
+    private static final Map<String, CachedResolver> resolverCache = new ConcurrentHashMap<>();
+    private static volatile String registryContract;
+    private static volatile long syncCheckTime;
+    private static volatile boolean nodeSynced;
+
     private final Web3j web3j;
     private final int addressLength;
     private long syncThreshold; // non-final in case this value needs to be tweaked
@@ -101,7 +123,7 @@ public class EnsResolver {
                 else
                 {
                     String resolverAddress = lookupResolver(contractId);
-                    if (!TextUtils.isEmpty(resolverAddress))
+                    if (isNonZeroAddress(resolverAddress))
                     {
                         byte[] nameHash = NameHash.nameHashAsBytes(contractId);
                         //now attempt to get the address of this ENS
@@ -145,8 +167,11 @@ public class EnsResolver {
             try
             {
                 String resolverAddress = lookupResolver(reverseName);
-                byte[] nameHash = NameHash.nameHashAsBytes(reverseName);
-                name = getContractData(MAINNET_ID, resolverAddress, getName(nameHash));
+                if (isNonZeroAddress(resolverAddress))
+                {
+                    byte[] nameHash = NameHash.nameHashAsBytes(reverseName);
+                    name = getContractData(MAINNET_ID, resolverAddress, getName(nameHash));
+                }
             }
             catch (Exception e)
             {
@@ -168,13 +193,229 @@ public class EnsResolver {
         }
     }
 
+    /**
+     * Find the reverse records of many addresses, with one batched call for the resolvers and one for the names.
+     * The names are as claimed by the reverse records: check they resolve back to the address before using them.
+     * @param failed collects the lower case addresses whose lookup failed; those missing from both the result and
+     *               this set have no reverse record
+     * @return lower case address -> claimed name, for addresses that have a reverse record
+     */
+    public Map<String, String> reverseLookupAll(Collection<String> addresses, Set<String> failed) throws Exception
+    {
+        Map<String, String> reverseNames = new HashMap<>();
+        for (String address : addresses)
+        {
+            if (Utils.isAddressValid(address))
+            {
+                reverseNames.put(address.toLowerCase(), Numeric.cleanHexPrefix(address).toLowerCase() + REVERSE_NAME_SUFFIX);
+            }
+        }
+
+        Map<String, String> names = callResolvers(reverseNames, true, failed);
+        Map<String, String> results = new HashMap<>();
+        for (Map.Entry<String, String> entry : names.entrySet())
+        {
+            if (isValidEnsName(entry.getValue(), addressLength)) results.put(entry.getKey(), entry.getValue());
+        }
+        return results;
+    }
+
+    /**
+     * Resolve many ENS names, with one batched call for the resolvers and one for the addresses.
+     * @param failed collects the names whose lookup failed; those missing from both the result and this set don't resolve
+     * @return name -> address, for names that resolve
+     */
+    public Map<String, String> resolveAll(Collection<String> ensNames, Set<String> failed) throws Exception
+    {
+        if (!isSynced())
+        {
+            throw new EnsResolutionException("Node is not currently synced");
+        }
+
+        Map<String, String> results = new HashMap<>();
+        Map<String, String> batchNames = new HashMap<>();
+        for (String ensName : ensNames)
+        {
+            if (!isValidEnsName(ensName, addressLength)) continue;
+            if (ensName.endsWith(".crypto"))
+            {
+                //different contracts; these are rare, so look them up singly
+                try
+                {
+                    results.put(ensName, resolve(ensName));
+                }
+                catch (RuntimeException e)
+                {
+                    //no cause means the name doesn't resolve; otherwise the request itself failed
+                    if (e.getCause() != null) failed.add(ensName);
+                }
+            }
+            else
+            {
+                batchNames.put(ensName, ensName);
+            }
+        }
+
+        Map<String, String> addresses = callResolvers(batchNames, false, failed);
+        for (Map.Entry<String, String> entry : addresses.entrySet())
+        {
+            if (Utils.isAddressValid(entry.getValue()) && isNonZeroAddress(entry.getValue())) results.put(entry.getKey(), entry.getValue());
+        }
+        return results;
+    }
+
+    /**
+     * Call name() or addr() on the resolver of each name
+     * @param ensNames key -> ENS name
+     * @param failed collects the keys whose resolver lookup or call failed
+     * @return key -> decoded result, for names that have a resolver and a result
+     */
+    private Map<String, String> callResolvers(Map<String, String> ensNames, boolean reverse, Set<String> failed) throws Exception
+    {
+        Set<String> failedNames = new HashSet<>();
+        Map<String, String> resolvers = lookupResolvers(ensNames.values(), failedNames);
+        Map<String, org.web3j.protocol.core.methods.request.Transaction> calls = new HashMap<>();
+        Map<String, Function> functions = new HashMap<>();
+        for (Map.Entry<String, String> entry : ensNames.entrySet())
+        {
+            if (failedNames.contains(entry.getValue()))
+            {
+                failed.add(entry.getKey());
+                continue;
+            }
+            String resolverAddress = resolvers.get(entry.getValue());
+            if (!isNonZeroAddress(resolverAddress)) continue;
+            byte[] nameHash = NameHash.nameHashAsBytes(entry.getValue());
+            Function function = reverse ? getName(nameHash) : getAddr(nameHash);
+            functions.put(entry.getKey(), function);
+            calls.put(entry.getKey(), createEthCallTransaction(TokenscriptFunction.ZERO_ADDRESS, resolverAddress, FunctionEncoder.encode(function)));
+        }
+
+        Map<String, String> results = new HashMap<>();
+        Map<String, String> responses = callBatch(calls, failed);
+        for (Map.Entry<String, String> response : responses.entrySet())
+        {
+            String value = decodeValue(response.getValue(), functions.get(response.getKey()));
+            if (!TextUtils.isEmpty(value)) results.put(response.getKey(), value);
+        }
+        return results;
+    }
+
+    /**
+     * @param failed collects the names whose lookup failed; these are left out of the result
+     * @return ENS name -> resolver contract, from the cache where possible
+     */
+    private Map<String, String> lookupResolvers(Collection<String> ensNames, Set<String> failed) throws Exception
+    {
+        Map<String, String> resolvers = new HashMap<>();
+        Map<String, org.web3j.protocol.core.methods.request.Transaction> calls = new HashMap<>();
+        Function lookup = null;
+        for (String ensName : ensNames)
+        {
+            byte[] nameHash = NameHash.nameHashAsBytes(ensName);
+            CachedResolver cached = resolverCache.get(Numeric.toHexString(nameHash));
+            if (cached != null && cached.isValid())
+            {
+                resolvers.put(ensName, cached.address);
+            }
+            else
+            {
+                lookup = getResolver(nameHash);
+                calls.put(ensName, createEthCallTransaction(TokenscriptFunction.ZERO_ADDRESS, getRegistryContract(), FunctionEncoder.encode(lookup)));
+            }
+        }
+
+        Map<String, String> responses = callBatch(calls, failed);
+        for (Map.Entry<String, String> response : responses.entrySet())
+        {
+            String resolverAddress = decodeValue(response.getValue(), lookup); //output type is the same for every lookup
+            if (resolverAddress == null)
+            {
+                failed.add(response.getKey()); //the registry always returns an address; don't take this as 'no resolver'
+                continue;
+            }
+            resolverCache.put(Numeric.toHexString(NameHash.nameHashAsBytes(response.getKey())), new CachedResolver(resolverAddress));
+            resolvers.put(response.getKey(), resolverAddress);
+        }
+        return resolvers;
+    }
+
+    /**
+     * Send eth_calls to mainnet as JSON-RPC batches
+     * @param failed collects the keys of calls that returned an error or no response
+     * @return key -> raw result, for the calls that succeeded
+     */
+    private Map<String, String> callBatch(Map<String, org.web3j.protocol.core.methods.request.Transaction> calls, Set<String> failed) throws Exception
+    {
+        Map<String, String> results = new HashMap<>();
+        List<Map.Entry<String, org.web3j.protocol.core.methods.request.Transaction>> callList = new ArrayList<>(calls.entrySet());
+        Web3j mainnet = TokenRepository.getWeb3jService(MAINNET_ID);
+
+        for (int start = 0; start < callList.size(); start += MAX_BATCH_SIZE)
+        {
+            List<Request<?, EthCall>> requests = new ArrayList<>();
+            Map<Long, String> keys = new HashMap<>();
+            for (Map.Entry<String, org.web3j.protocol.core.methods.request.Transaction> call : callList.subList(start, Math.min(start + MAX_BATCH_SIZE, callList.size())))
+            {
+                Request<?, EthCall> request = mainnet.ethCall(call.getValue(), DefaultBlockParameterName.LATEST);
+                requests.add(request);
+                keys.put(request.getId(), call.getKey());
+            }
+
+            Map<Long, EthCall> responses = TokenRepository.getNodeService(MAINNET_ID).sendBatch(requests, EthCall.class);
+            if (responses == null)
+            {
+                //node doesn't take batches
+                responses = new HashMap<>();
+                for (Request<?, EthCall> request : requests)
+                {
+                    responses.put(request.getId(), request.send());
+                }
+            }
+
+            for (Map.Entry<Long, String> request : keys.entrySet())
+            {
+                EthCall ethCall = responses.get(request.getKey());
+                if (ethCall != null && !ethCall.hasError() && ethCall.getValue() != null)
+                {
+                    results.put(request.getValue(), ethCall.getValue());
+                }
+                else
+                {
+                    failed.add(request.getValue());
+                }
+            }
+        }
+
+        return results;
+    }
+
     private String lookupResolver(String ensName) throws Exception
     {
-        NetVersion netVersion = web3j.netVersion().send();
-        String registryContract = Contracts.resolveRegistryContract(netVersion.getNetVersion());
         byte[] nameHash = NameHash.nameHashAsBytes(ensName);
+        String cacheKey = Numeric.toHexString(nameHash);
+        CachedResolver cached = resolverCache.get(cacheKey);
+        if (cached != null && cached.isValid()) return cached.address;
+
         Function resolver = getResolver(nameHash);
-        return getContractData(MAINNET_ID, registryContract, resolver);
+        String resolverAddress = getContractData(MAINNET_ID, getRegistryContract(), resolver);
+        if (resolverAddress != null) resolverCache.put(cacheKey, new CachedResolver(resolverAddress)); //null if the call was interrupted
+        return resolverAddress;
+    }
+
+    private String getRegistryContract() throws Exception
+    {
+        if (registryContract == null)
+        {
+            NetVersion netVersion = web3j.netVersion().send();
+            registryContract = Contracts.resolveRegistryContract(netVersion.getNetVersion());
+        }
+        return registryContract;
+    }
+
+    private static boolean isNonZeroAddress(String address)
+    {
+        return !TextUtils.isEmpty(address) && Numeric.toBigInt(address).signum() != 0;
     }
 
     private Function getResolver(byte[] nameHash)
@@ -222,7 +463,17 @@ public class EnsResolver {
                             }));
     }
 
-    boolean isSynced() throws Exception {
+    boolean isSynced() throws Exception
+    {
+        long now = System.currentTimeMillis();
+        if (now - syncCheckTime < SYNC_CHECK_INTERVAL) return nodeSynced;
+
+        nodeSynced = checkSynced();
+        syncCheckTime = now;
+        return nodeSynced;
+    }
+
+    private boolean checkSynced() throws Exception {
         EthSyncing ethSyncing = web3j.ethSyncing().send();
         if (ethSyncing.isSyncing()) {
             return false;
@@ -263,7 +514,13 @@ public class EnsResolver {
         {
             throw new Exception("Bad contract value");
         }
-        else if (responseValue.equals("0x"))
+
+        return decodeValue(responseValue, function);
+    }
+
+    private static <T> T decodeValue(String responseValue, Function function)
+    {
+        if (TextUtils.isEmpty(responseValue) || responseValue.equals("0x"))
         {
             return null;
         }
@@ -280,6 +537,23 @@ public class EnsResolver {
         }
     }
 
+    private static class CachedResolver
+    {
+        final String address;
+        final long expiry;
+
+        CachedResolver(String address)
+        {
+            this.address = address;
+            this.expiry = System.currentTimeMillis() + RESOLVER_CACHE_TIME;
+        }
+
+        boolean isValid()
+        {
+            return System.currentTimeMillis() < expiry;
+        }
+    }
+
     public static boolean isValidEnsName(String input) {
         return isValidEnsName(input, Keys.ADDRESS_LENGTH_IN_HEX);
     }
@@ -60,6 +60,7 @@ public class TokenManagementViewModel extends BaseViewModel {
 
     public void setTokenEnabled(Wallet wallet, Token token, boolean enabled) {
         changeTokenEnableInteract.setEnable(wallet, token, enabled);
+        tokensService.tokenEnableChanged(token);
     }
 
     public void showAddToken(Context context) {
@@ -19,6 +19,7 @@ import com.alphawallet.app.entity.NetworkInfo;
 import com.alphawallet.app.entity.SendTransactionInterface;
 import com.alphawallet.app.entity.SignAuthenticationCallback;
 import com.alphawallet.app.entity.Wallet;
+import com.alphawallet.app.entity.cryptokeys.SignatureFromKey;
 import com.alphawallet.app.entity.walletconnect.WCRequest;
 import com.alphawallet.app.entity.walletconnect.WalletConnectSessionItem;
 import com.alphawallet.app.interact.CreateTransactionInteract;
@@ -50,6 +51,7 @@ import org.web3j.protocol.core.methods.response.EthEstimateGas;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
@@ -208,7 +210,11 @@ public class WalletConnectViewModel extends BaseViewModel {
 
     public void signMessage(Signable message, DAppFunction dAppFunction) {
         resetSignDialog();
-        disposable = createTransactionInteract.sign(defaultWallet.getValue(), message, MAINNET_ID)
+        //typed data is signed in a signing session, the same path as the market queue's trade batches
+        Single<SignatureFromKey> signature = message instanceof EthereumTypedMessage
+                ? createTransactionInteract.sign(defaultWallet.getValue(), Collections.singletonList(message)).map(sigs -> sigs.get(0))
+                : createTransactionInteract.sign(defaultWallet.getValue(), message, MAINNET_ID);
+        disposable = signature
                 .subscribeOn(Schedulers.computation())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(sig -> dAppFunction.DAppReturn(sig.signature, message),
@@ -146,6 +146,7 @@ public class WalletViewModel extends BaseViewModel
     public void setTokenEnabled(Token token, boolean enabled) {
         changeTokenEnableInteract.setEnable(defaultWallet.getValue(), token, enabled);
         token.tokenInfo.isEnabled = enabled;
+        tokensService.tokenEnableChanged(token);
     }
 
     public void showMyAddress(Context context)
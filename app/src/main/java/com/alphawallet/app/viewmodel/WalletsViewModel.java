@@ -27,12 +27,15 @@ import com.alphawallet.app.service.KeyService;
 import com.alphawallet.app.service.TokensService;
 import com.alphawallet.app.util.AWEnsResolver;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Completable;
 import io.reactivex.Observable;
+import io.reactivex.Single;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.schedulers.Schedulers;
@@ -173,18 +176,29 @@ public class WalletsViewModel extends BaseViewModel
     {
         //check for updates
         //check names first
-        disposable = fetchWalletsInteract.fetch().toObservable()
-                .flatMap(Observable::fromArray)
-                .forEach(wallet -> ensResolver.resolveEnsName(wallet.address)
-                        .map(ensName -> { wallet.ENSname = ensName; return wallet;})
-                        .flatMap(fetchWalletsInteract::updateWalletData)
-                        .subscribeOn(Schedulers.io())
-                        .observeOn(AndroidSchedulers.mainThread())
-                        .subscribe(w -> { }, this::onError).isDisposed());
+        disposable = fetchWalletsInteract.fetch()
+                .flatMapObservable(walletList -> resolveWalletNames(walletList).toObservable()
+                        .flatMap(ensNames -> Observable.fromArray(walletList)
+                                .filter(wallet -> ensNames.containsKey(wallet.address.toLowerCase())) //lookup failed: keep the name we have
+                                .map(wallet -> { wallet.ENSname = ensNames.get(wallet.address.toLowerCase()); return wallet; })))
+                .flatMapSingle(fetchWalletsInteract::updateWalletData)
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(w -> { }, this::onError);
 
         updateWallets();
     }
 
+    private Single<Map<String, String>> resolveWalletNames(Wallet[] walletList)
+    {
+        List<String> addresses = new ArrayList<>();
+        for (Wallet wallet : walletList)
+        {
+            addresses.add(wallet.address);
+        }
+        return ensResolver.resolveEnsNames(addresses); //one batched lookup for all wallets
+    }
+
     public void fetchWallets()
     {
         progress.postValue(true);
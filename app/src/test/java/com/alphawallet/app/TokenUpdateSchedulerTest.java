@@ -0,0 +1,112 @@
+package com.alphawallet.app;
+
+import com.alphawallet.app.entity.ContractLocator;
+import com.alphawallet.app.entity.ContractType;
+import com.alphawallet.app.entity.tokens.Token;
+import com.alphawallet.app.entity.tokens.TokenCardMeta;
+import com.alphawallet.app.service.TokenUpdateScheduler;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static com.alphawallet.ethereum.EthereumNetworkBase.MAINNET_ID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TokenUpdateSchedulerTest
+{
+    private static final String WALLET = "0x1111111111111111111111111111111111111111";
+    private static final String TOKEN_A = "0xaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
+    private static final String TOKEN_B = "0xbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb";
+    private static final long SECOND = 1000;
+
+    @Test
+    public void tokenIsNotDueBeforeCutoff()
+    {
+        long now = System.currentTimeMillis();
+        TokenUpdateScheduler scheduler = new TokenUpdateScheduler();
+        scheduler.rebuild(WALLET, new TokenCardMeta[] { erc20(TOKEN_A, "1", now - 10 * SECOND) }, new Token[] { token(0, 0) });
+
+        assertNull(scheduler.nextBalanceCheck());
+    }
+
+    @Test
+    public void lowWeightTokenIsDueAfterCutoff()
+    {
+        //zero balance tokens have weight 0.5; they're ranked lower, but still due 30 seconds after their last update
+        long now = System.currentTimeMillis();
+        TokenUpdateScheduler scheduler = new TokenUpdateScheduler();
+        scheduler.rebuild(WALLET, new TokenCardMeta[] { erc20(TOKEN_A, "0", now - 35 * SECOND) }, new Token[] { token(0, 0) });
+
+        ContractLocator next = scheduler.nextBalanceCheck();
+        assertEquals(TOKEN_A, next.address);
+        assertNull(scheduler.nextBalanceCheck()); //checked, so not due again yet
+    }
+
+    @Test
+    public void dueTokensAreOrderedByWeightTimesAge()
+    {
+        long now = System.currentTimeMillis();
+        TokenUpdateScheduler scheduler = new TokenUpdateScheduler();
+        //A: weight 1.0, 40 seconds old = 40; B: weight 0.5, 70 seconds old = 35. A is older in weighted terms
+        TokenCardMeta[] metas = { erc20(TOKEN_B, "0", now - 70 * SECOND), erc20(TOKEN_A, "1", now - 40 * SECOND) };
+        scheduler.rebuild(WALLET, metas, new Token[] { token(0, 0), token(0, 0) });
+
+        assertEquals(TOKEN_A, scheduler.nextBalanceCheck().address);
+        assertEquals(TOKEN_B, scheduler.nextBalanceCheck().address);
+        assertNull(scheduler.nextBalanceCheck());
+    }
+
+    @Test
+    public void removedTokenIsNotChecked()
+    {
+        long now = System.currentTimeMillis();
+        TokenUpdateScheduler scheduler = new TokenUpdateScheduler();
+        TokenCardMeta[] metas = { erc20(TOKEN_A, "1", now - 40 * SECOND), erc20(TOKEN_B, "1", now - 35 * SECOND) };
+        scheduler.rebuild(WALLET, metas, new Token[] { token(5 * 60 * SECOND, now - 10 * 60 * SECOND), token(0, 0) });
+
+        scheduler.remove(MAINNET_ID, TOKEN_A);
+
+        assertEquals(TOKEN_B, scheduler.nextBalanceCheck().address);
+        assertNull(scheduler.nextBalanceCheck());
+        assertNull(scheduler.nextTransactionCheck(Collections.emptyList()));
+    }
+
+    @Test
+    public void refocusOnSameChainAfterClearingFocusSpeedsUpTransactionChecks()
+    {
+        long now = System.currentTimeMillis();
+        TokenUpdateScheduler scheduler = new TokenUpdateScheduler();
+        scheduler.setFocusToken(new ContractLocator(TOKEN_A, MAINNET_ID));
+        scheduler.setFocusToken(null);
+
+        //normal transaction interval is 5 minutes; last checked 15 seconds ago
+        scheduler.rebuild(WALLET, new TokenCardMeta[] { erc20(TOKEN_B, "1", now) },
+                new Token[] { token(5 * 60 * SECOND, now - 15 * SECOND) });
+        assertNull(scheduler.nextTransactionCheck(Collections.emptyList()));
+
+        //focus chain transaction checks are every 10 seconds
+        scheduler.setFocusToken(new ContractLocator(TOKEN_A, MAINNET_ID));
+        assertEquals(TOKEN_B, scheduler.nextTransactionCheck(Collections.emptyList()).address);
+    }
+
+    private static TokenCardMeta erc20(String address, String balance, long lastUpdate)
+    {
+        return new TokenCardMeta(MAINNET_ID, address, balance, lastUpdate, 0, ContractType.ERC20);
+    }
+
+    /**
+     * @param txInterval transaction check interval, 0 if the token doesn't need transaction checks
+     */
+    private static Token token(long txInterval, long lastTxCheck)
+    {
+        Token token = mock(Token.class);
+        when(token.needsTransactionCheck()).thenReturn(txInterval > 0);
+        when(token.getTransactionCheckInterval()).thenReturn(txInterval);
+        token.lastTxCheck = lastTxCheck;
+        return token;
+    }
+}
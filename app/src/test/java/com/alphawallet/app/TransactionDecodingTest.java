@@ -83,6 +83,41 @@ public class TransactionDecodingTest {
         }
     }
 
+    /**
+     * One decoder shared between threads must give the same results as decoding sequentially
+     */
+    @Test
+    public void DecoderIsReentrant() throws Exception {
+        final TransactionDecoder t = new TransactionDecoder();
+        final String[] expected = new String[inputTestList.length];
+        for (int i = 0; i < inputTestList.length; i++) {
+            expected[i] = summarise(t.decodeInput(inputTestList[i]));
+        }
+
+        final String[][] results = new String[4][inputTestList.length];
+        Thread[] threads = new Thread[results.length];
+        for (int n = 0; n < threads.length; n++) {
+            final String[] result = results[n];
+            threads[n] = new Thread(() -> {
+                for (int i = 0; i < inputTestList.length; i++) {
+                    result[i] = summarise(t.decodeInput(inputTestList[i]));
+                }
+            });
+            threads[n].start();
+        }
+
+        for (int n = 0; n < threads.length; n++) {
+            threads[n].join();
+            for (int i = 0; i < inputTestList.length; i++) {
+                assertEquals(expected[i], results[n][i]);
+            }
+        }
+    }
+
+    private static String summarise(TransactionInput i) {
+        return i.functionData.functionName + i.addresses + i.sigData + i.miscData + i.arrayValues;
+    }
+
 
 
 
@@ -1,12 +1,15 @@
 package com.alphawallet.token.web;
 
 import com.alphawallet.token.entity.Attribute;
+import com.github.cliftonlabs.json_simple.JsonArray;
 import com.github.cliftonlabs.json_simple.JsonObject;
 
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
@@ -23,12 +26,10 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import org.springframework.web.servlet.view.RedirectView;
 import org.xml.sax.SAXException;
 
-import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
-import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -36,19 +37,18 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import javax.servlet.http.HttpServletRequest;
 
 import com.alphawallet.token.entity.AttributeInterface;
 import com.alphawallet.token.entity.ContractAddress;
-import com.alphawallet.token.entity.ContractInfo;
 import com.alphawallet.token.entity.MagicLinkData;
 import com.alphawallet.token.entity.MagicLinkInfo;
 import com.alphawallet.token.entity.NonFungibleToken;
@@ -58,10 +58,14 @@ import com.alphawallet.token.entity.TokenScriptResult;
 import com.alphawallet.token.entity.TransactionResult;
 import com.alphawallet.token.tools.ParseMagicLink;
 import com.alphawallet.token.tools.TokenDefinition;
-import com.alphawallet.token.tools.XMLDSigVerifier;
 import com.alphawallet.token.web.Ethereum.TokenscriptFunction;
 import com.alphawallet.token.web.Ethereum.TransactionHandler;
+import com.alphawallet.token.web.Service.AttributeResultCache;
 import com.alphawallet.token.web.Service.CryptoFunctions;
+import com.alphawallet.token.web.Service.PageTemplate;
+import com.alphawallet.token.web.Service.RenderedPageCache;
+import com.alphawallet.token.web.Service.TokenDefinitionRegistry;
+import com.alphawallet.token.web.Service.XMLDSigVerificationService;
 import static com.alphawallet.token.tools.Convert.getEthString;
 import static com.alphawallet.token.tools.ParseMagicLink.normal;
 import static com.alphawallet.token.web.Ethereum.TokenscriptFunction.ZERO_ADDRESS;
@@ -72,8 +76,16 @@ import static com.alphawallet.token.web.Ethereum.TokenscriptFunction.ZERO_ADDRES
 public class AppSiteController implements AttributeInterface
 {
     private static CryptoFunctions cryptoFunctions = new CryptoFunctions();
-    private static Map<Integer, Map<String, File>> addresses;
-    private static Map<Integer, Map<String, Map<BigInteger, CachedResult>>> transactionResults = new ConcurrentHashMap<>();  //optimisation results
+    private static final TokenDefinitionRegistry tokenDefinitions = new TokenDefinitionRegistry(new Locale("en"));
+    private static final long RENDER_DEADLINE_MS = 8000;
+    private static final int LOOKUP_THREADS = 32;
+    private static final ExecutorService lookupExecutor = Executors.newFixedThreadPool(LOOKUP_THREADS);
+    private static final Scheduler lookupScheduler = Schedulers.from(lookupExecutor);
+    private static final PageTemplate pageTemplate = loadTemplate("templates/tokenscriptTemplate.html");
+    private static final PageTemplate tokenInjectTemplate = loadTemplate("templates/token_inject.js.tokenscript");
+    private static final RenderedPageCache renderedPages = new RenderedPageCache(1000, 30 * 1000);
+    private static final XMLDSigVerificationService xmlDSigVerifier = new XMLDSigVerificationService();
+    private static final AttributeResultCache attributeResults = new AttributeResultCache();  //optimisation results
     private static final String appleAssociationConfig = "{\n" +
             "  \"applinks\": {\n" +
             "    \"apps\": [],\n" +
@@ -131,28 +143,34 @@ public class AppSiteController implements AttributeInterface
     private String handleTokenLink(MagicLinkData data, String universalLink
     ) throws IOException, SAXException, NoHandlerFoundException
     {
+        long deadline = System.currentTimeMillis() + RENDER_DEADLINE_MS;
         TokenDefinition definition = getTokenDefinition(data.chainId, data.contractAddress);
+        TransactionHandler txHandler = new TransactionHandler(data.chainId);
+
+        //independent lookups all go out at once; the page waits for the slowest, bounded by the deadline
+        CompletableFuture<String> nameLookup = CompletableFuture.supplyAsync(() -> txHandler.getNameOnly(data.contractAddress), lookupExecutor);
+        CompletableFuture<String> symbolLookup = CompletableFuture.supplyAsync(() -> txHandler.getSymbolOnly(data.contractAddress), lookupExecutor);
+        CompletableFuture<String> availabilityCheck = CompletableFuture.supplyAsync(() -> checkAvailability(txHandler, data, definition), lookupExecutor);
 
         if (definition == null)
         {
-            return renderTokenWithoutTokenScript(data, universalLink);
+            return renderTokenWithoutTokenScript(data, universalLink, deadline, nameLookup, symbolLookup, availabilityCheck);
         }
-        String available = "available";
-        try
+
+        //attributes are resolved against the tokens found by the availability check
+        String available = awaitLookup(availabilityCheck, deadline, "unavailable");
+
+        if (Calendar.getInstance().getTime().after(new Date(data.expiry*1000)))
         {
-            if(data.contractType == normal)
-            {
-                checkTokensOwnedByMagicLinkCreator(data, definition);
-            }
-            else
-            {
-                checkTokensClaimableSpawnable(data);
-            }
+            available = "expired";
         }
-        catch (Exception e)
+
+        String cachedPage = renderedPages.get(data.chainId, universalLink, available);
+        if (cachedPage != null)
         {
-            //if the tokens are not available, an exception will be thrown and therefore the tokens are not available
-            available = "unavailable";
+            nameLookup.cancel(false);
+            symbolLookup.cancel(false);
+            return cachedPage;
         }
 
         //get attributes
@@ -165,10 +183,21 @@ public class AppSiteController implements AttributeInterface
         System.out.println(firstTokenId.toString(16));
         ContractAddress cAddr = new ContractAddress(data.chainId, data.contractAddress);
         StringBuilder tokenData = new StringBuilder();
-        TransactionHandler txHandler = new TransactionHandler(data.chainId);
+        List<TokenScriptResult.Attribute> attrs = new ArrayList<>();
 
-        String tokenName = txHandler.getNameOnly(data.contractAddress);
-        String symbol = txHandler.getSymbolOnly(data.contractAddress);
+        try
+        {
+            tokenscriptFunction.resolveAttributes(ZERO_ADDRESS, firstTokenId, this, cAddr, definition, lookupScheduler)
+                    .take(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)
+                    .blockingForEach(attrs::add);
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+        }
+
+        String tokenName = awaitLookup(nameLookup, deadline, "");
+        String symbol = awaitLookup(symbolLookup, deadline, "");
 
         try
         {
@@ -181,55 +210,107 @@ public class AppSiteController implements AttributeInterface
             e.printStackTrace();
         }
 
-        tokenscriptFunction.resolveAttributes(ZERO_ADDRESS, firstTokenId, this, cAddr, definition)
-                .forEach(attr -> TokenScriptResult.addPair(tokenData, attr.id, attr.text))
-                .isDisposed();
-
-        if (Calendar.getInstance().getTime().after(new Date(data.expiry*1000)))
-        {
-            available = "expired";
-        }
+        attrs.forEach(attr -> TokenScriptResult.addPair(tokenData, attr.id, attr.text));
 
         String view = definition.getCardData("view");
         String style = definition.getCardData("style");
 
-        String scriptData = loadFile("templates/token_inject.js.tokenscript");
-        String tokenView = String.format(scriptData, tokenData.toString(), view);
+        String tokenView = tokenInjectTemplate.render(tokenData.toString(), view);
 
-        return formWebPage(txHandler, data, universalLink, available, style, tokenView);
+        String page = formWebPage(tokenName, symbol, data, universalLink, available, style, tokenView);
+        //don't keep a page that was rendered with values missing due to the deadline
+        if (completed(nameLookup) && completed(symbolLookup) && attrs.size() == definition.attributes.size())
+        {
+            renderedPages.put(data.chainId, universalLink, available, page);
+        }
+        return page;
     }
 
-    private String renderTokenWithoutTokenScript(MagicLinkData data, String universalLink)
+    private String renderTokenWithoutTokenScript(MagicLinkData data, String universalLink, long deadline,
+                                                 CompletableFuture<String> nameLookup, CompletableFuture<String> symbolLookup,
+                                                 CompletableFuture<String> availabilityCheck)
     {
-        TransactionHandler txHandler = new TransactionHandler(data.chainId);
         String available = "available";
 
         if (Calendar.getInstance().getTime().after(new Date(data.expiry*1000)))
         {
             available = "expired";
         }
+
+        //if the check fails, we assume it is not available due to balance call failing to match
+        if (awaitLookup(availabilityCheck, deadline, "unavailable").equals("unavailable"))
+        {
+            available = "unavailable";
+        }
+
+        String cachedPage = renderedPages.get(data.chainId, universalLink, available);
+        if (cachedPage != null)
+        {
+            nameLookup.cancel(false);
+            symbolLookup.cancel(false);
+            return cachedPage;
+        }
+
+        String tokenName = awaitLookup(nameLookup, deadline, "");
+        String symbol = awaitLookup(symbolLookup, deadline, "");
+
+        String page = formWebPage(tokenName, symbol, data, universalLink, available, "", "");
+        if (completed(nameLookup) && completed(symbolLookup))
+        {
+            renderedPages.put(data.chainId, universalLink, available, page);
+        }
+        return page;
+    }
+
+    private String checkAvailability(TransactionHandler txHandler, MagicLinkData data, TokenDefinition definition)
+    {
         try
         {
-            if(data.contractType == normal)
+            if (data.contractType != normal)
+            {
+                checkTokensClaimableSpawnable(txHandler, data);
+            }
+            else if (definition != null)
             {
-                checkTokensOwnedByMagicLinkCreator(data);
+                checkTokensOwnedByMagicLinkCreator(txHandler, data, definition);
             }
             else
             {
-                checkTokensClaimableSpawnable(data);
+                checkTokensOwnedByMagicLinkCreator(txHandler, data);
             }
+            return "available";
         }
         catch (Exception e)
         {
-            //if exception is thrown, we assume it is not available due to balance call failing to match
-            available = "unavailable";
+            //if the tokens are not available, an exception will be thrown and therefore the tokens are not available
+            return "unavailable";
+        }
+    }
+
+    /**
+     * Wait for a lookup until the page deadline, giving the default value if it fails or runs over
+     */
+    private <T> T awaitLookup(CompletableFuture<T> lookup, long deadline, T defaultValue)
+    {
+        try
+        {
+            return lookup.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
         }
+        catch (Exception e)
+        {
+            lookup.cancel(true);
+            return defaultValue;
+        }
+    }
 
-        return formWebPage(txHandler, data, universalLink, available, "", "");
+    private static boolean completed(CompletableFuture<?> lookup)
+    {
+        return lookup.isDone() && !lookup.isCompletedExceptionally();
     }
 
     private String formWebPage(
-            TransactionHandler txHandler,
+            String tokenName,
+            String symbol,
             MagicLinkData data,
             String universalLink,
             String available,
@@ -237,16 +318,12 @@ public class AppSiteController implements AttributeInterface
             String tokenView
     )
     {
-        String tokenName = txHandler.getName(data.contractAddress);
-        String symbol = txHandler.getSymbolOnly(data.contractAddress);
         String nameWithSymbol = tokenName + "(" + symbol + ")";
 
         String price = getEthString(data.price) + " " + MagicLinkInfo.getNetworkNameById(data.chainId);
 
         String title = data.ticketCount + " Tokens " + available;
 
-        String initHTML = loadFile("templates/tokenscriptTemplate.html");
-
         String expiry = new java.util.Date(data.expiry * 1000).toString();
 
         String availableUntil = "<span title=\"Unix Time is " + data.expiry + "\">" + expiry + "</span>";
@@ -256,8 +333,7 @@ public class AppSiteController implements AttributeInterface
         String etherscanAccountLink = MagicLinkInfo.getEtherscanURLbyNetwork(data.chainId) + "address/" + data.ownerAddress;
         String etherscanTokenLink = MagicLinkInfo.getEtherscanURLbyNetwork(data.chainId) + "address/" + data.contractAddress;
 
-        return String.format(
-                initHTML,
+        return pageTemplate.render(
                 title,
                 style,
                 String.valueOf(data.ticketCount),
@@ -278,36 +354,21 @@ public class AppSiteController implements AttributeInterface
         );
     }
 
-    private TokenDefinition getTokenDefinition(int chainId, String contractAddress) throws IOException, SAXException, NoHandlerFoundException
+    private TokenDefinition getTokenDefinition(int chainId, String contractAddress)
     {
-        File xml = null;
-        TokenDefinition definition = null;
-        if (addresses.containsKey(chainId) && addresses.get(chainId).containsKey(contractAddress))
-        {
-            xml = addresses.get(chainId).get(contractAddress);
-            if (xml == null) {
-                /* this is impossible to happen, because at least 1 xml should present or main() bails out */
-                throw new NoHandlerFoundException("GET", "/" + contractAddress, new HttpHeaders());
-            }
-            try(FileInputStream in = new FileInputStream(xml)) {
-                // TODO: give more detail in the error
-                // TODO: reflect on this: should the page bail out for contracts with completely no matching XML?
-                definition = new TokenDefinition(in, new Locale("en"), null);
-            }
-        }
-        return definition;
+        // TODO: reflect on this: should the page bail out for contracts with completely no matching XML?
+        return tokenDefinitions.getDefinition(chainId, contractAddress);
     }
 
-    private void checkTokensClaimableSpawnable(MagicLinkData data) throws Exception {
-        TransactionHandler txHandler = new TransactionHandler(data.chainId);
+    private void checkTokensClaimableSpawnable(TransactionHandler txHandler, MagicLinkData data) throws Exception {
         //TODO replace with real admin(s) addresses in production
         if(data.ownerAddress.equalsIgnoreCase("0xEdd6D7ba0FF9f4bC501a12529cb736CA76A4fe7e") ||
                 data.ownerAddress.equalsIgnoreCase("0x453aABe984b62eE28382c99A6d20447f7776b1fa"))
         {
-            //check that token ids are not owned by someone
-            for(BigInteger token: data.tokenIds)
+            //check that token ids are not owned by someone, all in one batch call
+            for(String owner: txHandler.getOwnersOf721(data.contractAddress, data.tokenIds))
             {
-                if(!txHandler.getOwnerOf721(data.contractAddress, token).equals(""))
+                if(!owner.equals(""))
                 {
                     throw new Exception("Token(s) already owned");
                 }
@@ -328,20 +389,20 @@ public class AppSiteController implements AttributeInterface
      * @param data
      * @throws Exception
      */
-    private void checkTokensOwnedByMagicLinkCreator(MagicLinkData data, TokenDefinition definition) throws Exception
+    private void checkTokensOwnedByMagicLinkCreator(TransactionHandler txHandler, MagicLinkData data, TokenDefinition definition) throws Exception
     {
-        TransactionHandler txHandler = new TransactionHandler(data.chainId);
         List<BigInteger> balanceArray = txHandler.getBalanceArray(data.ownerAddress, data.contractAddress);
-        data.tokenIds = new ArrayList<>();
+        List<BigInteger> tokenIds = new ArrayList<>();
 
         List<NonFungibleToken> selection = Arrays.stream(data.indices)
                 .mapToObj(i -> balanceArray.get(i))
                 .filter(tokenId -> !tokenId.equals(BigInteger.ZERO))
                 .map(tokenId -> {
-                    data.tokenIds.add(tokenId);
+                    tokenIds.add(tokenId);
                     return new NonFungibleToken(tokenId, definition);
                 })
                 .collect(Collectors.toList());
+        data.tokenIds = tokenIds; //publish once complete, this runs off the request thread
 
         if (selection.size() != data.indices.length)
         {
@@ -350,9 +411,8 @@ public class AppSiteController implements AttributeInterface
     }
 
     //For if there is no TokenScript
-    private void checkTokensOwnedByMagicLinkCreator(MagicLinkData data) throws Exception
+    private void checkTokensOwnedByMagicLinkCreator(TransactionHandler txHandler, MagicLinkData data) throws Exception
     {
-        TransactionHandler txHandler = new TransactionHandler(data.chainId);
         List<BigInteger> balanceArray = txHandler.getBalanceArray(data.ownerAddress, data.contractAddress);
         data.tokenIds = new ArrayList<>();
 
@@ -373,111 +433,60 @@ public class AppSiteController implements AttributeInterface
     }
 
     public static void main(String[] args) throws IOException { // TODO: should run System.exit() if IOException
-        addresses = new HashMap<Integer, Map<String, File>>();
         SpringApplication.run(AppSiteController.class, args);
-        try (Stream<Path> dirStream = Files.walk(repoDir)) {
-            dirStream.filter(path -> path.toString().toLowerCase().endsWith(".tsml"))
-                    .filter(Files::isRegularFile)
-                    .filter(Files::isReadable)
-                    .forEach(AppSiteController::addContractAddresses);
-
-            assert addresses != null : "Can't read all XML files";
+        try {
+            tokenDefinitions.loadAll(repoDir);
         } catch (NoSuchFileException e) {
             System.err.println("repository.dir property is defined with a non-existing dir: " + repoDir.toString());
             System.err.println("Please edit your local copy of application.properties, or");
             System.err.println("try run with --repository.dir=/dir/to/repo");
             System.exit(255);
-        } catch (AssertionError e) {
+        } catch (RuntimeException e) {
             System.err.println("Can't read all the XML files in repository.dir: " + repoDir.toString());
+            e.printStackTrace();
             System.exit(254);
         }
 
-        if (addresses.size() == 0) { // if no XML file is found
+        if (tokenDefinitions.isEmpty()) { // if no XML file is found
             // the server still can run and wait for someone to dump an XML, but let's assume it's a mistake
             System.err.println("No valid contract XML found in " + repoDir.toString() + ", cowardly not continuing.");
             System.exit(253);
         } else {
-            // the list should be reprinted whenever a new file is added.
-            System.out.println("Serving an XML repo with the following contracts:");
-            addresses.forEach((chainId, addrMap) -> {
-                System.out.println("Network ID: " + MagicLinkInfo.getNetworkNameById(chainId) + "(" + chainId + ")");
-                addrMap.forEach((addr, xml) -> {
-                    System.out.println(addr + ":" + xml.getPath());
-                });
-                System.out.println(" ------------");
-            });
+            // the list is reprinted by the registry whenever a script is added, changed or removed.
+            tokenDefinitions.printContracts();
         }
 
+        // new or updated scripts go live without a restart
+        tokenDefinitions.startWatching(repoDir);
+        attributeResults.startTransferWatch();
+
         loadInfuraKey();
 	}
 
-    private static void addContractAddresses(Path path) {
-        try (InputStream input = Files.newInputStream(path)) {
-            TokenDefinition token = new TokenDefinition(input, new Locale("en"), null);
-            ContractInfo holdingContracts = token.contracts.get(token.holdingToken);
-            if (holdingContracts != null)
-                holdingContracts.addresses.keySet().stream().forEach(network -> addContractsToNetwork(network, networkAddresses(holdingContracts.addresses.get(network), path.toString())));
-        } catch (IOException | SAXException e) {
-            throw new RuntimeException(e); // make it safe to use in stream
-        }
-    }
-
-    private static void addContractsToNetwork(Integer network, Map<String, File> newTokenDescriptionAddresses)
-    {
-        Map<String, File> existingDefinitions = addresses.get(network);
-        if (existingDefinitions == null) existingDefinitions = new HashMap<>();
-
-        addresses.put(network, Stream.concat(existingDefinitions.entrySet().stream(), newTokenDescriptionAddresses.entrySet().stream())
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (value1, value2) -> new File(value2.getAbsolutePath())
-                         )
-                ));
-    }
-
-    private static Map<String, File> networkAddresses(List<String> strings, String path)
+    private static PageTemplate loadTemplate(String fileName)
     {
-        Map<String, File> addrMap = new HashMap<>();
-        strings.forEach(address -> addrMap.put(address, new File(path)));
-        return addrMap;
-    }
-
-    private String loadFile(String fileName) {
-        byte[] buffer = new byte[0];
-        try {
-            InputStream in = getClass()
-                    .getClassLoader().getResourceAsStream(fileName);
-            buffer = new byte[in.available()];
-            int len = in.read(buffer);
-            if (len < 1) {
-                throw new IOException("Nothing is read.");
-            }
-        } catch (Exception ex) {
-            ex.printStackTrace();
+        try
+        {
+            return PageTemplate.fromResource(fileName);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Unable to load template " + fileName, e);
         }
-        return new String(buffer);
     }
 
     //These functions are for caching and restoring results for optimsation.
-    //TODO: rather than a simple time invalidation method, periodically scan transactions for token contracts which have entries in this mapping
-    //      if any of those contracts has had a transaction written to it, then refresh all the cached entries
-    //      once events are available we can selectively update entries.
+    //Entries expire after a fixed time, and are dropped early when the cache sees a Transfer on the token contract.
 
     @Override
     public TransactionResult getFunctionResult(ContractAddress contract, Attribute attr, BigInteger tokenId)
     {
-        String addressFunctionKey = contract.address + "-" + attr.name;
         TransactionResult tr = new TransactionResult(contract.chainId, contract.address, tokenId, attr);
-        //existing entry in map?
-        if (transactionResults.containsKey(contract.chainId))
+        AttributeResultCache.CachedResult cachedResult = attributeResults.get(contract.chainId, contract.address, attr.name, tokenId);
+        if (cachedResult != null)
         {
-            Map<BigInteger, CachedResult> contractResult = transactionResults.get(contract.chainId).get(addressFunctionKey);
-            if (contractResult != null && contractResult.containsKey(tokenId))
-            {
-                tr.resultTime = contractResult.get(tokenId).resultTime;
-                tr.result = contractResult.get(tokenId).result;
-            }
+            tr.resultTime = cachedResult.resultTime;
+            tr.result = cachedResult.result;
         }
 
         return tr;
@@ -486,13 +495,7 @@ public class AppSiteController implements AttributeInterface
     @Override
     public TransactionResult storeAuxData(String wAddress, TransactionResult tResult)
     {
-        String addressFunctionKey = tResult.contractAddress + "-" + tResult.attrId;
-        if (!transactionResults.containsKey(tResult.contractChainId)) transactionResults.put(tResult.contractChainId, new HashMap<>());
-        if (!transactionResults.get(tResult.contractChainId).containsKey(addressFunctionKey)) transactionResults.get(tResult.contractChainId).put(addressFunctionKey, new HashMap<>());
-        Map<BigInteger, CachedResult> tokenResultMap = transactionResults.get(tResult.contractChainId).get(addressFunctionKey);
-        tokenResultMap.put(tResult.tokenId, new CachedResult(tResult.resultTime, tResult.result));
-        transactionResults.get(tResult.contractChainId).put(addressFunctionKey, tokenResultMap);
-
+        attributeResults.put(tResult);
         return tResult;
     }
 
@@ -509,21 +512,6 @@ public class AppSiteController implements AttributeInterface
         return ZERO_ADDRESS;
     }
 
-    /**
-     * Can ditch this class once we have the transaction optimisation working as detailed in the "TO-DO" above
-     */
-    private class CachedResult
-    {
-        long resultTime;
-        String result;
-
-        CachedResult(long time, String r)
-        {
-            resultTime = time;
-            result = r;
-        }
-    }
-
     /* usage: (Weiwu documented after Sangalli's implementation)
 
     1) for a test file whose root certificate isn't in the trusted CA list:
@@ -553,9 +541,47 @@ public class AppSiteController implements AttributeInterface
     @ResponseBody
     @SuppressWarnings("unchecked")
     public ResponseEntity<String> validateSSLCertificate(@RequestParam("file") MultipartFile file) throws IOException {
-        HttpStatus status = HttpStatus.ACCEPTED;
+        XMLDsigVerificationResult XMLDsigVerificationResult = xmlDSigVerifier.verify(file.getBytes());
+        HttpStatus status = XMLDsigVerificationResult.isValid ? HttpStatus.ACCEPTED : HttpStatus.BAD_REQUEST;
+        return new ResponseEntity<String>(verificationResultJson(XMLDsigVerificationResult).toJson(), status);
+    }
+
+    /* usage: verify many files in one request, eg for CI over a script repo
+
+    $ curl -F 'file=@lib/src/test/ts/EntryToken.tsml' -F 'file=@lib/src/test/ts/DAI.tsml' localhost:8080/api/v2/verifyXMLDSig
+    [{"file":"EntryToken.tsml","result":"fail","failureReason":"Path does not chain with any of the trust anchors"},
+     {"file":"DAI.tsml","result":"pass","subject":"CN=*.aw.app","keyName":"","keyType":"SHA256withRSA","issuer":"CN=Let's Encrypt Authority X3,O=Let's Encrypt,C=US"}]
+
+    Results are in upload order. Returns 202 if every file passed, otherwise 400.
+     */
+    @PostMapping("/api/v2/verifyXMLDSig")
+    @ResponseBody
+    @SuppressWarnings("unchecked")
+    public ResponseEntity<String> validateSSLCertificates(@RequestParam("file") MultipartFile[] files) throws IOException {
+        List<byte[]> contents = new ArrayList<>();
+        for (MultipartFile file : files)
+        {
+            contents.add(file.getBytes());
+        }
+
+        List<XMLDsigVerificationResult> verified = xmlDSigVerifier.verifyAll(contents);
+        JsonArray results = new JsonArray();
+        boolean allValid = true;
+        for (int i = 0; i < files.length; i++)
+        {
+            JsonObject result = verificationResultJson(verified.get(i));
+            result.put("file", files[i].getOriginalFilename());
+            results.add(result);
+            allValid &= verified.get(i).isValid;
+        }
+
+        return new ResponseEntity<String>(results.toJson(), allValid ? HttpStatus.ACCEPTED : HttpStatus.BAD_REQUEST);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JsonObject verificationResultJson(XMLDsigVerificationResult XMLDsigVerificationResult)
+    {
         JsonObject result = new JsonObject();
-        XMLDsigVerificationResult XMLDsigVerificationResult = new XMLDSigVerifier().VerifyXMLDSig(file.getInputStream());
         if (XMLDsigVerificationResult.isValid)
         {
             result.put("result", "pass");
@@ -568,9 +594,8 @@ public class AppSiteController implements AttributeInterface
         {
             result.put("result", "fail");
             result.put("failureReason", XMLDsigVerificationResult.failureReason);
-            status = HttpStatus.BAD_REQUEST;
         }
-        return new ResponseEntity<String>(result.toJson(), status);
+        return result;
     }
 
     private static void loadInfuraKey()
@@ -1,11 +1,9 @@
 package com.alphawallet.token.web.Ethereum;
 
 import io.reactivex.Observable;
+import io.reactivex.Scheduler;
 import com.alphawallet.token.entity.*;
 import com.alphawallet.token.tools.TokenDefinition;
-import com.alphawallet.token.web.Service.EthRPCNodes;
-
-import okhttp3.OkHttpClient;
 import org.web3j.abi.FunctionEncoder;
 import org.web3j.abi.FunctionReturnDecoder;
 import org.web3j.abi.TypeReference;
@@ -115,7 +113,6 @@ import org.web3j.abi.datatypes.generated.Uint96;
 import org.web3j.protocol.Web3j;
 import org.web3j.protocol.core.DefaultBlockParameterName;
 import org.web3j.protocol.core.methods.response.EthCall;
-import org.web3j.protocol.http.HttpService;
 import org.web3j.utils.Bytes;
 import org.web3j.utils.Numeric;
 
@@ -127,7 +124,6 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 
 import static org.web3j.protocol.core.methods.request.Transaction.createEthCallTransaction;
 
@@ -709,17 +705,8 @@ public abstract class TokenscriptFunction
 
             // 1: create transaction call
             org.web3j.abi.datatypes.Function transaction = generateTransactionFunction(walletAddress, tokenId, definition, attr.function, attrIf);
-            // 2: create web3 connection
-            OkHttpClient okClient = new OkHttpClient.Builder()
-                    .connectTimeout(5, TimeUnit.SECONDS)
-                    .readTimeout(5, TimeUnit.SECONDS)
-                    .writeTimeout(5, TimeUnit.SECONDS)
-                    .retryOnConnectionFailure(false)
-                    .build();
-
-            HttpService nodeService = new HttpService(EthRPCNodes.getNodeURLByNetworkId(contractAddress.chainId), okClient, false);
-
-            Web3j web3j = Web3j.build(nodeService);
+            // 2: fetch pooled web3 connection
+            Web3j web3j = Web3jPool.getWeb3jService(contractAddress.chainId);
 
             //now push the transaction
             String result;
@@ -920,14 +907,18 @@ public abstract class TokenscriptFunction
         }
     }
 
-    public Observable<TokenScriptResult.Attribute> resolveAttributes(String walletAddress, BigInteger tokenId, AttributeInterface attrIf, ContractAddress cAddr, TokenDefinition td)
+    /**
+     * Resolve all the attributes of a definition. Each attribute is fetched on the supplied scheduler so the
+     * contract calls run concurrently; results are emitted in completion order.
+     */
+    public Observable<TokenScriptResult.Attribute> resolveAttributes(String walletAddress, BigInteger tokenId, AttributeInterface attrIf, ContractAddress cAddr, TokenDefinition td, Scheduler scheduler)
     {
         td.context = new TokenscriptContext();
         td.context.cAddr = cAddr;
         td.context.attrInterface = attrIf;
 
         return Observable.fromIterable(new ArrayList<>(td.attributes.values()))
-                .flatMap(attr -> fetchAttrResult(walletAddress, attr, tokenId, td, attrIf));
+                .flatMap(attr -> fetchAttrResult(walletAddress, attr, tokenId, td, attrIf).subscribeOn(scheduler));
     }
 
     private Observable<TokenScriptResult.Attribute> staticAttribute(Attribute attr, BigInteger tokenId)
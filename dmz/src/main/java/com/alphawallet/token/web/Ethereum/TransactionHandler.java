@@ -9,46 +9,44 @@ import org.web3j.abi.datatypes.Function;
 import org.web3j.abi.datatypes.Type;
 import org.web3j.abi.datatypes.Utf8String;
 import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.protocol.ObjectMapperFactory;
 import org.web3j.protocol.Web3j;
 import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Request;
 import org.web3j.protocol.core.methods.request.Transaction;
-import org.web3j.protocol.core.methods.response.Web3ClientVersion;
-import org.web3j.protocol.http.HttpService;
+import org.web3j.protocol.core.methods.response.EthCall;
 
+import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 
 import com.alphawallet.token.entity.BadContract;
-import com.alphawallet.token.tools.Numeric;
 import com.alphawallet.token.web.Service.EthRPCNodes;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
-import okhttp3.OkHttpClient;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import static com.alphawallet.token.web.Ethereum.TokenscriptFunction.ZERO_ADDRESS;
 
 public class TransactionHandler
 {
-    private static Web3j mWeb3;
+    private static final MediaType JSON_MEDIA_TYPE = MediaType.parse("application/json; charset=utf-8");
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+
+    private final Web3j mWeb3;
+    private final String nodeURL;
 
     public TransactionHandler(int networkId)
     {
-        String nodeURL = EthRPCNodes.getNodeURLByNetworkId(networkId);
-        OkHttpClient.Builder builder = new OkHttpClient.Builder();
-        builder.connectTimeout(20, TimeUnit.SECONDS);
-        builder.readTimeout(20, TimeUnit.SECONDS);
-        HttpService service = new HttpService(nodeURL, builder.build(), false);
-        mWeb3 = Web3j.build(service);
-        try
-        {
-            Web3ClientVersion web3ClientVersion = mWeb3.web3ClientVersion().sendAsync().get();
-            System.out.println(web3ClientVersion.getWeb3ClientVersion());
-        }
-        catch (Exception e)
-        {
-            e.printStackTrace();
-        }
+        mWeb3 = Web3jPool.getWeb3jService(networkId);
+        nodeURL = EthRPCNodes.getNodeURLByNetworkId(networkId);
     }
 
     public List<BigInteger> getBalanceArray(String address, String contractAddress) throws Exception
@@ -113,7 +111,7 @@ public class TransactionHandler
         String owner = "";
         try
         {
-            owner = Numeric.toHexStringWithPrefix(callSmartContractAndGetResult(address, ownerOf721(tokenId)));
+            owner = decodeOwner(callSmartContractFunction(ownerOf721(tokenId), address));
         }
         catch (Exception e)
         {
@@ -122,6 +120,41 @@ public class TransactionHandler
         return owner;
     }
 
+    /**
+     * Fetch the owners of several ERC721 tokens in one JSON-RPC batch request.
+     * Falls back to one call per token if the node won't accept batches.
+     * @param address contract address
+     * @param tokenIds
+     * @return owner of each tokenId, in order; empty string if the token is not owned (or doesn't exist)
+     */
+    public List<String> getOwnersOf721(String address, List<BigInteger> tokenIds)
+    {
+        List<Transaction> calls = new ArrayList<>();
+        for (BigInteger tokenId : tokenIds)
+        {
+            calls.add(Transaction.createEthCallTransaction(null, address, FunctionEncoder.encode(ownerOf721(tokenId))));
+        }
+
+        List<String> owners = new ArrayList<>();
+        try
+        {
+            for (String result : batchEthCall(calls))
+            {
+                owners.add(decodeOwner(result));
+            }
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+            owners.clear();
+            for (BigInteger tokenId : tokenIds)
+            {
+                owners.add(getOwnerOf721(address, tokenId));
+            }
+        }
+        return owners;
+    }
+
     public List<BigInteger> getBalanceArray721Tickets(String owner, String contractAddress) {
         List<BigInteger> castBalances = new ArrayList<>();
         try
@@ -170,6 +203,64 @@ public class TransactionHandler
         return ethCall.getValue();
     }
 
+    /**
+     * Send a set of eth_calls to the node as JSON-RPC batch requests, MAX_BATCH_SIZE calls per round trip
+     * @param calls
+     * @return results in the same order as the calls; null where an individual call failed
+     * @throws IOException if the node rejected the batch
+     */
+    private List<String> batchEthCall(List<Transaction> calls) throws IOException
+    {
+        List<String> results = new ArrayList<>(Collections.nCopies(calls.size(), null));
+        for (int start = 0; start < calls.size(); start += MAX_BATCH_SIZE)
+        {
+            int end = Math.min(calls.size(), start + MAX_BATCH_SIZE);
+            List<Request<?, EthCall>> batch = new ArrayList<>();
+            for (int i = start; i < end; i++)
+            {
+                Request<?, EthCall> request = new Request<>("eth_call",
+                        Arrays.asList(calls.get(i), DefaultBlockParameterName.LATEST), null, EthCall.class);
+                request.setId(i);
+                batch.add(request);
+            }
+
+            okhttp3.Request httpRequest = new okhttp3.Request.Builder()
+                    .url(nodeURL)
+                    .post(RequestBody.create(JSON_MEDIA_TYPE, objectMapper.writeValueAsBytes(batch)))
+                    .build();
+
+            try (Response response = Web3jPool.getHttpClient().newCall(httpRequest).execute())
+            {
+                if (!response.isSuccessful() || response.body() == null)
+                {
+                    throw new IOException("Batch eth_call failed: " + response.code());
+                }
+
+                //a node that doesn't support batching replies with a single error object, which fails here
+                EthCall[] replies = objectMapper.readValue(response.body().byteStream(), EthCall[].class);
+                for (EthCall reply : replies)
+                {
+                    int index = (int) reply.getId();
+                    if (!reply.hasError() && index >= start && index < end)
+                    {
+                        results.set(index, reply.getValue());
+                    }
+                }
+            }
+        }
+
+        return results;
+    }
+
+    private static String decodeOwner(String responseValue)
+    {
+        if (responseValue == null) return "";
+        List<Type> response = FunctionReturnDecoder.decode(responseValue, ownerOf721(BigInteger.ZERO).getOutputParameters());
+        if (response.size() != 1) return ""; //reverted: token doesn't exist
+        String owner = ((Address) response.get(0)).getValue();
+        return owner.equalsIgnoreCase(ZERO_ADDRESS) ? "" : owner;
+    }
+
     private List callSmartContractFunctionArray(
             org.web3j.abi.datatypes.Function function, String contractAddress, String address) throws Exception
     {
@@ -0,0 +1,50 @@
+package com.alphawallet.token.web.Ethereum;
+
+import com.alphawallet.token.web.Service.EthRPCNodes;
+
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.http.HttpService;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+/**
+ * One Web3j client per chain, all sharing a single OkHttp connection pool.
+ *
+ * Connections to the node are kept alive (and multiplexed over HTTP/2 where the node offers it) so
+ * rendering a magic link page doesn't pay for a new TLS handshake on each call. Clients are built
+ * lazily on first use and never handshake with the node up front.
+ */
+public class Web3jPool
+{
+    private static final int MAX_IDLE_CONNECTIONS = 16;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    private static final OkHttpClient httpClient = new OkHttpClient.Builder()
+            .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+            .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .connectTimeout(10, TimeUnit.SECONDS)
+            .readTimeout(20, TimeUnit.SECONDS)
+            .writeTimeout(10, TimeUnit.SECONDS)
+            .retryOnConnectionFailure(false)
+            .build();
+
+    private static final Map<Integer, Web3j> web3jNodeServers = new ConcurrentHashMap<>();
+
+    public static Web3j getWeb3jService(int chainId)
+    {
+        return web3jNodeServers.computeIfAbsent(chainId, id ->
+                Web3j.build(new HttpService(EthRPCNodes.getNodeURLByNetworkId(id), httpClient, false)));
+    }
+
+    public static OkHttpClient getHttpClient()
+    {
+        return httpClient;
+    }
+}
@@ -0,0 +1,228 @@
+package com.alphawallet.token.web.Service;
+
+import com.alphawallet.token.entity.TransactionResult;
+import com.alphawallet.token.web.Ethereum.Web3jPool;
+
+import org.web3j.abi.EventEncoder;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterNumber;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of TokenScript attribute results, keyed by (chainId, contract, attribute, tokenId).
+ *
+ * Entries are evicted least-recently-used once the cache is full, and expire after a fixed time to live.
+ * A background poller reads Transfer logs for every contract that has cached entries and drops all the
+ * entries for a contract as soon as it sees a transfer, so the next page render re-fetches fresh values.
+ */
+public class AttributeResultCache
+{
+    private static final int MAX_ENTRIES = 10000;
+    private static final long ENTRY_TTL_MS = 10 * 60 * 1000; //catches state changes that don't emit a Transfer
+    private static final long TRANSFER_POLL_INTERVAL_SECONDS = 15;
+    private static final long FIRST_POLL_LOOKBACK_BLOCKS = 10;
+
+    private static final String TRANSFER_TOPIC = EventEncoder.buildEventSignature("Transfer(address,address,uint256)"); //ERC20 & ERC721
+    private static final String ERC875_TRANSFER_TOPIC = EventEncoder.buildEventSignature("Transfer(address,uint16[])");
+
+    private final Map<Key, CachedResult> entries = new LinkedHashMap<Key, CachedResult>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, CachedResult> eldest)
+        {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private final Map<Integer, BigInteger> lastCheckedBlock = new ConcurrentHashMap<>();
+    private ScheduledExecutorService transferPoller;
+
+    /**
+     * @return the cached result, or null if there is none or it has expired
+     */
+    public synchronized CachedResult get(int chainId, String address, String attrId, BigInteger tokenId)
+    {
+        Key key = new Key(chainId, address, attrId, tokenId);
+        CachedResult result = entries.get(key);
+        if (result != null && result.isExpired())
+        {
+            entries.remove(key);
+            result = null;
+        }
+        return result;
+    }
+
+    public synchronized void put(TransactionResult tResult)
+    {
+        entries.put(new Key(tResult.contractChainId, tResult.contractAddress, tResult.attrId, tResult.tokenId),
+                new CachedResult(tResult.resultTime, tResult.result));
+    }
+
+    public synchronized void invalidateContract(int chainId, String address)
+    {
+        entries.keySet().removeIf(key -> key.chainId == chainId && key.address.equalsIgnoreCase(address));
+    }
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    public synchronized void startTransferWatch()
+    {
+        if (transferPoller != null) return;
+        transferPoller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "attribute-cache-invalidator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        transferPoller.scheduleWithFixedDelay(this::checkTransfers,
+                TRANSFER_POLL_INTERVAL_SECONDS, TRANSFER_POLL_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stopTransferWatch()
+    {
+        if (transferPoller == null) return;
+        transferPoller.shutdownNow();
+        transferPoller = null;
+    }
+
+    private void checkTransfers()
+    {
+        Map<Integer, Set<String>> cachedContracts = cachedContracts();
+        lastCheckedBlock.keySet().retainAll(cachedContracts.keySet());
+
+        for (Map.Entry<Integer, Set<String>> chain : cachedContracts.entrySet())
+        {
+            try
+            {
+                checkTransfers(chain.getKey(), new ArrayList<>(chain.getValue()));
+            }
+            catch (Exception e)
+            {
+                //node unavailable; try again next poll, the TTL still bounds how stale entries can get
+                System.err.println("Unable to check transfers on chain " + chain.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void checkTransfers(int chainId, List<String> contracts) throws Exception
+    {
+        Web3j web3j = Web3jPool.getWeb3jService(chainId);
+        BigInteger latestBlock = web3j.ethBlockNumber().send().getBlockNumber();
+        BigInteger lastBlock = lastCheckedBlock.get(chainId);
+        if (lastBlock == null)
+        {
+            lastBlock = latestBlock.subtract(BigInteger.valueOf(FIRST_POLL_LOOKBACK_BLOCKS)).max(BigInteger.ZERO);
+        }
+        if (latestBlock.compareTo(lastBlock) <= 0) return;
+
+        EthFilter filter = new EthFilter(new DefaultBlockParameterNumber(lastBlock.add(BigInteger.ONE)),
+                new DefaultBlockParameterNumber(latestBlock), contracts);
+        filter.addOptionalTopics(TRANSFER_TOPIC, ERC875_TRANSFER_TOPIC);
+
+        EthLog ethLog = web3j.ethGetLogs(filter).send();
+        if (ethLog.hasError())
+        {
+            //eg range too large after a long outage: can't tell what changed, so drop everything on this chain
+            System.err.println("Transfer log check failed on chain " + chainId + ": " + ethLog.getError().getMessage());
+            for (String contract : contracts) invalidateContract(chainId, contract);
+        }
+        else
+        {
+            Set<String> transferred = new HashSet<>();
+            for (EthLog.LogResult<?> logResult : ethLog.getLogs())
+            {
+                transferred.add(((Log) logResult.get()).getAddress());
+            }
+            for (String contract : transferred) invalidateContract(chainId, contract);
+        }
+
+        lastCheckedBlock.put(chainId, latestBlock);
+    }
+
+    private synchronized Map<Integer, Set<String>> cachedContracts()
+    {
+        Map<Integer, Set<String>> contracts = new HashMap<>();
+        Iterator<Map.Entry<Key, CachedResult>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext())
+        {
+            Map.Entry<Key, CachedResult> entry = iterator.next();
+            if (entry.getValue().isExpired())
+            {
+                iterator.remove();
+                continue;
+            }
+            contracts.computeIfAbsent(entry.getKey().chainId, k -> new HashSet<>()).add(entry.getKey().address);
+        }
+        return contracts;
+    }
+
+    public static class CachedResult
+    {
+        public final long resultTime;
+        public final String result;
+        private final long storedTime;
+
+        CachedResult(long resultTime, String result)
+        {
+            this.resultTime = resultTime;
+            this.result = result;
+            this.storedTime = System.currentTimeMillis();
+        }
+
+        boolean isExpired()
+        {
+            return System.currentTimeMillis() - storedTime > ENTRY_TTL_MS;
+        }
+    }
+
+    private static class Key
+    {
+        final int chainId;
+        final String address;
+        final String attrId;
+        final BigInteger tokenId;
+
+        Key(int chainId, String address, String attrId, BigInteger tokenId)
+        {
+            this.chainId = chainId;
+            this.address = address.toLowerCase();
+            this.attrId = attrId;
+            this.tokenId = tokenId;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return chainId == key.chainId && address.equals(key.address)
+                    && Objects.equals(attrId, key.attrId) && Objects.equals(tokenId, key.tokenId);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(chainId, address, attrId, tokenId);
+        }
+    }
+}
@@ -2,18 +2,13 @@ package com.alphawallet.token.web.Service;
 
 import com.alphawallet.token.entity.SalesOrderMalformed;
 import com.alphawallet.token.tools.Numeric;
-import com.alphawallet.token.tools.ParseMagicLink;
-import org.web3j.crypto.ECKeyPair;
-import org.web3j.crypto.Sign;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
-import static com.alphawallet.token.web.Service.SpawnableLinkGenerator.bytesFromSignature;
 
 public class EdconLinkGenerator {
 
     private static final String contractAddress = "0xF6b8DD8Ba9996bEaE6Ad0eE3481F1E9cF080A9eB";
-    private static ParseMagicLink parseMagicLink = new ParseMagicLink(new CryptoFunctions(), null);
     //TODO set private key & chain id
     private static final BigInteger privateKey = new BigInteger("0", 16);
     private static final int chainId = 100;
@@ -41,29 +36,29 @@ public class EdconLinkGenerator {
 
 
     public static void main(String[] args) throws SalesOrderMalformed {
+        //contract, price, expiry and key are the same for every link, so they're encoded once for the whole run
+        MagicLinkGenerator generator = new MagicLinkGenerator(privateKey, chainId, contractAddress, BigInteger.ZERO, expiry);
         int rounds = 50;
         while(rounds > 0) {
-            new com.alphawallet.token.web.Service.EdconLinkGenerator(date, VIENNA, BLOCKCHAIN_HALL, 1);
+            new com.alphawallet.token.web.Service.EdconLinkGenerator(generator, date, VIENNA, BLOCKCHAIN_HALL, 1);
             rounds--;
         }
     }
 
     private EdconLinkGenerator(
+            MagicLinkGenerator generator,
             String date,
             long city,
             long venue,
             int quantity
-    ) throws SalesOrderMalformed {
+    ) {
         // Set values here
         List<BigInteger> tokens = setTokenIds(date, city, venue, A, quantity);
-        createSpawnableLink(tokens);
+        createSpawnableLink(generator, tokens);
     }
 
-    private void createSpawnableLink(List<BigInteger> tokens) throws SalesOrderMalformed {
-        byte[] message = parseMagicLink.getSpawnableBytes(tokens, contractAddress, BigInteger.ZERO, expiry);
-        byte[] signature = signMagicLink(message);
-        byte[] linkData = ParseMagicLink.generateSpawnableLeadingLinkBytes(tokens, contractAddress, BigInteger.ZERO, expiry);
-        String link = parseMagicLink.completeUniversalLink(chainId, linkData, signature);
+    private void createSpawnableLink(MagicLinkGenerator generator, List<BigInteger> tokens) {
+        String link = generator.createLink(tokens);
         System.out.println(link);
         System.out.println();
     }
@@ -90,10 +85,4 @@ public class EdconLinkGenerator {
         return tokens;
     }
 
-    private byte[] signMagicLink(byte[] signData) {
-        ECKeyPair ecKeyPair  = ECKeyPair.create(privateKey);
-        Sign.SignatureData signatureData = Sign.signMessage(signData, ecKeyPair);
-        return bytesFromSignature(signatureData);
-    }
-
 }
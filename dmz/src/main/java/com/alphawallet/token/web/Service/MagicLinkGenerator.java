@@ -0,0 +1,316 @@
+package com.alphawallet.token.web.Service;
+
+import com.alphawallet.token.entity.EthereumWriteBuffer;
+import com.alphawallet.token.entity.SalesOrderMalformed;
+import com.alphawallet.token.tools.Numeric;
+import com.alphawallet.token.tools.ParseMagicLink;
+
+import org.bouncycastle.asn1.x9.X9ECParameters;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.ec.CustomNamedCurves;
+import org.bouncycastle.crypto.signers.HMacDSAKCalculator;
+import org.bouncycastle.math.ec.ECMultiplier;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointCombMultiplier;
+import org.web3j.crypto.Hash;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds and signs spawnable magic links in bulk, eg for an event drop.
+ *
+ * Everything that's the same for every link - price, expiry, contract and signing key - is encoded once. Each link
+ * only appends its token ids, written with an EthereumWriteBuffer that's reused per thread, and is signed using
+ * the curve's precomputed base point table. Links are signed in parallel and written out in input order, so
+ * memory use stays flat however many links are made.
+ *
+ * Signatures are the same bytes web3j's Sign.signMessage produces (RFC6979 k, low s, v = 27/28), but the
+ * recovery id comes straight from the signing point rather than trial public key recoveries.
+ */
+public class MagicLinkGenerator
+{
+    private static final X9ECParameters CURVE = CustomNamedCurves.getByName("secp256k1");
+    private static final BigInteger HALF_CURVE_ORDER = CURVE.getN().shiftRight(1);
+    private static final int LINKS_PER_TASK = 256;
+
+    public static final String PRIVATE_KEY_ENV = "MAGICLINK_PRIVATE_KEY";
+
+    private final ParseMagicLink parseMagicLink = new ParseMagicLink(new CryptoFunctions(), null);
+    private final ECMultiplier multiplier = new FixedPointCombMultiplier(); //comb table for G is built once and cached on the curve
+    private final BigInteger privateKey;
+    private final int chainId;
+    private final byte[] messagePrefix;
+    private final byte[] linkPrefix;
+    private final ThreadLocal<LinkBuffer> buffers = ThreadLocal.withInitial(LinkBuffer::new);
+
+    public MagicLinkGenerator(BigInteger privateKey, int chainId, String contractAddress, BigInteger priceWei, long expiry) throws SalesOrderMalformed
+    {
+        this.privateKey = privateKey;
+        this.chainId = chainId;
+        List<BigInteger> noTokens = Collections.emptyList();
+        messagePrefix = parseMagicLink.getSpawnableBytes(noTokens, contractAddress, priceWei, expiry);
+        linkPrefix = ParseMagicLink.generateSpawnableLeadingLinkBytes(noTokens, contractAddress, priceWei, expiry);
+    }
+
+    /**
+     * @return universal link for the token ids; safe to call from any thread
+     */
+    public String createLink(List<BigInteger> tokenIds)
+    {
+        LinkBuffer buffer = buffers.get();
+        byte[] message = buffer.build(messagePrefix, tokenIds);
+        byte[] linkData = buffer.build(linkPrefix, tokenIds);
+        return parseMagicLink.completeUniversalLink(chainId, linkData, sign(message));
+    }
+
+    /**
+     * Create links for every token id read from the input, one link per line of output
+     *
+     * @param input token ids; see TokenIdReader for the format
+     * @param output links are written here in input order
+     * @param tokensPerLink token ids in each link
+     * @param threads signing threads
+     * @return number of links written
+     */
+    public long generate(BufferedReader input, Writer output, int tokensPerLink, int threads) throws IOException, InterruptedException, ExecutionException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Deque<Future<List<String>>> pending = new ArrayDeque<>();
+        long count = 0;
+
+        try
+        {
+            TokenIdReader tokenIds = new TokenIdReader(input);
+            List<List<BigInteger>> task = new ArrayList<>();
+            List<BigInteger> link = new ArrayList<>();
+            BigInteger tokenId;
+            while ((tokenId = tokenIds.next()) != null)
+            {
+                link.add(tokenId);
+                if (link.size() == tokensPerLink)
+                {
+                    task.add(link);
+                    link = new ArrayList<>();
+                }
+                if (task.size() == LINKS_PER_TASK)
+                {
+                    pending.add(submit(executor, task));
+                    task = new ArrayList<>();
+                    //don't read further ahead than the signers can use
+                    while (pending.size() > threads * 2) count += write(pending.poll(), output);
+                }
+            }
+
+            if (!link.isEmpty()) task.add(link);
+            if (!task.isEmpty()) pending.add(submit(executor, task));
+            while (!pending.isEmpty()) count += write(pending.poll(), output);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        output.flush();
+        return count;
+    }
+
+    private Future<List<String>> submit(ExecutorService executor, List<List<BigInteger>> task)
+    {
+        return executor.submit(() -> {
+            List<String> links = new ArrayList<>(task.size());
+            for (List<BigInteger> tokenIds : task)
+            {
+                links.add(createLink(tokenIds));
+            }
+            return links;
+        });
+    }
+
+    private static int write(Future<List<String>> task, Writer output) throws IOException, InterruptedException, ExecutionException
+    {
+        List<String> links = task.get();
+        for (String link : links)
+        {
+            output.write(link);
+            output.write('\n');
+        }
+        return links.size();
+    }
+
+    /**
+     * ECDSA over secp256k1 of keccak256(message), as r | s | v
+     */
+    byte[] sign(byte[] message)
+    {
+        byte[] hash = Hash.sha3(message);
+        BigInteger n = CURVE.getN();
+        BigInteger e = new BigInteger(1, hash);
+        HMacDSAKCalculator kCalculator = new HMacDSAKCalculator(new SHA256Digest());
+        kCalculator.init(n, privateKey, hash);
+
+        while (true)
+        {
+            BigInteger k = kCalculator.nextK();
+            ECPoint p = multiplier.multiply(CURVE.getG(), k).normalize();
+            BigInteger x = p.getAffineXCoord().toBigInteger();
+            BigInteger r = x.mod(n);
+            if (r.signum() == 0) continue;
+            BigInteger s = k.modInverse(n).multiply(e.add(privateKey.multiply(r))).mod(n);
+            if (s.signum() == 0) continue;
+
+            int recId = p.getAffineYCoord().toBigInteger().testBit(0) ? 1 : 0;
+            if (x.compareTo(n) >= 0) recId += 2;
+            if (s.compareTo(HALF_CURVE_ORDER) > 0)
+            {
+                //canonical low s; the matching point is -p, which has the opposite y parity
+                s = n.subtract(s);
+                recId ^= 1;
+            }
+
+            byte[] signature = new byte[65];
+            System.arraycopy(Numeric.toBytesPadded(r, 32), 0, signature, 0, 32);
+            System.arraycopy(Numeric.toBytesPadded(s, 32), 0, signature, 32, 32);
+            signature[64] = (byte) (27 + recId);
+            return signature;
+        }
+    }
+
+    private static class LinkBuffer
+    {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final EthereumWriteBuffer writer = new EthereumWriteBuffer(bytes);
+
+        byte[] build(byte[] prefix, List<BigInteger> tokenIds)
+        {
+            try
+            {
+                bytes.reset();
+                writer.write(prefix);
+                writer.writeTokenIds(tokenIds);
+                writer.flush();
+                return bytes.toByteArray();
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e); //not expected writing to memory
+            }
+        }
+    }
+
+    /**
+     * Reads token ids from lines of the form
+     *
+     *   tokenId [count [step]]
+     *
+     * giving count ids starting at tokenId, each step apart (default 1). Values are decimal, or hex with 0x; count
+     * must be at least 1. Blank lines and lines starting with # are skipped.
+     */
+    static class TokenIdReader
+    {
+        private final BufferedReader reader;
+        private BigInteger nextId;
+        private BigInteger step;
+        private long remaining;
+
+        TokenIdReader(BufferedReader reader)
+        {
+            this.reader = reader;
+        }
+
+        /**
+         * @return next token id, or null at the end of the input
+         */
+        BigInteger next() throws IOException
+        {
+            while (remaining == 0)
+            {
+                String line = reader.readLine();
+                if (line == null) return null;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                String[] fields = line.split("\\s+");
+                nextId = parseValue(fields[0]);
+                remaining = fields.length > 1 ? Long.parseLong(fields[1]) : 1;
+                if (remaining <= 0) throw new IllegalArgumentException("Token count must be at least 1: " + line);
+                step = fields.length > 2 ? parseValue(fields[2]) : BigInteger.ONE;
+            }
+
+            BigInteger tokenId = nextId;
+            nextId = nextId.add(step);
+            remaining--;
+            return tokenId;
+        }
+
+        private static BigInteger parseValue(String value)
+        {
+            return value.startsWith("0x") ? new BigInteger(Numeric.cleanHexPrefix(value), 16) : new BigInteger(value);
+        }
+    }
+
+    /**
+     * MagicLinkGenerator --input ids.txt --contract 0x.. --chain 100 --expiry 1700000000
+     *                    [--output links.txt] [--price wei] [--tokensPerLink 1] [--threads cores]
+     *
+     * The signing key is read from the MAGICLINK_PRIVATE_KEY environment variable, so it doesn't appear in the
+     * process list or shell history. Links go to stdout if there's no --output.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2)
+        {
+            options.put(args[i], args[i + 1]);
+        }
+
+        String key = System.getenv(PRIVATE_KEY_ENV);
+        if (key == null || !options.containsKey("--input") || !options.containsKey("--contract")
+                || !options.containsKey("--chain") || !options.containsKey("--expiry"))
+        {
+            System.err.println("Usage: MagicLinkGenerator --input <file> --contract <address> --chain <id> --expiry <unix time>"
+                    + " [--output <file>] [--price <wei>] [--tokensPerLink <n>] [--threads <n>]");
+            System.err.println("Signing key is read from " + PRIVATE_KEY_ENV);
+            System.exit(1);
+        }
+
+        MagicLinkGenerator generator = new MagicLinkGenerator(
+                new BigInteger(Numeric.cleanHexPrefix(key), 16),
+                Integer.parseInt(options.get("--chain")),
+                options.get("--contract"),
+                new BigInteger(options.containsKey("--price") ? options.get("--price") : "0"),
+                Long.parseLong(options.get("--expiry")));
+
+        int tokensPerLink = Integer.parseInt(options.containsKey("--tokensPerLink") ? options.get("--tokensPerLink") : "1");
+        int threads = options.containsKey("--threads") ? Integer.parseInt(options.get("--threads")) : Runtime.getRuntime().availableProcessors();
+
+        long startTime = System.currentTimeMillis();
+        long count;
+        try (BufferedReader input = new BufferedReader(new FileReader(options.get("--input")));
+             Writer output = new BufferedWriter(options.containsKey("--output") ? new FileWriter(options.get("--output")) : new OutputStreamWriter(System.out)))
+        {
+            count = generator.generate(input, output, tokensPerLink, threads);
+        }
+
+        System.err.println("Generated " + count + " links in " + (System.currentTimeMillis() - startTime) + "ms");
+    }
+}
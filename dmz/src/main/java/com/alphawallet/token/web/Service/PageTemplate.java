@@ -0,0 +1,128 @@
+package com.alphawallet.token.web.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A text template pre-split into literal segments and argument slots.
+ *
+ * Accepts the subset of {@link String#format} syntax our templates use ({@code %1$s}, {@code %s}, {@code %%}
+ * and {@code %n}) so existing templates render identically, but the template is parsed once and each render
+ * is a single pass into an exactly sized buffer.
+ */
+public class PageTemplate
+{
+    private final String[] literals; //one more literal than slots: literal, slot, literal, ... literal
+    private final int[] argIndices;
+    private final int literalLength;
+
+    private PageTemplate(List<String> literals, List<Integer> argIndices)
+    {
+        this.literals = literals.toArray(new String[0]);
+        this.argIndices = new int[argIndices.size()];
+        for (int i = 0; i < this.argIndices.length; i++) this.argIndices[i] = argIndices.get(i);
+        int length = 0;
+        for (String literal : this.literals) length += literal.length();
+        this.literalLength = length;
+    }
+
+    /**
+     * Load and compile a template from the classpath. Reads the whole resource; doesn't rely on available()
+     * @param resourceName
+     * @return compiled template
+     * @throws IOException if the resource is missing or unreadable
+     */
+    public static PageTemplate fromResource(String resourceName) throws IOException
+    {
+        try (InputStream in = PageTemplate.class.getClassLoader().getResourceAsStream(resourceName))
+        {
+            if (in == null) throw new IOException("Template not found: " + resourceName);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = in.read(buffer)) != -1)
+            {
+                out.write(buffer, 0, len);
+            }
+            return compile(new String(out.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    public static PageTemplate compile(String template)
+    {
+        List<String> literals = new ArrayList<>();
+        List<Integer> argIndices = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int nextOrdinary = 0;
+        int i = 0;
+
+        while (i < template.length())
+        {
+            char c = template.charAt(i++);
+            if (c != '%')
+            {
+                literal.append(c);
+                continue;
+            }
+
+            if (i >= template.length()) throw new IllegalArgumentException("Dangling '%' at end of template");
+            char next = template.charAt(i);
+            if (next == '%')
+            {
+                literal.append('%');
+                i++;
+            }
+            else if (next == 'n')
+            {
+                literal.append(System.lineSeparator());
+                i++;
+            }
+            else if (next == 's')
+            {
+                argIndices.add(nextOrdinary++);
+                literals.add(literal.toString());
+                literal.setLength(0);
+                i++;
+            }
+            else
+            {
+                int end = i;
+                while (end < template.length() && Character.isDigit(template.charAt(end))) end++;
+                if (end == i || !template.startsWith("$s", end))
+                {
+                    throw new IllegalArgumentException("Unsupported format specifier at index " + (i - 1));
+                }
+                argIndices.add(Integer.parseInt(template.substring(i, end)) - 1);
+                literals.add(literal.toString());
+                literal.setLength(0);
+                i = end + 2;
+            }
+        }
+
+        literals.add(literal.toString());
+        return new PageTemplate(literals, argIndices);
+    }
+
+    public String render(Object... args)
+    {
+        String[] values = new String[argIndices.length];
+        int length = literalLength;
+        for (int i = 0; i < argIndices.length; i++)
+        {
+            values[i] = String.valueOf(args[argIndices[i]]);
+            length += values[i].length();
+        }
+
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < values.length; i++)
+        {
+            sb.append(literals[i]).append(values[i]);
+        }
+        sb.append(literals[literals.length - 1]);
+        return sb.toString();
+    }
+}
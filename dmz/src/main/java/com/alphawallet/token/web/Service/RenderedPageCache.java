@@ -0,0 +1,67 @@
+package com.alphawallet.token.web.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Short lived LRU cache of fully rendered magic link pages, keyed by (chainId, link, availability).
+ *
+ * Link click bursts tend to hit the same few links; including availability in the key means a page is never
+ * served with a stale available/unavailable/expired status.
+ */
+public class RenderedPageCache
+{
+    private final int maxPages;
+    private final long ttlMs;
+
+    private final Map<String, Page> pages;
+
+    public RenderedPageCache(int maxPages, long ttlMs)
+    {
+        this.maxPages = maxPages;
+        this.ttlMs = ttlMs;
+        this.pages = new LinkedHashMap<String, Page>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Page> eldest)
+            {
+                return size() > RenderedPageCache.this.maxPages;
+            }
+        };
+    }
+
+    public synchronized String get(int chainId, String universalLink, String available)
+    {
+        String key = key(chainId, universalLink, available);
+        Page page = pages.get(key);
+        if (page == null) return null;
+        if (System.currentTimeMillis() - page.renderTime > ttlMs)
+        {
+            pages.remove(key);
+            return null;
+        }
+        return page.html;
+    }
+
+    public synchronized void put(int chainId, String universalLink, String available, String html)
+    {
+        pages.put(key(chainId, universalLink, available), new Page(html));
+    }
+
+    private static String key(int chainId, String universalLink, String available)
+    {
+        return chainId + "-" + available + "-" + universalLink;
+    }
+
+    private static class Page
+    {
+        final String html;
+        final long renderTime;
+
+        Page(String html)
+        {
+            this.html = html;
+            this.renderTime = System.currentTimeMillis();
+        }
+    }
+}
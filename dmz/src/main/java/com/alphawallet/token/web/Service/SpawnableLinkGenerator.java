@@ -2,8 +2,6 @@ package com.alphawallet.token.web.Service;
 
 import com.alphawallet.token.entity.SalesOrderMalformed;
 import com.alphawallet.token.tools.Numeric;
-import com.alphawallet.token.tools.ParseMagicLink;
-import org.web3j.crypto.ECKeyPair;
 import org.web3j.crypto.Sign;
 import java.math.BigInteger;
 import java.util.ArrayList;
@@ -14,7 +12,6 @@ class SpawnableLinkGenerator {
 
     private static List<BigInteger> tokens = new ArrayList<>();
     private static final String contractAddress = "0x0f43923667843bccafd12a5c001a7838fa5fc8ab";
-    private static ParseMagicLink parseMagicLink = new ParseMagicLink(new CryptoFunctions(), null);
     //TODO set private key & chain id
     private static final BigInteger privateKey = BigInteger.TEN;
     private static final int chainId = 100;
@@ -88,10 +85,8 @@ class SpawnableLinkGenerator {
     }
 
     private void createSpawnableLink() throws SalesOrderMalformed {
-        byte[] message = parseMagicLink.getSpawnableBytes(tokens, contractAddress, BigInteger.ZERO, expiry);
-        byte[] signature = signMagicLink(message);
-        byte[] linkData = ParseMagicLink.generateSpawnableLeadingLinkBytes(tokens, contractAddress, BigInteger.ZERO, expiry);
-        String link = parseMagicLink.completeUniversalLink(chainId, linkData, signature);
+        //for bulk drops use MagicLinkGenerator's CLI with a token id file
+        String link = new MagicLinkGenerator(privateKey, chainId, contractAddress, BigInteger.ZERO, expiry).createLink(tokens);
         System.out.println(link);
     }
 
@@ -116,12 +111,6 @@ class SpawnableLinkGenerator {
         }
     }
 
-    private byte[] signMagicLink(byte[] signData) {
-        ECKeyPair ecKeyPair  = ECKeyPair.create(privateKey);
-        Sign.SignatureData signatureData = Sign.signMessage(signData, ecKeyPair);
-        return bytesFromSignature(signatureData);
-    }
-
     //TODO this function should be in the libs module not here or in the app
     static byte[] bytesFromSignature(Sign.SignatureData signature)
     {
@@ -0,0 +1,318 @@
+package com.alphawallet.token.web.Service;
+
+import com.alphawallet.token.entity.ContractInfo;
+import com.alphawallet.token.entity.MagicLinkInfo;
+import com.alphawallet.token.tools.TokenDefinition;
+
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Holds every parsed TokenScript in the repository dir, keyed by (chainId, holding contract address).
+ *
+ * Each .tsml file is parsed once; the lookup index is an immutable snapshot that is swapped whenever
+ * the {@link WatchService} reports a script being added, changed or removed, so readers never lock
+ * and never see a half-built map. Only the file that changed is re-parsed.
+ */
+public class TokenDefinitionRegistry
+{
+    private static final String TOKENSCRIPT_EXTENSION = ".tsml";
+
+    private final Locale locale;
+    private final Map<Path, ParsedScript> scripts = new ConcurrentHashMap<>();
+    private volatile Map<Integer, Map<String, ParsedScript>> index = Collections.emptyMap();
+    private WatchService watcher;
+    private Thread watchThread;
+
+    public TokenDefinitionRegistry(Locale locale)
+    {
+        this.locale = locale;
+    }
+
+    /**
+     * Fetch the parsed definition for a holding contract
+     * @param chainId
+     * @param contractAddress
+     * @return the definition, or null if no script in the repo covers this contract
+     */
+    public TokenDefinition getDefinition(int chainId, String contractAddress)
+    {
+        Map<String, ParsedScript> networkScripts = index.get(chainId);
+        if (networkScripts == null || contractAddress == null) return null;
+        ParsedScript script = networkScripts.get(contractAddress.toLowerCase());
+        return script != null ? script.definition : null;
+    }
+
+    public boolean isEmpty()
+    {
+        return index.isEmpty();
+    }
+
+    /**
+     * Walk the repository and parse every readable TokenScript. Parse errors are rethrown so the
+     * caller can refuse to start on a broken repo, as before.
+     * @param repoDir
+     * @throws IOException
+     */
+    public synchronized void loadAll(Path repoDir) throws IOException
+    {
+        try (Stream<Path> dirStream = Files.walk(repoDir))
+        {
+            dirStream.filter(TokenDefinitionRegistry::isTokenScript)
+                    .filter(Files::isRegularFile)
+                    .filter(Files::isReadable)
+                    .forEach(path -> {
+                        try
+                        {
+                            scripts.put(path.toAbsolutePath(), parse(path));
+                        }
+                        catch (IOException | SAXException e)
+                        {
+                            throw new RuntimeException(e); // make it safe to use in stream
+                        }
+                    });
+        }
+
+        rebuildIndex();
+    }
+
+    /**
+     * Start watching the repository dir (and all sub dirs) for script changes on a daemon thread
+     * @param repoDir
+     * @throws IOException
+     */
+    public synchronized void startWatching(Path repoDir) throws IOException
+    {
+        if (watchThread != null) return;
+        watcher = FileSystems.getDefault().newWatchService();
+        registerTree(repoDir);
+
+        watchThread = new Thread(this::watchLoop, "tokenscript-watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    public synchronized void stopWatching()
+    {
+        if (watcher == null) return;
+        try
+        {
+            watcher.close();
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+        watcher = null;
+        watchThread = null;
+    }
+
+    public void forEach(BiConsumer<Integer, Map<String, String>> consumer)
+    {
+        index.forEach((chainId, addrMap) -> {
+            Map<String, String> paths = new TreeMap<>();
+            addrMap.forEach((addr, script) -> paths.put(addr, script.path.toString()));
+            consumer.accept(chainId, paths);
+        });
+    }
+
+    private void watchLoop()
+    {
+        WatchService service = watcher;
+        while (true)
+        {
+            WatchKey key;
+            try
+            {
+                key = service.take();
+            }
+            catch (InterruptedException | ClosedWatchServiceException e)
+            {
+                return;
+            }
+
+            Path dir = (Path) key.watchable();
+            boolean changed = false;
+            for (WatchEvent<?> event : key.pollEvents())
+            {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                {
+                    changed |= rescan(dir);
+                    continue;
+                }
+
+                Path path = dir.resolve((Path) event.context()).toAbsolutePath();
+                if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE)
+                {
+                    changed |= removeScripts(path);
+                }
+                else if (Files.isDirectory(path))
+                {
+                    //new sub dir: watch it and pick up anything copied in with it
+                    try
+                    {
+                        registerTree(path);
+                    }
+                    catch (IOException e)
+                    {
+                        e.printStackTrace();
+                    }
+                    changed |= rescan(path);
+                }
+                else if (isTokenScript(path))
+                {
+                    changed |= updateScript(path);
+                }
+            }
+
+            if (changed)
+            {
+                rebuildIndex();
+                printContracts();
+            }
+
+            if (!key.reset())
+            {
+                //dir is gone; its scripts were removed by the DELETE event on the parent
+                if (removeScripts(dir.toAbsolutePath())) rebuildIndex();
+            }
+        }
+    }
+
+    private boolean updateScript(Path path)
+    {
+        if (!Files.isRegularFile(path) || !Files.isReadable(path)) return false;
+        try
+        {
+            scripts.put(path, parse(path));
+            System.out.println("Loaded TokenScript: " + path);
+            return true;
+        }
+        catch (IOException | SAXException e)
+        {
+            //most likely a partially written file, keep serving the previous version until the next MODIFY event
+            System.err.println("Unable to parse TokenScript " + path + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean removeScripts(Path path)
+    {
+        boolean removed = scripts.keySet().removeIf(p -> p.startsWith(path));
+        if (removed) System.out.println("Removed TokenScript(s): " + path);
+        return removed;
+    }
+
+    private boolean rescan(Path dir)
+    {
+        if (!Files.isDirectory(dir)) return false;
+        boolean changed = false;
+        try (Stream<Path> dirStream = Files.walk(dir))
+        {
+            Path[] paths = dirStream.filter(TokenDefinitionRegistry::isTokenScript).toArray(Path[]::new);
+            for (Path path : paths)
+            {
+                changed |= updateScript(path.toAbsolutePath());
+            }
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+        return changed;
+    }
+
+    private void registerTree(Path root) throws IOException
+    {
+        try (Stream<Path> dirStream = Files.walk(root))
+        {
+            Path[] dirs = dirStream.filter(Files::isDirectory).toArray(Path[]::new);
+            for (Path dir : dirs)
+            {
+                dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        }
+    }
+
+    /**
+     * Rebuild the lookup snapshot from the per-file parse results. No parsing happens here.
+     * Where two scripts claim the same contract the last by path order wins, matching the old startup behaviour.
+     */
+    private synchronized void rebuildIndex()
+    {
+        Map<Integer, Map<String, ParsedScript>> newIndex = new HashMap<>();
+        new TreeMap<>(scripts).forEach((path, script) -> {
+            for (Map.Entry<Integer, List<String>> entry : script.addresses.entrySet())
+            {
+                Map<String, ParsedScript> networkScripts = newIndex.computeIfAbsent(entry.getKey(), k -> new HashMap<>());
+                for (String address : entry.getValue())
+                {
+                    networkScripts.put(address.toLowerCase(), script);
+                }
+            }
+        });
+
+        newIndex.replaceAll((chainId, addrMap) -> Collections.unmodifiableMap(addrMap));
+        index = Collections.unmodifiableMap(newIndex);
+    }
+
+    public void printContracts()
+    {
+        System.out.println("Serving an XML repo with the following contracts:");
+        forEach((chainId, addrMap) -> {
+            System.out.println("Network ID: " + MagicLinkInfo.getNetworkNameById(chainId) + "(" + chainId + ")");
+            addrMap.forEach((addr, path) -> System.out.println(addr + ":" + path));
+            System.out.println(" ------------");
+        });
+    }
+
+    private ParsedScript parse(Path path) throws IOException, SAXException
+    {
+        try (InputStream input = Files.newInputStream(path))
+        {
+            TokenDefinition definition = new TokenDefinition(input, locale, null);
+            ContractInfo holdingContracts = definition.contracts.get(definition.holdingToken);
+            Map<Integer, List<String>> addresses = holdingContracts != null ? holdingContracts.addresses : Collections.emptyMap();
+            return new ParsedScript(path.toAbsolutePath(), definition, addresses);
+        }
+    }
+
+    private static boolean isTokenScript(Path path)
+    {
+        return path.toString().toLowerCase().endsWith(TOKENSCRIPT_EXTENSION);
+    }
+
+    private static class ParsedScript
+    {
+        final Path path;
+        final TokenDefinition definition;
+        final Map<Integer, List<String>> addresses;
+
+        ParsedScript(Path path, TokenDefinition definition, Map<Integer, List<String>> addresses)
+        {
+            this.path = path;
+            this.definition = definition;
+            this.addresses = addresses;
+        }
+    }
+}
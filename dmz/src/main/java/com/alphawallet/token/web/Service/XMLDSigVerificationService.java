@@ -0,0 +1,132 @@
+package com.alphawallet.token.web.Service;
+
+import com.alphawallet.token.entity.XMLDsigVerificationResult;
+import com.alphawallet.token.tools.Numeric;
+import com.alphawallet.token.tools.XMLDSigVerifier;
+
+import java.io.ByteArrayInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Verifies TokenScript signatures, caching results by the SHA-256 of the file content.
+ *
+ * Batches are verified in parallel on a bounded pool sized to the machine. Certificate chain validation
+ * results are shared across calls inside {@link XMLDSigVerifier}, so a batch of scripts signed by the same
+ * key only builds the PKIX path once.
+ *
+ * Passes and final failures (eg a bad signature or an untrusted issuer) are cached for RESULT_TTL_MS; other
+ * failures, which may pass on a retry, only for FAILURE_TTL_MS. Callers each get their own copy of a result.
+ */
+public class XMLDSigVerificationService
+{
+    private static final int MAX_CACHED_RESULTS = 4096;
+    private static final long RESULT_TTL_MS = 60 * 60 * 1000;
+    private static final long FAILURE_TTL_MS = 60 * 1000;
+
+    private final ExecutorService verifyExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+    private final Map<String, CachedVerification> results = new LinkedHashMap<String, CachedVerification>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedVerification> eldest)
+        {
+            return size() > MAX_CACHED_RESULTS;
+        }
+    };
+
+    public XMLDsigVerificationResult verify(byte[] content)
+    {
+        String contentHash = contentHash(content);
+        XMLDsigVerificationResult result = getCachedResult(contentHash);
+        if (result == null)
+        {
+            result = new XMLDSigVerifier().VerifyXMLDSig(new ByteArrayInputStream(content));
+            putCachedResult(contentHash, result);
+        }
+        return copyOf(result);
+    }
+
+    /**
+     * Verify several files concurrently
+     * @param contents file contents
+     * @return results, in the same order as the contents
+     */
+    public List<XMLDsigVerificationResult> verifyAll(List<byte[]> contents)
+    {
+        List<CompletableFuture<XMLDsigVerificationResult>> pending = new ArrayList<>();
+        for (byte[] content : contents)
+        {
+            pending.add(CompletableFuture.supplyAsync(() -> verify(content), verifyExecutor));
+        }
+
+        List<XMLDsigVerificationResult> verified = new ArrayList<>();
+        for (CompletableFuture<XMLDsigVerificationResult> result : pending)
+        {
+            verified.add(result.join()); //VerifyXMLDSig reports failure in the result rather than throwing
+        }
+        return verified;
+    }
+
+    private synchronized XMLDsigVerificationResult getCachedResult(String contentHash)
+    {
+        CachedVerification cached = results.get(contentHash);
+        if (cached == null) return null;
+        long ttl = (cached.result.isValid || cached.result.failureIsFinal) ? RESULT_TTL_MS : FAILURE_TTL_MS;
+        if (System.currentTimeMillis() - cached.verifyTime > ttl)
+        {
+            results.remove(contentHash);
+            return null;
+        }
+        return cached.result;
+    }
+
+    private synchronized void putCachedResult(String contentHash, XMLDsigVerificationResult result)
+    {
+        results.put(contentHash, new CachedVerification(result));
+    }
+
+    private static XMLDsigVerificationResult copyOf(XMLDsigVerificationResult result)
+    {
+        XMLDsigVerificationResult copy = new XMLDsigVerificationResult();
+        copy.isValid = result.isValid;
+        copy.keyName = result.keyName;
+        copy.issuerPrincipal = result.issuerPrincipal;
+        copy.subjectPrincipal = result.subjectPrincipal;
+        copy.keyType = result.keyType;
+        copy.failureReason = result.failureReason;
+        copy.failureIsFinal = result.failureIsFinal;
+        return copy;
+    }
+
+    private static String contentHash(byte[] content)
+    {
+        try
+        {
+            return Numeric.toHexString(MessageDigest.getInstance("SHA-256").digest(content));
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e); //SHA-256 is always available
+        }
+    }
+
+    private static class CachedVerification
+    {
+        final XMLDsigVerificationResult result;
+        final long verifyTime;
+
+        CachedVerification(XMLDsigVerificationResult result)
+        {
+            this.result = result;
+            this.verifyTime = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.alphawallet.token.web.Service;
+
+import com.alphawallet.token.tools.ParseMagicLink;
+
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.crypto.Sign;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Links per second per core for MagicLinkGenerator, against the per-link flow of the old generator scripts
+ * (getSpawnableBytes, ECKeyPair + Sign.signMessage, generateSpawnableLeadingLinkBytes, completeUniversalLink).
+ *
+ * gradle :dmz:magicLinkBenchmark [-Pargs="links threads"]
+ *
+ * Each case is warmed up before it is timed; the task runs with a fixed heap so the numbers are steady.
+ * The key is a well known test key, never used for real links.
+ */
+public class MagicLinkBenchmark
+{
+    private static final BigInteger KEY = new BigInteger("4c0883a69102937d6231471b5dbb6204fe5129617082792ae468d01a3f362318", 16);
+    private static final String CONTRACT = "0x0f43923667843bccafd12a5c001a7838fa5fc8ab";
+    private static final int CHAIN_ID = 100;
+    private static final long EXPIRY = 1893456000L;
+    private static final BigInteger FIRST_TOKEN = new BigInteger("3230323430373036323130303030302b303330300105555341415500010100", 16);
+
+    public static void main(String[] args) throws Exception
+    {
+        int links = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        baseline(links / 4); //warm up
+        report("old per-link flow, 1 thread", links, 1, baseline(links));
+
+        MagicLinkGenerator generator = new MagicLinkGenerator(KEY, CHAIN_ID, CONTRACT, BigInteger.ZERO, EXPIRY);
+        generated(generator, links / 4, 1); //warm up
+        report("MagicLinkGenerator, 1 thread", links, 1, generated(generator, links, 1));
+        report("MagicLinkGenerator, " + threads + " threads", links, threads, generated(generator, links, threads));
+    }
+
+    private static long baseline(int links) throws Exception
+    {
+        ParseMagicLink parser = new ParseMagicLink(new CryptoFunctions(), null);
+        long startTime = System.nanoTime();
+        for (int i = 0; i < links; i++)
+        {
+            List<BigInteger> tokens = Collections.singletonList(FIRST_TOKEN.add(BigInteger.valueOf(i << 8)));
+            byte[] message = parser.getSpawnableBytes(tokens, CONTRACT, BigInteger.ZERO, EXPIRY);
+            Sign.SignatureData sig = Sign.signMessage(message, ECKeyPair.create(KEY));
+            byte[] signature = SpawnableLinkGenerator.bytesFromSignature(sig);
+            byte[] linkData = ParseMagicLink.generateSpawnableLeadingLinkBytes(tokens, CONTRACT, BigInteger.ZERO, EXPIRY);
+            parser.completeUniversalLink(CHAIN_ID, linkData, signature);
+        }
+        return System.nanoTime() - startTime;
+    }
+
+    private static long generated(MagicLinkGenerator generator, int links, int threads) throws Exception
+    {
+        String input = "0x" + FIRST_TOKEN.toString(16) + " " + links + " 0x100\n";
+        long startTime = System.nanoTime();
+        generator.generate(new BufferedReader(new StringReader(input)), new NullWriter(), 1, threads);
+        return System.nanoTime() - startTime;
+    }
+
+    private static void report(String name, int links, int threads, long elapsedNanos)
+    {
+        double perSecond = links / (elapsedNanos / 1e9);
+        System.out.printf("%-40s %10.0f links/s %10.0f links/s/core%n", name, perSecond, perSecond / threads);
+    }
+
+    private static class NullWriter extends Writer
+    {
+        @Override
+        public void write(char[] cbuf, int off, int len) { }
+
+        @Override
+        public void write(String str) { }
+
+        @Override
+        public void flush() { }
+
+        @Override
+        public void close() { }
+    }
+}
@@ -0,0 +1,126 @@
+package com.alphawallet.token.web.Service;
+
+import com.alphawallet.token.tools.ParseMagicLink;
+
+import org.junit.Test;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.crypto.Sign;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class MagicLinkGeneratorTest
+{
+    private static final BigInteger CURVE_ORDER = new BigInteger("fffffffffffffffffffffffffffffffebaaedce6af48a03bbfd25e8cd0364141", 16);
+    private static final String CONTRACT = "0x0f43923667843bccafd12a5c001a7838fa5fc8ab";
+    private static final int CHAIN_ID = 100;
+    private static final long EXPIRY = 1893456000L;
+
+    private final Random random = new Random(4242); //fixed seed, so a failure can be reproduced
+
+    @Test
+    public void signMatchesWeb3j() throws Exception
+    {
+        for (int i = 0; i < 500; i++)
+        {
+            BigInteger key = randomKey();
+            byte[] message = new byte[random.nextInt(200)];
+            random.nextBytes(message);
+
+            MagicLinkGenerator generator = new MagicLinkGenerator(key, CHAIN_ID, CONTRACT, BigInteger.ZERO, EXPIRY);
+            byte[] expected = SpawnableLinkGenerator.bytesFromSignature(Sign.signMessage(message, ECKeyPair.create(key)));
+            assertArrayEquals("key " + key.toString(16) + " message " + Arrays.toString(message), expected, generator.sign(message));
+        }
+    }
+
+    @Test
+    public void createLinkMatchesPerLinkFlow() throws Exception
+    {
+        for (int i = 0; i < 100; i++)
+        {
+            BigInteger key = randomKey();
+            BigInteger price = BigInteger.valueOf(random.nextInt(1000000)).multiply(BigInteger.TEN.pow(12));
+            List<BigInteger> tokenIds = new ArrayList<>();
+            int count = 1 + random.nextInt(4);
+            for (int j = 0; j < count; j++)
+            {
+                tokenIds.add(new BigInteger(256, random));
+            }
+
+            MagicLinkGenerator generator = new MagicLinkGenerator(key, CHAIN_ID, CONTRACT, price, EXPIRY);
+            assertEquals(perLinkFlow(key, tokenIds, price), generator.createLink(tokenIds));
+        }
+    }
+
+    @Test
+    public void generateWritesLinksInInputOrder() throws Exception
+    {
+        BigInteger key = randomKey();
+        MagicLinkGenerator generator = new MagicLinkGenerator(key, CHAIN_ID, CONTRACT, BigInteger.ZERO, EXPIRY);
+        //enough links for several tasks per thread, and a last link with a single token
+        String input = "# drop\n\n0x100 1200 0x10\n5\n";
+        StringWriter output = new StringWriter();
+
+        long count = generator.generate(new BufferedReader(new StringReader(input)), output, 2, 4);
+
+        List<BigInteger> tokenIds = new ArrayList<>();
+        for (int i = 0; i < 1200; i++)
+        {
+            tokenIds.add(BigInteger.valueOf(0x100 + i * 0x10));
+        }
+        tokenIds.add(BigInteger.valueOf(5));
+
+        String[] links = output.toString().split("\n");
+        assertEquals(601, count);
+        assertEquals(601, links.length);
+        for (int i = 0; i < links.length; i++)
+        {
+            List<BigInteger> linkTokens = tokenIds.subList(i * 2, Math.min(i * 2 + 2, tokenIds.size()));
+            assertEquals(generator.createLink(linkTokens), links[i]);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeTokenCountIsRejected() throws Exception
+    {
+        new MagicLinkGenerator.TokenIdReader(new BufferedReader(new StringReader("0x100 -1\n"))).next();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroTokenCountIsRejected() throws Exception
+    {
+        new MagicLinkGenerator.TokenIdReader(new BufferedReader(new StringReader("0x100 0\n5\n"))).next();
+    }
+
+    /**
+     * The link as the old generator scripts made it, one step at a time
+     */
+    private static String perLinkFlow(BigInteger key, List<BigInteger> tokenIds, BigInteger price) throws Exception
+    {
+        ParseMagicLink parser = new ParseMagicLink(new CryptoFunctions(), null);
+        byte[] message = parser.getSpawnableBytes(tokenIds, CONTRACT, price, EXPIRY);
+        byte[] signature = SpawnableLinkGenerator.bytesFromSignature(Sign.signMessage(message, ECKeyPair.create(key)));
+        byte[] linkData = ParseMagicLink.generateSpawnableLeadingLinkBytes(tokenIds, CONTRACT, price, EXPIRY);
+        return parser.completeUniversalLink(CHAIN_ID, linkData, signature);
+    }
+
+    private BigInteger randomKey()
+    {
+        BigInteger key;
+        do
+        {
+            key = new BigInteger(256, random);
+        }
+        while (key.signum() == 0 || key.compareTo(CURVE_ORDER) >= 0);
+        return key;
+    }
+}
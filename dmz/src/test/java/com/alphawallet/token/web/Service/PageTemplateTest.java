@@ -0,0 +1,78 @@
+package com.alphawallet.token.web.Service;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class PageTemplateTest
+{
+    //values that would be special to a formatter if they were ever treated as part of the template
+    private static final Object[] ARGS = {
+            "title", "%s", "100%", "$1", "%1$s", "", null, "line\nbreak", "é中😀", "<b>bold</b>",
+            "11", "12", "13", "14", "15", "16", "17"
+    };
+
+    @Test
+    public void realTemplatesMatchStringFormat() throws IOException
+    {
+        for (String template : new String[] { "templates/tokenscriptTemplate.html", "templates/token_inject.js.tokenscript" })
+        {
+            String source = readResource(template);
+            assertEquals(template, String.format(source, ARGS), PageTemplate.fromResource(template).render(ARGS));
+        }
+    }
+
+    @Test
+    public void escapesMatchStringFormat()
+    {
+        String[] templates = {
+                "%s and %s",
+                "%2$s before %1$s",
+                "%s %1$s %s %2$s", //ordinary slots count separately from positional ones
+                "100%% of %s",
+                "%%s is not a slot",
+                "%%%s%%",
+                "first%nsecond",
+                "%10$s%11$s",
+                "no slots at all",
+                ""
+        };
+
+        for (String template : templates)
+        {
+            assertEquals(template, String.format(template, ARGS), PageTemplate.compile(template).render(ARGS));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedSpecifierIsRejected()
+    {
+        PageTemplate.compile("%d items");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void danglingPercentIsRejected()
+    {
+        PageTemplate.compile("50%");
+    }
+
+    private static String readResource(String name) throws IOException
+    {
+        try (InputStream in = PageTemplateTest.class.getClassLoader().getResourceAsStream(name))
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = in.read(buffer)) != -1)
+            {
+                out.write(buffer, 0, len);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.alphawallet.token.entity;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -8,8 +9,10 @@ import java.util.Map;
  * Created by James on 2/05/2019.
  * Stormbird in Sydney
  */
-public class ContractInfo
+public class ContractInfo implements Serializable
 {
+    private static final long serialVersionUID = 1L;
+
     public final String contractInterface;
     public final Map<Integer, List<String>> addresses = new HashMap<>();
 
@@ -2,6 +2,7 @@ package com.alphawallet.token.entity;
 
 import com.alphawallet.token.tools.TokenDefinition;
 
+import java.io.Serializable;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
@@ -11,8 +12,10 @@ import java.util.List;
  * Stormbird in Singapore
  */
 
-public class FunctionDefinition
+public class FunctionDefinition implements Serializable
 {
+    private static final long serialVersionUID = 1L;
+
     public ContractInfo contract;
     public String method;
     public TokenDefinition.Syntax syntax;
@@ -1,13 +1,17 @@
 package com.alphawallet.token.entity;
 
+import java.io.Serializable;
+
 /**
  * Created by James on 2/05/2019.
  * Stormbird in Sydney
  */
 
 // A param to pass into a smart contract function call
-public class MethodArg
+public class MethodArg implements Serializable
 {
+    private static final long serialVersionUID = 1L;
+
     public String parameterType; //type of param eg uint256, address etc
     public TokenscriptElement element; // contains either the value or reference to the value
 
@@ -4,14 +4,17 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Created by JB on 20/03/2020 for namedType in ASN.X included in TokenScript. It's used for events & attestations.
  */
-public class NamedType
+public class NamedType implements Serializable
 {
+    private static final long serialVersionUID = 1L;
+
     public final String name;
     public List<SequenceElement> sequence = new ArrayList<>();
 
@@ -122,8 +125,10 @@ public class NamedType
         return topicIndex;
     }
 
-    public class SequenceElement
+    public static class SequenceElement implements Serializable
     {
+        private static final long serialVersionUID = 1L;
+
         public String name;
         public String type;
         public boolean indexed = false;
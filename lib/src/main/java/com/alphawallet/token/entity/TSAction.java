@@ -1,13 +1,16 @@
 package com.alphawallet.token.entity;
 
+import java.io.Serializable;
 import java.util.Map;
 
 /**
  * Created by James on 2/04/2019.
  * Stormbird in Singapore
  */
-public class TSAction
+public class TSAction implements Serializable
 {
+    private static final long serialVersionUID = 1L;
+
     public int order;
     public String exclude;
     public TSTokenView view;
@@ -1,10 +1,14 @@
 package com.alphawallet.token.entity;
 
+import java.io.Serializable;
+
 /**
  * Created by JB on 27/07/2020.
  */
-public class TSActivityView
+public class TSActivityView implements Serializable
 {
+    private static final long serialVersionUID = 1L;
+
     private final TSOrigins eventOrigins;
     //views
     private TSTokenViewHolder tokenViews = new TSTokenViewHolder();
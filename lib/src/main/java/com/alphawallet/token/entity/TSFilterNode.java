@@ -1,5 +1,6 @@
 package com.alphawallet.token.entity;
 
+import java.io.Serializable;
 import java.math.BigInteger;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -9,8 +10,10 @@ import static com.alphawallet.token.entity.TSSelection.decodeParam;
 /**
  * Created by JB on 21/05/2020.
  */
-public class TSFilterNode
+public class TSFilterNode implements Serializable
 {
+    private static final long serialVersionUID = 1L;
+
     public TSFilterNode parent = null;
     public TSFilterNode first = null;
     public TSFilterNode second = null;
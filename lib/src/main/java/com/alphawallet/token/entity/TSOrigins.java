@@ -2,11 +2,15 @@ package com.alphawallet.token.entity;
 
 import org.xml.sax.SAXException;
 
+import java.io.Serializable;
+
 /**
  * Created by JB on 27/07/2020.
  */
-public class TSOrigins
+public class TSOrigins implements Serializable
 {
+    private static final long serialVersionUID = 1L;
+
     private TSOriginType type;
     private String originName;
     private EventDefinition event;
@@ -4,6 +4,7 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ListIterator;
@@ -16,8 +17,10 @@ import static org.w3c.dom.Node.ELEMENT_NODE;
 /**
  * Created by JB on 21/05/2020.
  */
-public class TSSelection
+public class TSSelection implements Serializable
 {
+    private static final long serialVersionUID = 1L;
+
     public TSFilterNode head = null;
     public String denialMessage = null;
     public Map<String, String> names = null; //use these names if the selection filter is true
@@ -4,6 +4,8 @@ import org.w3c.dom.Element;
 import org.w3c.dom.EntityReference;
 import org.w3c.dom.Node;
 
+import java.io.Serializable;
+
 import static org.w3c.dom.Node.ELEMENT_NODE;
 import static org.w3c.dom.Node.TEXT_NODE;
 
@@ -12,8 +14,10 @@ import static org.w3c.dom.Node.TEXT_NODE;
  *
  * Created by JB on 8/05/2020.
  */
-public class TSTokenView
+public class TSTokenView implements Serializable
 {
+    private static final long serialVersionUID = 1L;
+
     public final String tokenView;
     public final String style;
 
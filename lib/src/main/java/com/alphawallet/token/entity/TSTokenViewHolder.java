@@ -1,13 +1,16 @@
 package com.alphawallet.token.entity;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Created by JB on 8/05/2020.
  */
-public class TSTokenViewHolder
+public class TSTokenViewHolder implements Serializable
 {
+    private static final long serialVersionUID = 1L;
+
     public Map<String, Attribute> localAttributeTypes = new HashMap<>();
     public Map<String, TSTokenView> views = new HashMap<>();
     public String globalStyle = "";
@@ -1,11 +1,15 @@
 package com.alphawallet.token.entity;
 
+import java.io.Serializable;
+
 /**
  * Created by James on 28/05/2019.
  * Stormbird in Sydney
  */
-public class TokenscriptElement
+public class TokenscriptElement implements Serializable
 {
+    private static final long serialVersionUID = 1L;
+
     public String localRef;
     public String ref;
     public String value;
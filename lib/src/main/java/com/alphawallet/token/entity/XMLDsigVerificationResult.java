@@ -12,6 +12,7 @@ public class XMLDsigVerificationResult
     public String subjectPrincipal;
     public String keyType;
     public String failureReason;
+    public boolean failureIsFinal; //verifying the same file again would fail the same way
 
     public XMLDsigVerificationResult()
     {
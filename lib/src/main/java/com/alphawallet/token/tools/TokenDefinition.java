@@ -9,6 +9,7 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
 import java.text.DateFormat;
@@ -17,8 +18,10 @@ import java.util.*;
 
 import static org.w3c.dom.Node.ELEMENT_NODE;
 
-public class TokenDefinition {
-    protected Document xml;
+public class TokenDefinition implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    protected transient Document xml;
     public final Map<String, Attribute> attributes = new HashMap<>();
     protected Locale locale;
 
@@ -31,7 +34,7 @@ public class TokenDefinition {
     private final Map<String, TSActivityView> activityCards = new HashMap<>();
 
     public String nameSpace;
-    public TokenscriptContext context;
+    public transient TokenscriptContext context; //set per resolve; not part of the parsed model
     public String holdingToken = null;
     private int actionCount;
 
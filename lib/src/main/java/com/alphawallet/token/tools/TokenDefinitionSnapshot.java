@@ -0,0 +1,119 @@
+package com.alphawallet.token.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Binary snapshot of a parsed TokenDefinition, so a script whose content hasn't changed can be loaded
+ * without building and walking the XML DOM again.
+ *
+ * Layout: MAGIC, FORMAT_VERSION, source key (the file hash the snapshot was built from), then the serialised
+ * model. A snapshot is only returned when all three header fields match; anything else - a new format, a
+ * changed script or a model class that no longer matches - reads as a miss and the caller parses the XML.
+ * Callers put their app or parser version in the source key, so a snapshot never outlives the code that
+ * wrote it; the model classes' fixed serialVersionUIDs only keep compiler differences from mattering.
+ */
+public class TokenDefinitionSnapshot
+{
+    private static final int MAGIC = 0x54534253; //"TSBS"
+    private static final int FORMAT_VERSION = 1; //bump when the snapshot layout changes
+
+    /**
+     * @return the snapshotted definition, or null if there isn't a valid snapshot for this source
+     */
+    public static TokenDefinition read(File snapshot, String sourceKey)
+    {
+        if (!snapshot.exists()) return null;
+
+        try (FileInputStream fis = new FileInputStream(snapshot);
+             FileChannel channel = fis.getChannel())
+        {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            DataInputStream header = new DataInputStream(new ByteBufferInputStream(buffer));
+            if (header.readInt() != MAGIC
+                    || header.readInt() != FORMAT_VERSION
+                    || !header.readUTF().equals(sourceKey))
+            {
+                return null;
+            }
+
+            try (ObjectInputStream ois = new ObjectInputStream(header))
+            {
+                return (TokenDefinition) ois.readObject();
+            }
+        }
+        catch (IOException | ClassNotFoundException | ClassCastException e)
+        {
+            return null; //stale or damaged snapshot; caller re-parses and overwrites it
+        }
+    }
+
+    /**
+     * Write the snapshot atomically; a failed write leaves any previous snapshot in place
+     */
+    public static boolean write(TokenDefinition definition, String sourceKey, File snapshot)
+    {
+        File dir = snapshot.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) return false;
+        File tmp = new File(snapshot.getPath() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(sourceKey);
+            ObjectOutputStream oos = new ObjectOutputStream(out);
+            oos.writeObject(definition);
+            oos.flush();
+        }
+        catch (IOException e)
+        {
+            tmp.delete();
+            return false;
+        }
+
+        return tmp.renameTo(snapshot);
+    }
+
+    private static class ByteBufferInputStream extends InputStream
+    {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read()
+        {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+        {
+            if (len == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available()
+        {
+            return buffer.remaining();
+        }
+    }
+}
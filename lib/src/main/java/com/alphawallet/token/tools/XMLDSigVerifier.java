@@ -11,22 +11,28 @@ import java.security.Key;
 import java.security.KeyException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.Principal;
 import java.security.PublicKey;
 import java.security.Security;
 import java.security.cert.CertPathValidator;
 import java.security.cert.CertPathValidatorException;
+import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateExpiredException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.CertificateNotYetValidException;
 import java.security.cert.PKIXParameters;
+import java.security.cert.PKIXReason;
 import java.security.cert.TrustAnchor;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.net.ssl.TrustManagerFactory;
 import javax.net.ssl.X509TrustManager;
@@ -72,6 +78,20 @@ import com.alphawallet.token.entity.XMLDsigVerificationResult;
  */
 public class XMLDSigVerifier {
 
+    private static final int MAX_CERT_PATH_RESULTS = 256;
+    private static final long CERT_PATH_RESULT_TTL_MS = 60 * 60 * 1000; //re-check revocation status hourly
+    private static final long CERT_PATH_RETRY_TTL_MS = 60 * 1000; //failures that may pass next time, eg OCSP unreachable
+
+    private static volatile Set<TrustAnchor> trustAnchors;
+    private static final Map<String, CertPathResult> certPathResults = new LinkedHashMap<String, CertPathResult>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CertPathResult> eldest)
+        {
+            return size() > MAX_CERT_PATH_RESULTS;
+        }
+    };
+
     public XMLDsigVerificationResult VerifyXMLDSig(InputStream fileStream)
     {
         XMLDsigVerificationResult result = new XMLDsigVerificationResult();
@@ -89,6 +109,7 @@ public class XMLDSigVerifier {
         {
             result.isValid = false;
             result.failureReason = e.getMessage();
+            result.failureIsFinal = isFinalFailure(e);
             return result;
         }
     }
@@ -128,7 +149,7 @@ public class XMLDSigVerifier {
         boolean validSig = signature.validate(valContext);
         if(!validSig)
         {
-            throw new XMLSignatureException("Invalid XML signature");
+            throw new InvalidSignatureException();
         }
         return signature;
     }
@@ -140,27 +161,23 @@ public class XMLDSigVerifier {
             CertificateException,
             CertPathValidatorException
     {
-        // By default on Oracle JRE, algorithm is PKIX
-        TrustManagerFactory tmf = TrustManagerFactory
-                .getInstance(TrustManagerFactory.getDefaultAlgorithm());
-        // 'null' will initialise the tmf with the default CA certs installed
-        // with the JRE.
-        tmf.init((KeyStore) null);
-
-        X509TrustManager tm = (X509TrustManager) tmf.getTrustManagers()[0];
-        CertPathValidator cpv = CertPathValidator.getInstance("PKIX");
-        Set<TrustAnchor> anch = new HashSet<>();
-        for (X509Certificate cert : tm.getAcceptedIssuers())
+        //the same few signing chains are seen over and over; PKIX path building is the expensive part of verification
+        String chainKey = chainFingerprint(certList);
+        CertPathResult cached = getCachedCertPathResult(chainKey);
+        if (cached != null)
         {
-            anch.add(new TrustAnchor(cert, null));
+            if (cached.failure != null) throw cached.newFailure();
+            return;
         }
-        PKIXParameters params = new PKIXParameters(anch);
-        Security.setProperty("ocsp.enable", "true");
+
+        CertPathValidator cpv = CertPathValidator.getInstance("PKIX");
+        PKIXParameters params = new PKIXParameters(getTrustAnchors());
         params.setRevocationEnabled(true);
         CertificateFactory factory = CertificateFactory.getInstance("X.509");
         try
         {
             cpv.validate(factory.generateCertPath(certList), params);
+            putCachedCertPathResult(chainKey, new CertPathResult(null));
         }
         catch (CertPathValidatorException e)
         {
@@ -169,8 +186,136 @@ public class XMLDSigVerifier {
             //we allow this to continue (code 0)
             if(e.getIndex() != 0)
             {
+                putCachedCertPathResult(chainKey, new CertPathResult(e));
                 throw e;
             }
+            putCachedCertPathResult(chainKey, new CertPathResult(null));
+        }
+    }
+
+    /**
+     * Trust anchors from the CA certs installed with the JRE. Built once and shared by all verifiers.
+     */
+    private static Set<TrustAnchor> getTrustAnchors() throws NoSuchAlgorithmException, KeyStoreException
+    {
+        Set<TrustAnchor> anchors = trustAnchors;
+        if (anchors == null)
+        {
+            synchronized (XMLDSigVerifier.class)
+            {
+                anchors = trustAnchors;
+                if (anchors == null)
+                {
+                    // By default on Oracle JRE, algorithm is PKIX
+                    TrustManagerFactory tmf = TrustManagerFactory
+                            .getInstance(TrustManagerFactory.getDefaultAlgorithm());
+                    // 'null' will initialise the tmf with the default CA certs installed
+                    // with the JRE.
+                    tmf.init((KeyStore) null);
+
+                    X509TrustManager tm = (X509TrustManager) tmf.getTrustManagers()[0];
+                    anchors = new HashSet<>();
+                    for (X509Certificate cert : tm.getAcceptedIssuers())
+                    {
+                        anchors.add(new TrustAnchor(cert, null));
+                    }
+                    anchors = Collections.unmodifiableSet(anchors);
+                    Security.setProperty("ocsp.enable", "true");
+                    trustAnchors = anchors;
+                }
+            }
+        }
+        return anchors;
+    }
+
+    private static String chainFingerprint(List<X509Certificate> certList) throws NoSuchAlgorithmException, CertificateEncodingException
+    {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (X509Certificate cert : certList)
+        {
+            if (cert == null) return null; //incomplete chain, let the validator report it
+            digest.update(cert.getEncoded());
+        }
+        return Numeric.toHexString(digest.digest());
+    }
+
+    private static CertPathResult getCachedCertPathResult(String chainKey)
+    {
+        if (chainKey == null) return null;
+        synchronized (certPathResults)
+        {
+            CertPathResult result = certPathResults.get(chainKey);
+            if (result != null && System.currentTimeMillis() - result.validationTime > result.getTTL())
+            {
+                certPathResults.remove(chainKey);
+                result = null;
+            }
+            return result;
+        }
+    }
+
+    private static void putCachedCertPathResult(String chainKey, CertPathResult result)
+    {
+        if (chainKey == null) return;
+        synchronized (certPathResults)
+        {
+            certPathResults.put(chainKey, result);
+        }
+    }
+
+    /**
+     * @return true if the chain fails for a reason that won't change on a retry, as opposed to eg revocation
+     * status being unavailable because the OCSP responder couldn't be reached
+     */
+    /**
+     * @return true if the content itself is at fault - malformed XML or a signature value that doesn't validate - so
+     * checking the same file again can only fail the same way. Other failures, eg certificate validity checks during
+     * key selection or runtime errors, may pass on a retry
+     */
+    private static boolean isFinalFailure(Exception e)
+    {
+        return e instanceof MarshalException
+                || e instanceof SAXException
+                || e instanceof DOMException
+                || e instanceof InvalidSignatureException;
+    }
+
+    private static boolean isFinalFailure(CertPathValidatorException e)
+    {
+        CertPathValidatorException.Reason reason = e.getReason();
+        return reason == CertPathValidatorException.BasicReason.INVALID_SIGNATURE
+                || reason == CertPathValidatorException.BasicReason.REVOKED
+                || reason == PKIXReason.NO_TRUST_ANCHOR
+                || reason == PKIXReason.NOT_CA_CERT
+                || reason == PKIXReason.NAME_CHAINING;
+    }
+
+    private static class CertPathResult
+    {
+        final CertPathValidatorException failure; //null if the chain validated
+        final long validationTime;
+
+        CertPathResult(CertPathValidatorException failure)
+        {
+            this.failure = failure;
+            this.validationTime = System.currentTimeMillis();
+        }
+
+        /**
+         * Passes and final failures - bad signature, no trust anchor - are kept for the full TTL; other failures
+         * only briefly
+         */
+        long getTTL()
+        {
+            return (failure == null || isFinalFailure(failure)) ? CERT_PATH_RESULT_TTL_MS : CERT_PATH_RETRY_TTL_MS;
+        }
+
+        /**
+         * @return a copy of the cached failure; each caller gets its own exception rather than sharing one
+         */
+        CertPathValidatorException newFailure()
+        {
+            return new CertPathValidatorException(failure.getMessage(), null, failure.getCertPath(), failure.getIndex(), failure.getReason());
         }
     }
 
@@ -256,6 +401,7 @@ public class XMLDSigVerifier {
         {
             result.isValid = false;
             result.failureReason = e.getMessage();
+            result.failureIsFinal = e instanceof CertPathValidatorException && isFinalFailure((CertPathValidatorException) e);
         }
         return result;
     }
@@ -388,6 +534,14 @@ public class XMLDSigVerifier {
         }
     }
 
+    private static class InvalidSignatureException extends XMLSignatureException
+    {
+        InvalidSignatureException()
+        {
+            super("Invalid XML signature");
+        }
+    }
+
     private class SimpleKeySelectorResult implements KeySelectorResult
     {
         private PublicKey pk;
@@ -0,0 +1,155 @@
+package com.alphawallet.token.tools;
+
+import com.alphawallet.token.entity.ParseResult;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TokenDefinitionSnapshotTest implements ParseResult
+{
+    private final File scriptDir = new File("src/test/ts");
+
+    @Test
+    public void everyTestScriptRoundTrips() throws Exception
+    {
+        File[] scripts = scriptDir.listFiles();
+        assertNotNull(scripts);
+        int checked = 0;
+        for (File script : scripts)
+        {
+            TokenDefinition parsed = new TokenDefinition(new FileInputStream(script), new Locale("en"), this);
+            if (parsed.holdingToken == null) continue; //not a current TokenScript, so never snapshotted
+
+            File snapshot = File.createTempFile("snapshot", ".ts");
+            try
+            {
+                assertTrue(script.getName(), TokenDefinitionSnapshot.write(parsed, "key", snapshot));
+                TokenDefinition loaded = TokenDefinitionSnapshot.read(snapshot, "key");
+                assertNotNull(script.getName(), loaded);
+
+                assertEquals(script.getName(), parsed.attributes.keySet(), loaded.attributes.keySet());
+                assertEquals(script.getName(), parsed.contracts.keySet(), loaded.contracts.keySet());
+                assertEquals(script.getName(), parsed.actions.keySet(), loaded.actions.keySet());
+                assertEquals(script.getName(), parsed.hasEvents(), loaded.hasEvents());
+                //everything else in the model, including event definitions and views
+                assertSameModel(script.getName(), parsed, loaded, new IdentityHashMap<>());
+                checked++;
+            }
+            finally
+            {
+                snapshot.delete();
+            }
+        }
+
+        assertTrue(checked > 0);
+    }
+
+    @Test
+    public void staleSnapshotIsAMiss() throws Exception
+    {
+        File script = new File(scriptDir, "fifa.tsml");
+        TokenDefinition parsed = new TokenDefinition(new FileInputStream(script), new Locale("en"), this);
+        File snapshot = File.createTempFile("snapshot", ".ts");
+        try
+        {
+            assertTrue(TokenDefinitionSnapshot.write(parsed, "key", snapshot));
+            assertNull(TokenDefinitionSnapshot.read(snapshot, "otherKey"));
+        }
+        finally
+        {
+            snapshot.delete();
+        }
+    }
+
+    /**
+     * Compare every non-transient field of the two object graphs
+     */
+    private static void assertSameModel(String path, Object expected, Object actual, Map<Object, Object> visited) throws IllegalAccessException
+    {
+        if (expected == null || actual == null)
+        {
+            assertEquals(path, expected, actual);
+            return;
+        }
+        assertEquals(path, expected.getClass(), actual.getClass());
+        if (visited.put(expected, actual) != null) return; //shared reference, already compared
+
+        Class<?> type = expected.getClass();
+        if (type.isPrimitive() || expected instanceof String || expected instanceof Number
+                || expected instanceof Boolean || expected instanceof Character || type.isEnum()
+                || expected instanceof Locale)
+        {
+            assertEquals(path, expected, actual);
+        }
+        else if (expected instanceof Map)
+        {
+            Map<?, ?> expectedMap = (Map<?, ?>) expected;
+            Map<?, ?> actualMap = (Map<?, ?>) actual;
+            assertEquals(path, expectedMap.keySet(), actualMap.keySet());
+            for (Map.Entry<?, ?> entry : expectedMap.entrySet())
+            {
+                assertSameModel(path + "[" + entry.getKey() + "]", entry.getValue(), actualMap.get(entry.getKey()), visited);
+            }
+        }
+        else if (expected instanceof Collection)
+        {
+            List<?> expectedList = new ArrayList<>((Collection<?>) expected);
+            List<?> actualList = new ArrayList<>((Collection<?>) actual);
+            assertEquals(path, expectedList.size(), actualList.size());
+            if (expected instanceof List)
+            {
+                for (int i = 0; i < expectedList.size(); i++)
+                {
+                    assertSameModel(path + "[" + i + "]", expectedList.get(i), actualList.get(i), visited);
+                }
+            }
+            else
+            {
+                assertEquals(path, expected, actual); //sets hold value types
+            }
+        }
+        else if (type.isArray())
+        {
+            assertEquals(path, Array.getLength(expected), Array.getLength(actual));
+            for (int i = 0; i < Array.getLength(expected); i++)
+            {
+                assertSameModel(path + "[" + i + "]", Array.get(expected, i), Array.get(actual, i), visited);
+            }
+        }
+        else
+        {
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass())
+            {
+                for (Field field : c.getDeclaredFields())
+                {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) continue;
+                    field.setAccessible(true);
+                    assertSameModel(path + "." + field.getName(), field.get(expected), field.get(actual), visited);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void parseMessage(ParseResultId parseResult)
+    {
+        if (parseResult == ParseResultId.PARSE_FAILED) fail("Parser Error.");
+    }
+}
@@ -3,8 +3,12 @@ package com.alphawallet.token.tools;
 import com.alphawallet.token.entity.XMLDsigVerificationResult;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 public class XMLDsigVerifierTest {
 
@@ -70,4 +74,44 @@ public class XMLDsigVerifierTest {
         assert(!result.isValid);
         assert(result.failureReason.contains("NotBefore")); // save travis from misreporting thanks to timezone
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCachedChainFailureIsRepeated() throws Exception {
+        // second verification takes the chain result from the cache, and must report it the same way
+        XMLDsigVerificationResult first = new XMLDSigVerifier().VerifyXMLDSig(new FileInputStream("src/test/ts/EntryToken.tsml"));
+        XMLDsigVerificationResult second = new XMLDSigVerifier().VerifyXMLDSig(new FileInputStream("src/test/ts/EntryToken.tsml"));
+        assert(!first.isValid && !second.isValid);
+        assert(second.failureReason.equals(first.failureReason));
+        // no trust anchor won't change on a retry
+        assert(first.failureIsFinal && second.failureIsFinal);
+    }
+
+    @Test
+    public void testNotYetValidIsNotFinal() throws Exception {
+        // validity period failures are not cached for long
+        InputStream fileTS = new FileInputStream("src/test/ts/EntryToken-future-cert-self-signed.tsml");
+        XMLDsigVerificationResult result = new XMLDSigVerifier().VerifyXMLDSig(fileTS);
+        assert(!result.isValid);
+        assert(!result.failureIsFinal);
+    }
+
+    @Test
+    public void testMalformedSignatureIsFinal() throws Exception {
+        InputStream fileTS = new FileInputStream("src/test/ts/EntryToken-duplicate-Values.tsml");
+        XMLDsigVerificationResult result = new XMLDSigVerifier().VerifyXMLDSig(fileTS);
+        assert(!result.isValid);
+        assert(result.failureIsFinal);
+    }
+
+    @Test
+    public void testTamperedContentIsFinal() throws Exception {
+        // signed content changed after signing: the signature value no longer validates
+        String script = new String(Files.readAllBytes(Paths.get("src/test/ts/EntryToken.tsml")), StandardCharsets.UTF_8);
+        String tampered = script.replaceFirst(">Tickets<", ">Tickers<");
+        assert(!tampered.equals(script));
+        XMLDsigVerificationResult result = new XMLDSigVerifier().VerifyXMLDSig(new ByteArrayInputStream(tampered.getBytes(StandardCharsets.UTF_8)));
+        assert(!result.isValid);
+        assert(result.failureReason.equals("Invalid XML signature"));
+        assert(result.failureIsFinal);
+    }
+}